@@ -3,16 +3,22 @@ package ca.gc.aafc.dina;
 import javax.inject.Inject;
 import javax.persistence.EntityManager;
 
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.context.annotation.DependsOn;
 
 import ca.gc.aafc.dina.mapper.JpaDtoMapper;
+import ca.gc.aafc.dina.metrics.MicrometerRepositoryMetrics;
+import ca.gc.aafc.dina.metrics.RepositoryMetrics;
+import ca.gc.aafc.dina.repository.JpaDtoRepository;
 import ca.gc.aafc.dina.repository.meta.JpaTotalMetaInformationProvider;
 import io.crnk.core.queryspec.mapper.DefaultQuerySpecUrlMapper;
 import io.crnk.operations.server.OperationsModule;
 import io.crnk.operations.server.TransactionOperationFilter;
 import io.crnk.spring.jpa.SpringTransactionRunner;
+import io.micrometer.core.instrument.MeterRegistry;
 
 @Configuration
 // Must explicitly depend on "querySpecUrlMapper" so Spring can inject it into this class'
@@ -55,4 +61,29 @@ public class DinaBaseApiAutoConfiguration {
     return new JpaTotalMetaInformationProvider(entityManager, jpaDtoMapper);
   }
 
+  /**
+   * Records the repository metrics with Micrometer when a MeterRegistry bean exists (e.g. provided
+   * by Spring Boot Actuator). Only loaded when Micrometer is on the classpath.
+   */
+  @Configuration
+  @ConditionalOnClass(name = "io.micrometer.core.instrument.MeterRegistry")
+  static class RepositoryMetricsConfiguration {
+
+    /**
+     * Provides the metrics injected into the {@link JpaDtoRepository}. The MeterRegistry is looked
+     * up when the bean is created: the auto-configured registries are not yet defined when this
+     * configuration is processed, so a bean condition would never match them.
+     *
+     * @param meterRegistry
+     *          the MeterRegistry, if any.
+     * @return the Micrometer metrics, or metrics recording nothing without a MeterRegistry.
+     */
+    @Bean
+    public RepositoryMetrics repositoryMetrics(ObjectProvider<MeterRegistry> meterRegistry) {
+      MeterRegistry registry = meterRegistry.getIfAvailable();
+      return registry == null ? RepositoryMetrics.NOOP : new MicrometerRepositoryMetrics(registry);
+    }
+
+  }
+
 }
@@ -0,0 +1,10 @@
+package ca.gc.aafc.dina.filter;
+
+/**
+ * Marks a {@link FilterHandler} whose restriction only depends on the filters of the QuerySpec,
+ * not on the request context (e.g. the current user). Queries restricted by such filter handlers
+ * only are identified by their QuerySpec filters, which lets their total counts be cached or
+ * estimated, see {@link ca.gc.aafc.dina.repository.meta.JpaTotalMetaInformationProvider}.
+ */
+public interface QuerySpecFilterHandler extends FilterHandler {
+}
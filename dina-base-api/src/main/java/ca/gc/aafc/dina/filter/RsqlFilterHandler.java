@@ -11,8 +11,12 @@ import javax.persistence.criteria.Predicate;
 import org.apache.commons.lang3.StringUtils;
 
 import com.github.tennaito.rsql.jpa.JpaPredicateVisitor;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
 
 import cz.jirutka.rsql.parser.RSQLParser;
+import cz.jirutka.rsql.parser.ast.Node;
 import io.crnk.core.queryspec.FilterSpec;
 import io.crnk.core.queryspec.PathSpec;
 import io.crnk.core.queryspec.QuerySpec;
@@ -28,11 +32,23 @@ import lombok.RequiredArgsConstructor;
 @Named
 //CHECKSTYLE:OFF AnnotationUseStyle
 @RequiredArgsConstructor(onConstructor_ = @Inject)
-public class RsqlFilterHandler implements FilterHandler {
+public class RsqlFilterHandler implements QuerySpecFilterHandler {
 
   private final EntityManager entityManager;
   
+  /** Maximum number of parsed RSQL filters kept in memory. */
+  public static final int PARSED_FILTER_CACHE_SIZE = 500;
+
   private final RSQLParser rsqlParser = new RSQLParser();
+
+  /**
+   * Parsed (immutable) RSQL filters per filter string, shared between the page and count queries
+   * of a request and between requests.
+   */
+  private final Cache<String, Node> parsedFilters = CacheBuilder.newBuilder()
+      .maximumSize(PARSED_FILTER_CACHE_SIZE)
+      .recordStats()
+      .build();
   
   @Override
   public Predicate getRestriction(QuerySpec querySpec, From<?, ?> root, CriteriaQuery<?> query,
@@ -45,8 +61,26 @@ public class RsqlFilterHandler implements FilterHandler {
     
     String rsqlString = rsqlFilterSpec.getValue();
     
-    return rsqlParser.parse(rsqlString)
+    return parse(rsqlString)
         .accept(new JpaPredicateVisitor<>().defineRoot(root), entityManager);
   }
 
+  /**
+   * Returns the statistics of the parsed filter cache.
+   * 
+   * @return the cache statistics
+   */
+  public CacheStats getParsedFilterCacheStats() {
+    return parsedFilters.stats();
+  }
+
+  private Node parse(String rsqlString) {
+    Node node = parsedFilters.getIfPresent(rsqlString);
+    if (node == null) {
+      node = rsqlParser.parse(rsqlString);
+      parsedFilters.put(rsqlString, node);
+    }
+    return node;
+  }
+
 }
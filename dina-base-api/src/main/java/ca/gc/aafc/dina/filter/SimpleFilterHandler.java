@@ -24,7 +24,7 @@ import lombok.RequiredArgsConstructor;
 @Named
 //CHECKSTYLE:OFF AnnotationUseStyle
 @RequiredArgsConstructor(onConstructor_ = @Inject)
-public class SimpleFilterHandler implements FilterHandler {
+public class SimpleFilterHandler implements QuerySpecFilterHandler {
 
   @Override
   public Predicate getRestriction(
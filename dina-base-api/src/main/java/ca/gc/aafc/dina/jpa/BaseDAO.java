@@ -1,13 +1,22 @@
 package ca.gc.aafc.dina.jpa;
 
 import java.io.Serializable;
+import java.lang.reflect.AnnotatedElement;
+import java.lang.reflect.Member;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.Consumer;
 import java.util.function.Function;
+import java.util.stream.Collectors;
 
+import javax.annotation.PostConstruct;
 import javax.inject.Inject;
 import javax.persistence.EntityManager;
 import javax.persistence.Id;
@@ -20,15 +29,23 @@ import javax.persistence.criteria.CriteriaQuery;
 import javax.persistence.criteria.Expression;
 import javax.persistence.criteria.Predicate;
 import javax.persistence.criteria.Root;
+import javax.persistence.metamodel.EntityType;
+import javax.persistence.metamodel.Metamodel;
+import javax.persistence.metamodel.SingularAttribute;
 import javax.validation.ConstraintViolation;
 import javax.validation.Validator;
 
 import org.hibernate.Session;
+import org.hibernate.SessionFactory;
 import org.hibernate.SimpleNaturalIdLoadAccess;
 import org.hibernate.annotations.NaturalId;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.stat.Statistics;
 import org.springframework.stereotype.Component;
 
-import io.crnk.core.engine.information.bean.BeanInformation;
+import com.google.common.collect.Iterables;
+
+import ca.gc.aafc.dina.mapper.LambdaPropertyAccessorEngine;
 
 /**
  * Base Data Access Object layer. This class should be the only one holding a reference to the
@@ -38,12 +55,20 @@ import io.crnk.core.engine.information.bean.BeanInformation;
 @Component
 public class BaseDAO {
 
+  /** Maximum number of IDs bound to a single IN clause. */
+  public static final int MAX_IN_CLAUSE_SIZE = 1000;
+
   @PersistenceContext
   private EntityManager entityManager;
 
   @Inject
   private Validator validator;
 
+  private final LambdaPropertyAccessorEngine accessorEngine = new LambdaPropertyAccessorEngine();
+
+  private final Map<Class<?>, EntityIdentifierMetadata> identifierMetadata =
+      new ConcurrentHashMap<>();
+
   /**
    * This method can be used to inject the EntityManager into an external object.
    * 
@@ -93,6 +118,48 @@ public class BaseDAO {
     return session.bySimpleNaturalId(entityClass).load(id);
   }
 
+  /**
+   * Find entities by their database IDs using a single multi-load. IDs already in the persistence
+   * context are not queried again.
+   * 
+   * @param ids
+   * @param entityClass
+   * @return the entities found, missing IDs are ignored
+   */
+  public <T> List<T> findAllByDatabaseIds(
+      Collection<? extends Serializable> ids, Class<T> entityClass) {
+    if (ids.isEmpty()) {
+      return Collections.emptyList();
+    }
+    return entityManager.unwrap(Session.class)
+        .byMultipleIds(entityClass)
+        .multiLoad(new ArrayList<>(ids))
+        .stream()
+        .filter(Objects::nonNull)
+        .collect(Collectors.toList());
+  }
+
+  /**
+   * Find entities by their {@link NaturalId} using IN queries of at most
+   * {@link #MAX_IN_CLAUSE_SIZE} IDs.
+   * 
+   * @param ids
+   * @param entityClass
+   * @return the entities found, missing IDs are ignored
+   */
+  public <T> List<T> findAllByNaturalIds(Collection<?> ids, Class<T> entityClass) {
+    String naturalIdName = getNaturalIdFieldName(entityClass);
+    List<T> entities = new ArrayList<>(ids.size());
+    for (List<?> chunk : Iterables.partition(ids, MAX_IN_CLAUSE_SIZE)) {
+      CriteriaBuilder criteriaBuilder = entityManager.getCriteriaBuilder();
+      CriteriaQuery<T> criteria = criteriaBuilder.createQuery(entityClass);
+      Root<T> root = criteria.from(entityClass);
+      criteria.select(root).where(root.get(naturalIdName).in(chunk));
+      entities.addAll(entityManager.createQuery(criteria).getResultList());
+    }
+    return entities;
+  }
+
   /**
    * Find an entity by a specific property. The method assumes that the property is unique.
    * 
@@ -198,6 +265,48 @@ public class BaseDAO {
     entityManager.remove(entity);
   }
 
+  /**
+   * Synchronizes the persistence context with the database.
+   */
+  public void flush() {
+    entityManager.flush();
+  }
+
+  /**
+   * Detaches an entity from the persistence context, e.g. between the chunks of a bulk operation.
+   * Changes not flushed are lost. Cascades to the relations mapped with CascadeType.DETACH.
+   *
+   * @param entity entity to detach
+   */
+  public void detach(Object entity) {
+    entityManager.detach(entity);
+  }
+
+  /**
+   * Returns the JDBC batch size set by the "hibernate.jdbc.batch_size" property.
+   *
+   * @return the batch size, 0 or less if JDBC batching is disabled
+   */
+  public int getJdbcBatchSize() {
+    return entityManager.getEntityManagerFactory()
+        .unwrap(SessionFactoryImplementor.class)
+        .getSessionFactoryOptions()
+        .getJdbcBatchSize();
+  }
+
+  /**
+   * Returns the Hibernate statistics, including the second-level and natural-id cache hits and
+   * misses. Only collected when "hibernate.generate_statistics" is true, see
+   * {@link SecondLevelCacheConfig}.
+   *
+   * @return the statistics of the session factory
+   */
+  public Statistics getStatistics() {
+    return entityManager.getEntityManagerFactory()
+        .unwrap(SessionFactory.class)
+        .getStatistics();
+  }
+
   /**
    * Same as {@link Validator#validate(Object, Class...)}
    * 
@@ -213,17 +322,14 @@ public class BaseDAO {
    * Given a class, this method will extract the name of the field annotated with {@link NaturalId}.
    * 
    * @param entityClass
-   * @return
+   * @return the name or null if the class is not an entity or has no NaturalId
    */
   public String getNaturalIdFieldName(Class<?> entityClass) {
-    BeanInformation beanInfo = BeanInformation.get(entityClass);
-    // Check for NaturalId:
-    for (String attrName : beanInfo.getAttributeNames()) {
-      if (beanInfo.getAttribute(attrName).getAnnotation(NaturalId.class).isPresent()) {
-        return attrName;
-      }
+    try {
+      return getIdentifierMetadata(entityClass).getNaturalIdName();
+    } catch (IllegalArgumentException iaEx) {
+      return null;
     }
-    return null;
   }
 
   /**
@@ -233,10 +339,102 @@ public class BaseDAO {
    * @return
    */
   public String getDatabaseIdFieldName(Class<?> entityClass) {
-    return entityManager.getMetamodel()
-        .entity(entityClass)
-        .getId(Serializable.class)
-        .getName();
+    return getIdentifierMetadata(entityClass).getDatabaseIdName();
+  }
+
+  /**
+   * Returns the identifier metadata (NaturalId, database id and exposed id) of an entity class.
+   * The metadata of all the entities of the persistence unit is built at startup, other classes
+   * (e.g. Hibernate proxies) are resolved on first use.
+   * 
+   * @param entityClass
+   * @return the metadata of the entity class
+   * @throws IllegalArgumentException if the class is not an entity
+   */
+  public EntityIdentifierMetadata getIdentifierMetadata(Class<?> entityClass) {
+    EntityIdentifierMetadata metadata = identifierMetadata.get(entityClass);
+    if (metadata != null) {
+      return metadata;
+    }
+    return identifierMetadata.computeIfAbsent(entityClass, this::resolveIdentifierMetadata);
+  }
+
+  @PostConstruct
+  void buildIdentifierMetadata() {
+    for (EntityType<?> entityType : entityManager.getMetamodel().getEntities()) {
+      if (!entityType.hasSingleIdAttribute()) {
+        continue;
+      }
+      identifierMetadata.put(entityType.getJavaType(), createIdentifierMetadata(entityType));
+    }
+  }
+
+  /**
+   * Resolves the metadata of a class missing from the registry, either an entity registered late
+   * or a subclass of an entity (e.g. Hibernate proxy).
+   */
+  private EntityIdentifierMetadata resolveIdentifierMetadata(Class<?> clazz) {
+    Metamodel metamodel = entityManager.getMetamodel();
+    for (Class<?> current = clazz; current != null; current = current.getSuperclass()) {
+      EntityIdentifierMetadata superMetadata = identifierMetadata.get(current);
+      if (superMetadata != null) {
+        return superMetadata;
+      }
+      try {
+        return createIdentifierMetadata(metamodel.entity(current));
+      } catch (IllegalArgumentException iaEx) {
+        // not an entity, try the superclass
+      }
+    }
+    throw new IllegalArgumentException(clazz + " is not an entity");
+  }
+
+  private EntityIdentifierMetadata createIdentifierMetadata(EntityType<?> entityType) {
+    SingularAttribute<?, ?> databaseId = null;
+    SingularAttribute<?, ?> naturalId = null;
+    SingularAttribute<?, ?> version = null;
+    for (SingularAttribute<?, ?> attribute : entityType.getSingularAttributes()) {
+      if (attribute.isId()) {
+        databaseId = attribute;
+      }
+      if (attribute.isVersion()) {
+        version = attribute;
+      }
+      Member member = attribute.getJavaMember();
+      if (member instanceof AnnotatedElement
+          && ((AnnotatedElement) member).isAnnotationPresent(NaturalId.class)) {
+        naturalId = attribute;
+      }
+    }
+    if (databaseId == null) {
+      throw new IllegalArgumentException(entityType.getJavaType() + " has no single id attribute");
+    }
+
+    String exposedIdName = naturalId != null ? naturalId.getName() : databaseId.getName();
+    String versionName = version != null ? version.getName() : null;
+
+    return EntityIdentifierMetadata.builder()
+        .entityClass(entityType.getJavaType())
+        .naturalIdName(naturalId != null ? naturalId.getName() : null)
+        .naturalIdType(naturalId != null ? naturalId.getJavaType() : null)
+        .databaseIdName(databaseId.getName())
+        .databaseIdType(databaseId.getJavaType())
+        .exposedIdGetter(getGetter(entityType.getJavaType(), exposedIdName))
+        .versionName(versionName)
+        .versionGetter(
+            versionName != null ? getGetter(entityType.getJavaType(), versionName) : null)
+        .build();
+  }
+
+  /**
+   * Gets the generated getter of a property, or a reflective one if it can't be generated.
+   */
+  private Function<Object, Object> getGetter(Class<?> entityClass, String propertyName) {
+    Function<Object, Object> getter = accessorEngine.findGetter(entityClass, propertyName);
+    if (getter == null) {
+      getter = entity -> accessorEngine.getProperty(entity, propertyName);
+    }
+    return getter;
   }
 
   /**
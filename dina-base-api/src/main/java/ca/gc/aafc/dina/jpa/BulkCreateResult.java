@@ -0,0 +1,39 @@
+package ca.gc.aafc.dina.jpa;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import lombok.Value;
+
+/**
+ * Result of {@link DinaService#createAll}: the exposed ids of the created entities and the
+ * throughput of the operation.
+ */
+@Value
+public class BulkCreateResult {
+
+  /** Exposed ids (natural ids if any, database ids otherwise) in the order of the entities. */
+  List<Object> ids;
+
+  /** Duration of the operation, from the first preCreate to the last flush. */
+  long durationNanos;
+
+  public int getCount() {
+    return ids.size();
+  }
+
+  public long getDurationMillis() {
+    return TimeUnit.NANOSECONDS.toMillis(durationNanos);
+  }
+
+  /**
+   * @return the number of entities created per second, 0 if nothing was created
+   */
+  public double getEntitiesPerSecond() {
+    if (durationNanos <= 0) {
+      return 0;
+    }
+    return ids.size() * (double) TimeUnit.SECONDS.toNanos(1) / durationNanos;
+  }
+
+}
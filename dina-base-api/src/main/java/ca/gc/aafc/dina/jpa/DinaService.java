@@ -1,5 +1,7 @@
 package ca.gc.aafc.dina.jpa;
 
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
@@ -25,6 +27,9 @@ import lombok.RequiredArgsConstructor;
 @RequiredArgsConstructor(onConstructor_ = @Inject)
 public abstract class DinaService<E extends DinaEntity> {
 
+  /** Chunk size of {@link #createAll(Collection)} when JDBC batching is disabled. */
+  public static final int DEFAULT_CREATE_ALL_CHUNK_SIZE = 50;
+
   @NonNull
   private final BaseDAO baseDAO;
 
@@ -40,6 +45,80 @@ public abstract class DinaService<E extends DinaEntity> {
     return entity;
   }
 
+  /**
+   * Persist many instances of the provided entity in the database, e.g. for bulk loads. See
+   * {@link #createAll(Collection, int)}, the chunk size is {@link #getCreateAllChunkSize()}.
+   *
+   * @param entities entities to persist
+   * @return the exposed ids of the entities and the throughput
+   */
+  public BulkCreateResult createAll(Collection<E> entities) {
+    return createAll(entities, getCreateAllChunkSize());
+  }
+
+  /**
+   * Persist many instances of the provided entity in the database, e.g. for bulk loads. The
+   * entities are persisted by chunks: after {@link #preCreate} and persist, each chunk is flushed
+   * (as JDBC batches when "hibernate.jdbc.batch_size" is set and the id generator allows it,
+   * IDENTITY ids disable insert batching) then detached so the persistence context doesn't grow.
+   *
+   * <p>
+   * Must be called in a transaction. Only the given entities (and their relations cascading the
+   * detach) are detached: the entities managed before the call stay managed, and the changes
+   * pending before the call are flushed with the first chunk.
+   * </p>
+   *
+   * @param entities entities to persist
+   * @param chunkSize number of entities flushed at once
+   * @return the exposed ids (natural ids if any) of the entities, in order, and the throughput
+   */
+  public BulkCreateResult createAll(Collection<E> entities, int chunkSize) {
+    if (chunkSize <= 0) {
+      throw new IllegalArgumentException("chunkSize must be positive");
+    }
+
+    long start = System.nanoTime();
+    List<Object> ids = new ArrayList<>(entities.size());
+    List<E> chunk = new ArrayList<>(chunkSize);
+    for (E entity : entities) {
+      preCreate(entity);
+      baseDAO.create(entity);
+      chunk.add(entity);
+      if (chunk.size() == chunkSize) {
+        flushChunk(chunk, ids);
+      }
+    }
+    flushChunk(chunk, ids);
+
+    return new BulkCreateResult(ids, System.nanoTime() - start);
+  }
+
+  /**
+   * Flushes then detaches a chunk of created entities, collecting their exposed ids.
+   */
+  private void flushChunk(List<E> chunk, List<Object> ids) {
+    if (chunk.isEmpty()) {
+      return;
+    }
+    baseDAO.flush();
+    for (E entity : chunk) {
+      ids.add(baseDAO.getIdentifierMetadata(entity.getClass()).getExposedId(entity));
+      baseDAO.detach(entity);
+    }
+    chunk.clear();
+  }
+
+  /**
+   * Chunk size of {@link #createAll(Collection)}: the JDBC batch size or
+   * {@link #DEFAULT_CREATE_ALL_CHUNK_SIZE} if JDBC batching is disabled.
+   *
+   * @return the chunk size
+   */
+  protected int getCreateAllChunkSize() {
+    int jdbcBatchSize = baseDAO.getJdbcBatchSize();
+    return jdbcBatchSize > 0 ? jdbcBatchSize : DEFAULT_CREATE_ALL_CHUNK_SIZE;
+  }
+
   /**
    * Merge the state of a given entity into the current persistence context.
    *
@@ -0,0 +1,77 @@
+package ca.gc.aafc.dina.jpa;
+
+import java.util.function.Function;
+
+import org.hibernate.annotations.NaturalId;
+
+import lombok.Builder;
+import lombok.NonNull;
+import lombok.Value;
+
+/**
+ * Identifier metadata of an entity class: name and type of its {@link NaturalId} (if any) and of
+ * its database id. The exposed identifier is the NaturalId if available or the database id
+ * otherwise. Also holds the {@link javax.persistence.Version} attribute (if any) identifying the
+ * state of an entity.
+ */
+@Value
+@Builder
+public class EntityIdentifierMetadata {
+
+  @NonNull
+  private Class<?> entityClass;
+
+  /** Null if the entity has no NaturalId. */
+  private String naturalIdName;
+  private Class<?> naturalIdType;
+
+  @NonNull
+  private String databaseIdName;
+  @NonNull
+  private Class<?> databaseIdType;
+
+  /** Reads the exposed identifier of an entity. */
+  @NonNull
+  private Function<Object, Object> exposedIdGetter;
+
+  /** Null if the entity has no Version attribute. */
+  private String versionName;
+  private Function<Object, Object> versionGetter;
+
+  public boolean hasNaturalId() {
+    return naturalIdName != null;
+  }
+
+  public String getExposedIdName() {
+    return hasNaturalId() ? naturalIdName : databaseIdName;
+  }
+
+  public Class<?> getExposedIdType() {
+    return hasNaturalId() ? naturalIdType : databaseIdType;
+  }
+
+  public boolean hasVersion() {
+    return versionName != null;
+  }
+
+  /**
+   * Returns the exposed identifier of the given entity.
+   *
+   * @param entity - instance of the entity class
+   * @return the NaturalId if available or the database id otherwise
+   */
+  public Object getExposedId(Object entity) {
+    return exposedIdGetter.apply(entity);
+  }
+
+  /**
+   * Returns the version of the given entity.
+   *
+   * @param entity - instance of the entity class
+   * @return the version or null if the entity has no Version attribute
+   */
+  public Object getVersion(Object entity) {
+    return hasVersion() ? versionGetter.apply(entity) : null;
+  }
+
+}
@@ -0,0 +1,61 @@
+package ca.gc.aafc.dina.jpa;
+
+import java.util.Map;
+
+import org.hibernate.cfg.AvailableSettings;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import lombok.extern.log4j.Log4j2;
+
+/**
+ * Enables the Hibernate second-level cache with a local JCache (Caffeine) provider when
+ * "dina.cache.enabled" is true. Requires the optional hibernate-jcache and caffeine jcache
+ * dependencies.
+ *
+ * <p>
+ * Only the entities annotated with {@link javax.persistence.Cacheable} and
+ * {@link org.hibernate.annotations.Cache} are cached, and their natural ids (e.g. UUID to
+ * database id resolutions of {@link BaseDAO#findOneByNaturalId}) when also annotated with
+ * {@link org.hibernate.annotations.NaturalIdCache}. The cache can also be enabled per entity with
+ * the "spring.jpa.properties.hibernate.classcache.[entity class]=read-write" property. The
+ * statistics, see {@link BaseDAO#getStatistics()}, are collected unless
+ * "dina.cache.statistics" is false.
+ * </p>
+ *
+ * <p>
+ * Any of the properties set here can be overridden with "spring.jpa.properties". The caches are
+ * created with the Caffeine JCache defaults, bound them in the Caffeine configuration
+ * (application.conf) for large entity tables.
+ * </p>
+ */
+@Configuration
+@ConditionalOnClass(name = {
+    "org.hibernate.cache.jcache.internal.JCacheRegionFactory",
+    "com.github.benmanes.caffeine.jcache.spi.CaffeineCachingProvider" })
+@ConditionalOnProperty(value = "dina.cache.enabled", havingValue = "true")
+@Log4j2
+public class SecondLevelCacheConfig {
+
+  private static final String CACHING_PROVIDER =
+      "com.github.benmanes.caffeine.jcache.spi.CaffeineCachingProvider";
+
+  @Bean
+  public HibernatePropertiesCustomizer secondLevelCacheCustomizer(
+      @Value("${dina.cache.statistics:true}") boolean statistics) {
+    log.info("Hibernate second-level cache enabled");
+    return (Map<String, Object> properties) -> {
+      properties.putIfAbsent(AvailableSettings.USE_SECOND_LEVEL_CACHE, "true");
+      properties.putIfAbsent(AvailableSettings.CACHE_REGION_FACTORY, "jcache");
+      properties.putIfAbsent("hibernate.javax.cache.provider", CACHING_PROVIDER);
+      properties.putIfAbsent("hibernate.javax.cache.missing_cache_strategy", "create");
+      properties.putIfAbsent(AvailableSettings.JPA_SHARED_CACHE_MODE, "ENABLE_SELECTIVE");
+      properties.putIfAbsent(AvailableSettings.GENERATE_STATISTICS, String.valueOf(statistics));
+    };
+  }
+
+}
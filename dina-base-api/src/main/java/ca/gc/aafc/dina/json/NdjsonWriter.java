@@ -0,0 +1,45 @@
+package ca.gc.aafc.dina.json;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.function.Consumer;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import lombok.NonNull;
+import lombok.RequiredArgsConstructor;
+import lombok.SneakyThrows;
+
+/**
+ * Writes objects as newline delimited JSON (one JSON document per line) to an output stream, as
+ * they are received. Used as the consumer of a streamed export so the response is written
+ * incrementally, e.g.:
+ *
+ * <pre>
+ * response.setContentType(NdjsonWriter.CONTENT_TYPE);
+ * repository.streamAll(querySpec, new NdjsonWriter(response.getOutputStream(), objectMapper));
+ * </pre>
+ *
+ * The output stream is neither flushed nor closed by the writer.
+ */
+@RequiredArgsConstructor
+public class NdjsonWriter implements Consumer<Object> {
+
+  public static final String CONTENT_TYPE = "application/x-ndjson";
+
+  private static final int NEW_LINE = '\n';
+
+  @NonNull
+  private final OutputStream outputStream;
+
+  @NonNull
+  private final ObjectMapper objectMapper;
+
+  @SneakyThrows(IOException.class)
+  @Override
+  public void accept(Object value) {
+    outputStream.write(objectMapper.writeValueAsBytes(value));
+    outputStream.write(NEW_LINE);
+  }
+
+}
@@ -0,0 +1,31 @@
+package ca.gc.aafc.dina.mapper;
+
+import org.apache.commons.beanutils.PropertyUtils;
+
+import lombok.SneakyThrows;
+
+/**
+ * {@link PropertyAccessorEngine} backed by commons-beanutils {@link PropertyUtils}. Introspects
+ * and uses reflection on every call but supports nested, indexed and mapped properties.
+ */
+public class BeanUtilsPropertyAccessorEngine implements PropertyAccessorEngine {
+
+  @Override
+  @SneakyThrows
+  public Object getProperty(Object bean, String property) {
+    return PropertyUtils.getProperty(bean, property);
+  }
+
+  @Override
+  @SneakyThrows
+  public void setProperty(Object bean, String property, Object value) {
+    PropertyUtils.setProperty(bean, property, value);
+  }
+
+  @Override
+  @SneakyThrows
+  public Class<?> getPropertyType(Object bean, String property) {
+    return PropertyUtils.getPropertyType(bean, property);
+  }
+
+}
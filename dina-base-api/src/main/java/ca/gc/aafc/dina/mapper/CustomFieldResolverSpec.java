@@ -1,10 +1,12 @@
 package ca.gc.aafc.dina.mapper;
 
+import java.util.List;
 import java.util.function.Function;
 
 import lombok.Builder;
 import lombok.Getter;
 import lombok.NonNull;
+import lombok.Singular;
 
 /**
  * @param <E> Entity type
@@ -16,4 +18,11 @@ public class CustomFieldResolverSpec<E> {
   private String field;
   @NonNull
   private Function<E, Object> resolver;
+  /**
+   * To-many relations of the entity read by the resolver, e.g. "employees" for a resolver
+   * returning the number of employees. They are initialized for a whole page before mapping,
+   * instead of once per entity.
+   */
+  @Singular
+  private List<String> prefetchedRelations;
 }
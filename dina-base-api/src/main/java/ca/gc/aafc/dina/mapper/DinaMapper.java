@@ -2,19 +2,28 @@ package ca.gc.aafc.dina.mapper;
 
 import java.lang.reflect.ParameterizedType;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
-import java.util.HashSet;
+import java.util.Collections;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.RandomAccess;
 import java.util.Set;
-import java.util.stream.Collectors;
-import java.util.stream.Stream;
+import java.util.TreeSet;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
 
-import org.apache.commons.beanutils.PropertyUtils;
-import org.apache.commons.lang3.StringUtils;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
 
 import lombok.NonNull;
+import lombok.Setter;
 import lombok.SneakyThrows;
+import lombok.Value;
 
 /**
  * DTO to Entity Bean mapper (and vice-versa). Used to map fields between DTO's
@@ -25,22 +34,111 @@ import lombok.SneakyThrows;
  */
 public class DinaMapper<D, E> {
 
+  /** Maximum number of distinct selected field sets remembered per mapping direction. */
+  private static final int FIELD_SELECTION_CACHE_SIZE = 256;
+
   private final Class<D> dtoClass;
   private final Class<E> entityClass;
 
   private final List<CustomFieldResolverSpec<E>> dtoResolvers;
   private final List<CustomFieldResolverSpec<D>> entityResolvers;
 
+  private final PropertyAccessorEngine accessorEngine;
+
+  /** Case insensitive names of the fields having a custom resolver (dto or entity side). */
+  private final Set<String> resolvedFieldNames;
+
+  /** Selected fields split for the toDto direction. */
+  private final Cache<Set<String>, FieldSelection<E>> dtoFieldSelections;
+
+  /** Selected fields split for the applyDtoToEntity direction. */
+  private final Cache<Set<String>, FieldSelection<D>> entityFieldSelections;
+
+  /**
+   * Minimum number of entities from which {@link #toDtos(List, Map, Set)} maps in parallel.
+   * Parallel mapping is disabled by default.
+   */
+  @Setter
+  private int parallelMappingThreshold = Integer.MAX_VALUE;
+
+  /** Pool used by {@link #toDtos(List, Map, Set)} when mapping in parallel. */
+  @Setter
+  @NonNull
+  private ForkJoinPool forkJoinPool = ForkJoinPool.commonPool();
+
+  /**
+   * Creates a mapper reading and writing the properties with a
+   * {@link BeanUtilsPropertyAccessorEngine}.
+   *
+   * @param dtoClass        - class of the dto
+   * @param entityClass     - class of the entity
+   * @param dtoResolvers    - custom resolvers of the dto fields
+   * @param entityResolvers - custom resolvers of the entity fields
+   */
   public DinaMapper(
     @NonNull Class<D> dtoClass,
     @NonNull Class<E> entityClass,
     @NonNull List<CustomFieldResolverSpec<E>> dtoResolvers,
     @NonNull List<CustomFieldResolverSpec<D>> entityResolvers
+  ) {
+    this(
+      dtoClass, entityClass, dtoResolvers, entityResolvers, new BeanUtilsPropertyAccessorEngine());
+  }
+
+  /**
+   * Creates a mapper using a given engine, e.g. a {@link LambdaPropertyAccessorEngine} to avoid
+   * reflection. Unlike the default engine, the lambda engine doesn't convert its errors to
+   * IllegalArgumentExceptions: a null value for a primitive property throws a
+   * NullPointerException and a value of the wrong type a ClassCastException.
+   *
+   * @param dtoClass        - class of the dto
+   * @param entityClass     - class of the entity
+   * @param dtoResolvers    - custom resolvers of the dto fields
+   * @param entityResolvers - custom resolvers of the entity fields
+   * @param accessorEngine  - engine used to read and write the properties of the beans
+   */
+  public DinaMapper(
+    @NonNull Class<D> dtoClass,
+    @NonNull Class<E> entityClass,
+    @NonNull List<CustomFieldResolverSpec<E>> dtoResolvers,
+    @NonNull List<CustomFieldResolverSpec<D>> entityResolvers,
+    @NonNull PropertyAccessorEngine accessorEngine
   ) {
     this.dtoClass = dtoClass;
     this.entityClass = entityClass;
     this.dtoResolvers = dtoResolvers;
     this.entityResolvers = entityResolvers;
+    this.accessorEngine = accessorEngine;
+
+    Set<String> resolvedFields = new TreeSet<>(String.CASE_INSENSITIVE_ORDER);
+    dtoResolvers.forEach(cfr -> resolvedFields.add(cfr.getField()));
+    entityResolvers.forEach(cfr -> resolvedFields.add(cfr.getField()));
+    this.resolvedFieldNames = Collections.unmodifiableSet(resolvedFields);
+
+    this.dtoFieldSelections = CacheBuilder.newBuilder()
+      .maximumSize(FIELD_SELECTION_CACHE_SIZE).recordStats().build();
+    this.entityFieldSelections = CacheBuilder.newBuilder()
+      .maximumSize(FIELD_SELECTION_CACHE_SIZE).recordStats().build();
+  }
+
+  /**
+   * Returns the statistics (hits, misses, evictions) of the selected fields splits used by
+   * {@link #toDto}.
+   *
+   * @return a snapshot of the toDto field selection cache statistics
+   */
+  public CacheStats getDtoFieldSelectionCacheStats() {
+    return dtoFieldSelections.stats();
+  }
+
+  /**
+   * Returns the statistics (hits, misses, evictions) of the selected fields splits used by
+   * {@link #applyDtoToEntity}.
+   *
+   * @return a snapshot of the applyDtoToEntity field selection cache statistics
+   */
+  public CacheStats getEntityFieldSelectionCacheStats() {
+    return entityFieldSelections.stats();
   }
 
   /**
@@ -66,35 +164,85 @@ public class DinaMapper<D, E> {
    * @param relations             - Set of relation field names
    * @return - A new instance of a class with the mapped fields
    */
-  @SneakyThrows
   public D toDto(
     @NonNull E entity,
     @NonNull Map<Class<?>, Set<String>> selectedFieldPerClass,
     @NonNull Set<String> relations
+  ) {
+    return toDto(
+      entity, getDtoFieldSelection(selectedFieldPerClass), selectedFieldPerClass, relations);
+  }
+
+  /**
+   * <p>
+   * Returns a list of new dtos mapped with the fields of the given entities, in the same order.
+   * See {@link #toDto(Object, Map, Set)} for the mapping of a single entity.
+   * <p>
+   *
+   * <p>
+   * The selected fields are resolved once for the whole list. When the number of entities
+   * reaches the parallel mapping threshold, entities are mapped in parallel on the configured
+   * {@link ForkJoinPool}; custom field resolvers must then be thread safe and entities must not
+   * rely on a thread bound context (e.g. lazy loading from a persistence context).
+   * <p>
+   *
+   * @param entities              - sources of the mapping
+   * @param selectedFieldPerClass - selected fields of source classes to map
+   * @param relations             - Set of relation field names
+   * @return - A new list of dtos with the mapped fields
+   */
+  public List<D> toDtos(
+    @NonNull List<E> entities,
+    @NonNull Map<Class<?>, Set<String>> selectedFieldPerClass,
+    @NonNull Set<String> relations
+  ) {
+    FieldSelection<E> fieldSelection = getDtoFieldSelection(selectedFieldPerClass);
+
+    if (entities.size() < parallelMappingThreshold) {
+      List<D> dtos = new ArrayList<>(entities.size());
+      for (E entity : entities) {
+        dtos.add(toDto(entity, fieldSelection, selectedFieldPerClass, relations));
+      }
+      return dtos;
+    }
+
+    List<E> source = entities instanceof RandomAccess ? entities : new ArrayList<>(entities);
+    @SuppressWarnings("unchecked")
+    D[] dtos = (D[]) new Object[source.size()];
+    forkJoinPool.submit(() -> IntStream.range(0, dtos.length).parallel().forEach(
+      i -> dtos[i] = toDto(source.get(i), fieldSelection, selectedFieldPerClass, relations)))
+      .join();
+    return new ArrayList<>(Arrays.asList(dtos));
+  }
+
+  @SneakyThrows
+  private D toDto(
+    E entity,
+    FieldSelection<E> fieldSelection,
+    Map<Class<?>, Set<String>> selectedFieldPerClass,
+    Set<String> relations
   ) {
     D dto = dtoClass.getConstructor().newInstance();
-    Set<String> selectedFields = selectedFieldPerClass.getOrDefault(entityClass, new HashSet<>());
 
     // Map non relations and non custom resolved fields
-    Set<String> selectedBaseFields = selectedFields
-      .stream()
-      .filter(sf -> !hasCustomFieldResolver(sf))
-      .collect(Collectors.toSet());
-    mapFieldsToTarget(entity, dto, selectedBaseFields);
+    mapFieldsToTarget(entity, dto, fieldSelection.getBaseFields());
 
     // Map Relations
     mapRelationsToTarget(entity, dto, selectedFieldPerClass, relations);
 
     // Map selected Custom Fields
-    List<CustomFieldResolverSpec<E>> selectedResolvers = dtoResolvers
-      .stream()
-      .filter(cfr-> selectedFields.contains(cfr.getField()))
-      .collect(Collectors.toList());
-    mapCustomFieldsToTarget(entity, dto, selectedResolvers);
+    mapCustomFieldsToTarget(entity, dto, fieldSelection.getResolvers());
 
     return dto;
   }
 
+  private FieldSelection<E> getDtoFieldSelection(Map<Class<?>, Set<String>> selectedFieldPerClass) {
+    return getFieldSelection(
+      dtoFieldSelections,
+      selectedFieldPerClass.getOrDefault(entityClass, Collections.emptySet()),
+      dtoResolvers);
+  }
+
   /**
    * <p>
    * Apply the fields of a given dto to a given entity. The given selected fields
@@ -124,24 +272,19 @@ public class DinaMapper<D, E> {
     @NonNull Map<Class<?>, Set<String>> selectedFieldPerClass,
     @NonNull Set<String> relations
   ) {
-    Set<String> selectedFields = selectedFieldPerClass.getOrDefault(dtoClass, new HashSet<>());
+    FieldSelection<D> fieldSelection = getFieldSelection(
+      entityFieldSelections,
+      selectedFieldPerClass.getOrDefault(dtoClass, Collections.emptySet()),
+      entityResolvers);
 
     // Map non relations and non custom resolved fields
-    Set<String> selectedBaseFields = selectedFields
-      .stream()
-      .filter(sf -> !hasCustomFieldResolver(sf))
-      .collect(Collectors.toSet());
-    mapFieldsToTarget(dto, entity, selectedBaseFields);
+    mapFieldsToTarget(dto, entity, fieldSelection.getBaseFields());
 
     // Map Relations
     mapRelationsToTarget(dto, entity, selectedFieldPerClass, relations);
 
     // Map selected Custom Fields
-    List<CustomFieldResolverSpec<D>> selectedResolvers = entityResolvers
-      .stream()
-      .filter(cfr-> selectedFields.contains(cfr.getField()))
-      .collect(Collectors.toList());
-    mapCustomFieldsToTarget(dto, entity, selectedResolvers);
+    mapCustomFieldsToTarget(dto, entity, fieldSelection.getResolvers());
   }
 
   /**
@@ -156,15 +299,14 @@ public class DinaMapper<D, E> {
    * @param selectedFieldPerClass - selected fields of the relations source class
    * @param fieldName             - field name of the relation
    */
-  @SneakyThrows
-  private static <T, S> void mapRelationsToTarget(
+  private <T, S> void mapRelationsToTarget(
     S source,
     T target,
     Map<Class<?>, Set<String>> selectedFieldPerClass,
     Set<String> relations
   ) {
     for (String relationFieldName : relations) {
-      Class<?> sourceRelationType = PropertyUtils.getPropertyType(source, relationFieldName);
+      Class<?> sourceRelationType = accessorEngine.getPropertyType(source, relationFieldName);
 
       if (Collection.class.isAssignableFrom(sourceRelationType)) {
         mapCollectionRelation(source, target, selectedFieldPerClass, relationFieldName);
@@ -188,13 +330,13 @@ public class DinaMapper<D, E> {
    * @param fieldName             - field name of the relation
    */
   @SneakyThrows
-  private static <T, S> void mapCollectionRelation(
+  private <T, S> void mapCollectionRelation(
     S source,
     T target,
     Map<Class<?>, Set<String>> selectedFieldPerClass,
     String fieldName
   ) {
-    Collection<?> sourceCollection = (Collection<?>) PropertyUtils.getProperty(source, fieldName);
+    Collection<?> sourceCollection = (Collection<?>) accessorEngine.getProperty(source, fieldName);
     Collection<Object> targetCollection = null;
 
     if (sourceCollection != null) {
@@ -210,12 +352,12 @@ public class DinaMapper<D, E> {
         mapFieldsToTarget(
           sourceElement,
           targetElement,
-          selectedFieldPerClass.getOrDefault(sourceElement.getClass(), new HashSet<>())
+          selectedFieldPerClass.getOrDefault(sourceElement.getClass(), Collections.emptySet())
         );
         targetCollection.add(targetElement);
       }
     }
-    PropertyUtils.setProperty(target, fieldName, targetCollection);
+    accessorEngine.setProperty(target, fieldName, targetCollection);
   }
 
   /**
@@ -232,26 +374,27 @@ public class DinaMapper<D, E> {
    * @param fieldName             - field name of the relation
    */
   @SneakyThrows
-  private static <T, S> void mapSingleRelation(
+  private <T, S> void mapSingleRelation(
     S source,
     T target,
     Map<Class<?>, Set<String>> selectedFieldPerClass,
     String fieldName
   ) {
-    Object sourceRelationObject = PropertyUtils.getProperty(source, fieldName);
+    Object sourceRelationObject = accessorEngine.getProperty(source, fieldName);
     Object targetRelationObject = null;
 
     if (sourceRelationObject != null) {
-      Class<?> sourceRelationType = PropertyUtils.getPropertyType(source, fieldName);
-      Class<?> targetRelationType = PropertyUtils.getPropertyType(target, fieldName);
+      Class<?> sourceRelationType = accessorEngine.getPropertyType(source, fieldName);
+      Class<?> targetRelationType = accessorEngine.getPropertyType(target, fieldName);
 
       targetRelationObject = targetRelationType.getConstructor().newInstance();
 
-      Set<String> selectedRelationFields = selectedFieldPerClass.getOrDefault(sourceRelationType, new HashSet<>());
+      Set<String> selectedRelationFields = selectedFieldPerClass
+        .getOrDefault(sourceRelationType, Collections.emptySet());
 
       mapFieldsToTarget(sourceRelationObject, targetRelationObject, selectedRelationFields);
     }
-    PropertyUtils.setProperty(target, fieldName, targetRelationObject);
+    accessorEngine.setProperty(target, fieldName, targetRelationObject);
   }
 
   /**
@@ -263,10 +406,9 @@ public class DinaMapper<D, E> {
    * @param target         - target of the mapping
    * @param selectedFields - Selected fields to apply
    */
-  @SneakyThrows
-  private static <T, S> void mapFieldsToTarget(S source, T target, Set<String> selectedFields) {
+  private <T, S> void mapFieldsToTarget(S source, T target, Set<String> selectedFields) {
     for (String attribute : selectedFields) {
-      PropertyUtils.setProperty(target, attribute, PropertyUtils.getProperty(source, attribute));
+      accessorEngine.setProperty(target, attribute, accessorEngine.getProperty(source, attribute));
     }
   }
 
@@ -279,25 +421,48 @@ public class DinaMapper<D, E> {
    * @param target    - target of the mapping
    * @param resolvers - custom resolvers to apply
    */
-  @SneakyThrows
-  private static <T, S> void mapCustomFieldsToTarget(S source, T target, List<CustomFieldResolverSpec<S>> resolvers) {
+  private <T, S> void mapCustomFieldsToTarget(S source, T target, List<CustomFieldResolverSpec<S>> resolvers) {
     for (CustomFieldResolverSpec<S> cfr : resolvers) {
       String fieldName = cfr.getField();
-      PropertyUtils.setProperty(target, fieldName, cfr.getResolver().apply(source));
+      accessorEngine.setProperty(target, fieldName, cfr.getResolver().apply(source));
     }
   }
 
   /**
-   * Returns true if the given field name has a custom resolver
+   * Returns the split of the given selected fields into base fields and selected custom
+   * resolvers. The split is computed once per distinct set of selected fields.
    *
-   * @param fieldName - field name of field to check
-   * @return - true if the given field has custom resolvers.
+   * @param <S>            - Type of source
+   * @param cache          - cache of the mapping direction
+   * @param selectedFields - selected fields of the source
+   * @param resolvers      - custom resolvers of the mapping direction
+   * @return the base fields and resolvers to apply
    */
-  private boolean hasCustomFieldResolver(String fieldName) {
-    return !Stream.concat(dtoResolvers.stream(), entityResolvers.stream())
-        .filter(cfr -> StringUtils.equalsIgnoreCase(fieldName, cfr.getField()))
-        .collect(Collectors.toList())
-        .isEmpty();
+  private <S> FieldSelection<S> getFieldSelection(
+    Cache<Set<String>, FieldSelection<S>> cache,
+    Set<String> selectedFields,
+    List<CustomFieldResolverSpec<S>> resolvers
+  ) {
+    FieldSelection<S> fieldSelection = cache.getIfPresent(selectedFields);
+    if (fieldSelection == null) {
+      Set<String> baseFields = new LinkedHashSet<>();
+      for (String selectedField : selectedFields) {
+        // Fields with a custom resolver (on either side) are never mapped as base fields
+        if (!resolvedFieldNames.contains(selectedField)) {
+          baseFields.add(selectedField);
+        }
+      }
+      ImmutableList.Builder<CustomFieldResolverSpec<S>> selectedResolvers = ImmutableList.builder();
+      for (CustomFieldResolverSpec<S> cfr : resolvers) {
+        if (selectedFields.contains(cfr.getField())) {
+          selectedResolvers.add(cfr);
+        }
+      }
+      fieldSelection = new FieldSelection<>(
+        ImmutableSet.copyOf(baseFields), selectedResolvers.build());
+      cache.put(ImmutableSet.copyOf(selectedFields), fieldSelection);
+    }
+    return fieldSelection;
   }
 
   /**
@@ -319,4 +484,15 @@ public class DinaMapper<D, E> {
     return (Class<?>) genericType.getActualTypeArguments()[0];
   }
 
+  /**
+   * Selected fields of a source split between the base fields and the custom resolvers to apply.
+   *
+   * @param <S> - Type of source
+   */
+  @Value
+  private static class FieldSelection<S> {
+    Set<String> baseFields;
+    List<CustomFieldResolverSpec<S>> resolvers;
+  }
+
 }
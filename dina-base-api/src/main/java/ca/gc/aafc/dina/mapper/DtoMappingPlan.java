@@ -0,0 +1,220 @@
+package ca.gc.aafc.dina.mapper;
+
+import java.lang.reflect.Constructor;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+
+import org.springframework.expression.EvaluationException;
+import org.springframework.expression.Expression;
+
+import lombok.NonNull;
+import lombok.RequiredArgsConstructor;
+import lombok.SneakyThrows;
+import lombok.Value;
+
+/**
+ * Pre-parsed instructions used to map an entity to a DTO for a given set of selected fields,
+ * including the DTOs of the included relations with their own plans. A plan is immutable and can
+ * be shared between rows, requests and threads.
+ */
+@RequiredArgsConstructor
+final class DtoMappingPlan {
+
+  @NonNull
+  private final Constructor<?> dtoConstructor;
+
+  /** Plain fields copied from the entity to the DTO. */
+  @NonNull
+  private final List<FieldCopy> fieldCopies;
+
+  /** Fields of the DTO set by a custom field resolver. */
+  @NonNull
+  private final List<ResolvedField> resolvedFields;
+
+  /** Relations included in the DTO, empty for the plan of an included relation. */
+  @NonNull
+  private final List<IncludedRelation> includedRelations;
+
+  /**
+   * Creates a new DTO from the given entity.
+   *
+   * @param entity - source of the mapping
+   * @return the new DTO
+   */
+  @SneakyThrows
+  Object apply(Object entity) {
+    Object dto = dtoConstructor.newInstance();
+
+    for (FieldCopy fieldCopy : fieldCopies) {
+      fieldCopy.copy(entity, dto);
+    }
+
+    for (ResolvedField resolvedField : resolvedFields) {
+      resolvedField.getDtoSetter().accept(dto, resolvedField.getResolver().apply(entity));
+    }
+
+    for (IncludedRelation includedRelation : includedRelations) {
+      includedRelation.copy(entity, dto);
+    }
+
+    return dto;
+  }
+
+  /**
+   * Cache key of a plan: a plan only depends on the classes, the selected fields and the keys of
+   * the included relations by attribute path.
+   */
+  @Value
+  static class Key {
+    Class<?> entityClass;
+    Class<?> dtoClass;
+    Set<String> selectedFields;
+    Map<String, Key> includedRelations;
+  }
+
+  /**
+   * Copy of a single field (or nested path e.g. "department.uuid") from the entity to the DTO.
+   * Null values are not copied.
+   */
+  interface FieldCopy {
+    void copy(Object entity, Object dto);
+  }
+
+  /**
+   * {@link FieldCopy} evaluating SpEL expressions. An entity path that can not be evaluated is
+   * considered null. The DTO expression is expected to auto-grow null nested DTOs.
+   */
+  @Value
+  static class ExpressionFieldCopy implements FieldCopy {
+    Expression entityExpression;
+    Expression dtoExpression;
+
+    @Override
+    public void copy(Object entity, Object dto) {
+      Object value;
+      try {
+        value = entityExpression.getValue(entity);
+      } catch (EvaluationException ee) {
+        value = null;
+      }
+      if (value != null) {
+        dtoExpression.setValue(dto, value);
+      }
+    }
+  }
+
+  /**
+   * {@link FieldCopy} calling generated accessors in straight line: the getters of the entity
+   * path, then the getters (instantiating missing nested DTOs) and the final setter of the DTO
+   * path. Behaves like {@link ExpressionFieldCopy}.
+   */
+  @Value
+  static class AccessorFieldCopy implements FieldCopy {
+    List<EntityStep> entitySteps;
+    List<NestedDtoStep> dtoSteps;
+    BiConsumer<Object, Object> dtoSetter;
+
+    @Override
+    public void copy(Object entity, Object dto) {
+      Object value = entity;
+      for (EntityStep step : entitySteps) {
+        // A value without the declared type of the path (e.g. a type variable) is the same as an
+        // entity expression that can not be evaluated. Exceptions of the getters propagate.
+        if (!step.getDeclaringClass().isInstance(value)) {
+          return;
+        }
+        value = step.getGetter().apply(value);
+        if (value == null) {
+          return;
+        }
+      }
+
+      Object target = dto;
+      for (NestedDtoStep step : dtoSteps) {
+        target = step.getOrCreate(target);
+      }
+      dtoSetter.accept(target, value);
+    }
+  }
+
+  /**
+   * Getter of an element of an entity path, applied to instances of the declaring class only.
+   */
+  @Value
+  static class EntityStep {
+    Class<?> declaringClass;
+    Function<Object, Object> getter;
+  }
+
+  /**
+   * Access to a nested DTO of a DTO path (e.g. "department" of "department.uuid"). The nested
+   * DTO is instantiated if null.
+   */
+  @Value
+  static class NestedDtoStep {
+    Function<Object, Object> getter;
+    BiConsumer<Object, Object> setter;
+    Constructor<?> constructor;
+
+    @SneakyThrows
+    Object getOrCreate(Object dto) {
+      Object nested = getter.apply(dto);
+      if (nested == null) {
+        nested = constructor.newInstance();
+        setter.accept(dto, nested);
+      }
+      return nested;
+    }
+  }
+
+  /**
+   * Included relation (e.g. "department") mapped with the plan of the related DTO: each element
+   * for a to-many relation. The relation is not set when its entity path can not be evaluated or
+   * is null.
+   */
+  @Value
+  static class IncludedRelation {
+    Expression entityExpression;
+    Expression dtoExpression;
+    DtoMappingPlan relationPlan;
+
+    void copy(Object entity, Object dto) {
+      Object relationEntity;
+      try {
+        relationEntity = entityExpression.getValue(entity);
+      } catch (EvaluationException ee) {
+        relationEntity = null;
+      }
+      if (relationEntity == null) {
+        return;
+      }
+
+      Object relationDto;
+      if (relationEntity instanceof Collection) {
+        List<Object> relationDtos = new ArrayList<>();
+        for (Object element : (Collection<?>) relationEntity) {
+          relationDtos.add(relationPlan.apply(element));
+        }
+        relationDto = relationDtos;
+      } else {
+        relationDto = relationPlan.apply(relationEntity);
+      }
+      dtoExpression.setValue(dto, relationDto);
+    }
+  }
+
+  /**
+   * DTO field value provided by a {@link CustomFieldResolverSpec}.
+   */
+  @Value
+  static class ResolvedField {
+    BiConsumer<Object, Object> dtoSetter;
+    Function<Object, Object> resolver;
+  }
+
+}
@@ -1,29 +1,43 @@
 package ca.gc.aafc.dina.mapper;
 
 import java.io.Serializable;
+import java.lang.reflect.Constructor;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.TreeSet;
 import java.util.function.BiConsumer;
 import java.util.function.BiFunction;
 import java.util.function.Consumer;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
+import org.apache.commons.lang3.ClassUtils;
 import org.apache.commons.lang3.StringUtils;
-import org.springframework.expression.EvaluationException;
+import org.apache.commons.lang3.reflect.ConstructorUtils;
+import org.apache.commons.lang3.reflect.FieldUtils;
+import org.springframework.core.ResolvableType;
+import org.springframework.expression.Expression;
 import org.springframework.expression.ExpressionParser;
 import org.springframework.expression.spel.SpelParserConfiguration;
 import org.springframework.expression.spel.standard.SpelExpressionParser;
-import org.springframework.expression.spel.support.StandardEvaluationContext;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.CacheStats;
+import com.google.common.cache.LoadingCache;
 import com.google.common.collect.BiMap;
 import com.google.common.collect.HashBiMap;
-import com.google.common.collect.Streams;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
 
 import ca.gc.aafc.dina.repository.SelectionHandler;
 import ca.gc.aafc.dina.util.TriConsumer;
@@ -36,15 +50,25 @@ import io.crnk.core.queryspec.IncludeRelationSpec;
 import io.crnk.core.queryspec.QuerySpec;
 import lombok.NonNull;
 import lombok.SneakyThrows;
+import lombok.Value;
 
 /**
  * Maps DTOs to JPA entities.
  */
 public class JpaDtoMapper {
+
+  /** Default maximum number of mapping plans kept in memory by a mapper. */
+  public static final int DEFAULT_MAPPING_PLAN_CACHE_SIZE = 1000;
+
+  /** Maximum number of QuerySpec shapes for which the selected fields are kept in memory. */
+  private static final int SELECTED_FIELDS_CACHE_SIZE = 1000;
   
   private final BiMap<Class<?>, Class<?>> jpaEntities;
   private final Map<Class<?>, List<CustomFieldResolverSpec<?>>> customFieldResolvers;
 
+  /** Fields with a custom field resolver per class, compared ignoring case. */
+  private final Map<Class<?>, Set<String>> customResolvedFields = new HashMap<>();
+
   private final ExpressionParser entityParser = new SpelExpressionParser(
     // Auto-grow must be false for the entity to avoid adding empty related entities:
     new SpelParserConfiguration(false, false)
@@ -54,13 +78,78 @@ public class JpaDtoMapper {
     // Auto-grow must be true for the DTO instantiate related DTOs:
     new SpelParserConfiguration(true, true)
   );
+
+  /** Engine used by the mapping plans, null when plans only use SpEL. */
+  private final PropertyAccessorEngine accessorEngine;
+
+  /** Mapping plans per (entity class, dto class, selected fields). */
+  private final LoadingCache<DtoMappingPlan.Key, DtoMappingPlan> mappingPlans;
+
+  /** Selected fields per class by QuerySpec shape. */
+  private final Cache<SelectedFieldsKey, Map<Class<?>, Set<String>>> selectedFieldsCache =
+      CacheBuilder.newBuilder().maximumSize(SELECTED_FIELDS_CACHE_SIZE).recordStats().build();
   
   public JpaDtoMapper(
     @NonNull Map<Class<?>, Class<?>> jpaEntities,
     Map<Class<?>, List<CustomFieldResolverSpec<?>>> customFieldResolvers
+  ) {
+    this(jpaEntities, customFieldResolvers, DEFAULT_MAPPING_PLAN_CACHE_SIZE);
+  }
+
+  /**
+   * @param jpaEntities             - DTO classes mapped to their entity classes
+   * @param customFieldResolvers    - custom field resolvers per class
+   * @param mappingPlanCacheSize    - maximum number of mapping plans kept in memory
+   */
+  public JpaDtoMapper(
+    @NonNull Map<Class<?>, Class<?>> jpaEntities,
+    Map<Class<?>, List<CustomFieldResolverSpec<?>>> customFieldResolvers,
+    long mappingPlanCacheSize
+  ) {
+    this(jpaEntities, customFieldResolvers, mappingPlanCacheSize, null);
+  }
+
+  /**
+   * Creates a mapper that, when a {@link LambdaPropertyAccessorEngine} is provided, copies fields
+   * with accessors generated by the engine instead of evaluating SpEL expressions. The accessors
+   * of every DTO and entity class (e.g. the pairs returned by
+   * {@link MapperHelper#getDtoToEntityMapping}) are generated by this constructor, at startup.
+   * Paths that can't be resolved to accessors, and all the paths with engines that don't generate
+   * accessors, fall back to SpEL.
+   *
+   * @param jpaEntities             - DTO classes mapped to their entity classes
+   * @param customFieldResolvers    - custom field resolvers per class
+   * @param mappingPlanCacheSize    - maximum number of mapping plans kept in memory
+   * @param accessorEngine          - engine generating the accessors, null to use SpEL only
+   */
+  public JpaDtoMapper(
+    @NonNull Map<Class<?>, Class<?>> jpaEntities,
+    Map<Class<?>, List<CustomFieldResolverSpec<?>>> customFieldResolvers,
+    long mappingPlanCacheSize,
+    PropertyAccessorEngine accessorEngine
   ) {
     this.jpaEntities = HashBiMap.create(jpaEntities);
     this.customFieldResolvers = customFieldResolvers;
+    customFieldResolvers.forEach((clazz, resolverSpecs) -> {
+      Set<String> resolvedFields = new TreeSet<>(String.CASE_INSENSITIVE_ORDER);
+      for (CustomFieldResolverSpec<?> spec : resolverSpecs) {
+        resolvedFields.add(spec.getField());
+      }
+      customResolvedFields.put(clazz, resolvedFields);
+    });
+    this.accessorEngine = accessorEngine;
+    this.mappingPlans = CacheBuilder.newBuilder()
+      .maximumSize(mappingPlanCacheSize)
+      .recordStats()
+      .build(CacheLoader.from(this::createMappingPlan));
+
+    LambdaPropertyAccessorEngine generatedAccessors = getGeneratedAccessors();
+    if (generatedAccessors != null) {
+      for (Map.Entry<Class<?>, Class<?>> pair : this.jpaEntities.entrySet()) {
+        generatedAccessors.precompile(pair.getKey());
+        generatedAccessors.precompile(pair.getValue());
+      }
+    }
   }
   
   public Class<?> getEntityClassForDto(Class<?> dtoClass) {
@@ -70,8 +159,26 @@ public class JpaDtoMapper {
   public Class<?> getDtoClassForEntity(Class<?> entityClass) {
     return jpaEntities.inverse().get(entityClass);
   }
-  
 
+  /**
+   * Returns the statistics (hits, misses, evictions) of the mapping plan cache used by
+   * {@link #toDto(Object, QuerySpec, ResourceRegistry)}.
+   *
+   * @return a snapshot of the mapping plan cache statistics
+   */
+  public CacheStats getMappingPlanCacheStats() {
+    return mappingPlans.stats();
+  }
+
+  /**
+   * Returns the statistics (hits, misses, evictions) of the cache of selected fields per
+   * QuerySpec shape.
+   *
+   * @return a snapshot of the selected fields cache statistics
+   */
+  public CacheStats getSelectedFieldsCacheStats() {
+    return selectedFieldsCache.stats();
+  }
   
   /**
    * Converts an Entity to a DTO based on the selected fields and includes in the QuerySpec.
@@ -82,35 +189,153 @@ public class JpaDtoMapper {
    * @return the DTO
    */
   public Object toDto(Object entity, QuerySpec querySpec, ResourceRegistry resourceRegistry) {
-    Class<?> dtoClass = this.getDtoClassForEntity(entity.getClass());
+    return toDto(entity, querySpec, getSelectedFieldsPerClass(resourceRegistry, querySpec));
+  }
 
-    Map<Class<?>, Set<String>> selectedFieldsPerClass = getSelectedFieldsPerClass(resourceRegistry, querySpec);
-    Set<String> rootSelectedFields = selectedFieldsPerClass.get(dtoClass);
+  /**
+   * Converts a list of Entities to DTOs based on the selected fields and includes in the
+   * QuerySpec. The selected fields are resolved once for the whole list and the returned list
+   * keeps the order of the given entities.
+   *
+   * Entities are mapped sequentially on the calling thread since mapping can trigger lazy loading
+   * from the persistence context.
+   *
+   * @param entities
+   * @param querySpec
+   * @param resourceRegistry
+   * @return the DTOs
+   */
+  public List<Object> toDtos(
+    List<?> entities,
+    QuerySpec querySpec,
+    ResourceRegistry resourceRegistry
+  ) {
+    Map<Class<?>, Set<String>> selectedFieldsPerClass = getSelectedFieldsPerClass(
+      resourceRegistry, querySpec);
+
+    // The plan is only looked up again when the entity class changes.
+    List<Object> dtos = new ArrayList<>(entities.size());
+    Class<?> planEntityClass = null;
+    DtoMappingPlan plan = null;
+    for (Object entity : entities) {
+      if (entity.getClass() != planEntityClass) {
+        planEntityClass = entity.getClass();
+        plan = getMappingPlan(planEntityClass, querySpec, selectedFieldsPerClass);
+      }
+      dtos.add(plan.apply(entity));
+    }
+    return dtos;
+  }
 
-    Object dto = toSingleDto(entity, dtoClass, rootSelectedFields);
+  private Object toDto(
+    Object entity,
+    QuerySpec querySpec,
+    Map<Class<?>, Set<String>> selectedFieldsPerClass
+  ) {
+    return getMappingPlan(entity.getClass(), querySpec, selectedFieldsPerClass).apply(entity);
+  }
 
-    StandardEvaluationContext entityContext = new StandardEvaluationContext(entity);
-    StandardEvaluationContext dtoContext = new StandardEvaluationContext(dto);
+  /**
+   * Gets the to-many relations of the queried entities that mapping them with the given
+   * QuerySpec will load: the included collections and the relations declared by the selected
+   * custom field resolvers (see {@link CustomFieldResolverSpec#getPrefetchedRelations}). Lets the
+   * repository initialize them for a whole page with one query per relation.
+   *
+   * <p>
+   * Only the first element of an include path is considered: the relations below a prefetched
+   * collection (e.g. "b" of an "a.b" include where "a" is a collection) are not loaded by the
+   * prefetch query, they are loaded lazily, one query per element.
+   * </p>
+   *
+   * @param querySpec
+   * @param resourceRegistry
+   * @return the attribute names of the relations
+   */
+  public Set<String> getRelationsToPrefetch(
+    QuerySpec querySpec,
+    ResourceRegistry resourceRegistry
+  ) {
+    Class<?> dtoClass = querySpec.getResourceClass();
+    Set<String> relations = new LinkedHashSet<>();
 
     for (IncludeRelationSpec relation : querySpec.getIncludedRelations()) {
-      String pathString = String.join(".", relation.getAttributePath());
-      Class<?> relationDtoClass = getPropertyClass(dtoClass, relation.getAttributePath());
+      String relationName = relation.getAttributePath().get(0);
+      Class<?> relationClass = PropertyUtils.getPropertyClass(dtoClass, relationName);
+      if (Collection.class.isAssignableFrom(relationClass)) {
+        relations.add(relationName);
+      }
+    }
 
-      Object relationEntity;
-      try {
-        relationEntity = entityParser.parseExpression(pathString).getValue(entityContext);
-      } catch (EvaluationException ee) {
-        relationEntity = null;
+    Set<String> selectedFields = getSelectedFieldsPerClass(resourceRegistry, querySpec)
+      .get(dtoClass);
+    consumeFieldResolvers(dtoClass, cfr -> {
+      if (selectedFields.contains(cfr.getField())) {
+        for (Object relationName : cfr.getPrefetchedRelations()) {
+          relations.add((String) relationName);
+        }
       }
+    });
+    return relations;
+  }
 
-      if (relationEntity != null) {
-        Set<String> relationSelectedFields = selectedFieldsPerClass.get(relationDtoClass);
-        Object relationDto = toSingleDto(relationEntity, relationDtoClass, relationSelectedFields);
-        dtoParser.parseExpression(pathString).setValue(dtoContext, relationDto);
+  /**
+   * Gets the fields to select in a projection query for the given QuerySpec: the selected fields
+   * of a sparse fieldset (e.g. fields[employee]=name) plus the id. There is no projection when
+   * all the fields are requested, when relations are included or when a selected field has a
+   * custom field resolver (resolvers need the entity).
+   *
+   * @param querySpec
+   * @param resourceRegistry
+   * @return the field paths or null if the QuerySpec can't be answered by a projection
+   */
+  public List<String> getProjectedFields(QuerySpec querySpec, ResourceRegistry resourceRegistry) {
+    Class<?> dtoClass = querySpec.getResourceClass();
+    if (querySpec.getIncludedFields().isEmpty() || !querySpec.getIncludedRelations().isEmpty()) {
+      return null;
+    }
+
+    Set<String> selectedFields = getSelectedFieldsPerClass(resourceRegistry, querySpec)
+      .get(dtoClass);
+    for (String field : selectedFields) {
+      if (hasCustomFieldResolver(dtoClass, field)) {
+        return null;
       }
     }
+    return ImmutableList.copyOf(selectedFields);
+  }
 
-    return dto;
+  /**
+   * Converts the rows of a projection query to DTOs.
+   *
+   * @param rows
+   *          the rows, an Object[] with one value per field or the value itself when there is
+   *          only one field
+   * @param fields
+   *          the selected fields, as returned by {@link #getProjectedFields}
+   * @param dtoClass
+   * @return the DTOs in the order of the rows
+   */
+  @SneakyThrows(ReflectiveOperationException.class)
+  public List<Object> projectionsToDtos(List<?> rows, List<String> fields, Class<?> dtoClass) {
+    List<Expression> dtoExpressions = new ArrayList<>(fields.size());
+    for (String field : fields) {
+      dtoExpressions.add(dtoParser.parseExpression(field));
+    }
+    Constructor<?> dtoConstructor = dtoClass.getConstructor();
+
+    List<Object> dtos = new ArrayList<>(rows.size());
+    for (Object row : rows) {
+      Object[] values = fields.size() == 1 ? new Object[] { row } : (Object[]) row;
+      Object dto = dtoConstructor.newInstance();
+      for (int i = 0; i < values.length; i++) {
+        // Like the entity mapping, a null value leaves the (nested) DTO field unset.
+        if (values[i] != null) {
+          dtoExpressions.get(i).setValue(dto, values[i]);
+        }
+      }
+      dtos.add(dto);
+    }
+    return dtos;
   }
 
   /**
@@ -119,9 +344,11 @@ public class JpaDtoMapper {
    * @param dto
    * @param entity
    * @param resourceRegistry
-   * @param findFct function used to find an entity based on the exposed identifier
+   * @param findAllFct function used to find, in a single call, the entities of a relation based
+   *          on their exposed identifiers. Expected to fail on missing entities.
    */
-  public void applyDtoToEntity(Object dto, Object entity, ResourceRegistry resourceRegistry, BiFunction<Serializable, Class<?>,Object> findFct) {
+  public void applyDtoToEntity(Object dto, Object entity, ResourceRegistry resourceRegistry,
+      BiFunction<Collection<Serializable>, Class<?>, List<?>> findAllFct) {
     ResourceInformation resourceInformation = resourceRegistry.findEntry(dto.getClass())
         .getResourceInformation();
 
@@ -174,7 +401,7 @@ public class JpaDtoMapper {
       // which would set a to-one relation to null. targetIds being null means that no change is
       // made.
       if (targetIds != null) {
-        this.modifyRelation(entity, targetIds, relationName, findFct, (sourceCollection, targetEntities) -> {
+        this.modifyRelation(entity, targetIds, relationName, findAllFct, (sourceCollection, targetEntities) -> {
           sourceCollection.clear();
           sourceCollection.addAll(targetEntities);
         }, Collection::add, (targetEntity, oppositeFieldName, sourceEntity) -> PropertyUtils
@@ -222,8 +449,9 @@ public class JpaDtoMapper {
    *          The IDs of the target entities to add/remove to the relation.
    * @param fieldName
    *          The name of the relation field on the source entity.
-   @param findFct
-   *          Function used to find an entity based on the exposed identifier
+   * @param findAllFct
+   *          Function used to find, in a single call, the target entities based on their exposed
+   *          identifiers. Expected to fail on missing entities.
    * @param handleSourceCollectionAndTargetEntities
    *          When the source entity's relation field is a collection, how to handle the target
    *          entities (e.g. add or remove them to the collection).
@@ -237,7 +465,8 @@ public class JpaDtoMapper {
    *          the Crnk ResourceRegistry
    */
   public void modifyRelation(@NonNull Object sourceEntity,
-      @NonNull Iterable<Serializable> targetIds, @NonNull String fieldName, BiFunction<Serializable, Class<?>,Object> findFct,
+      @NonNull Collection<Serializable> targetIds, @NonNull String fieldName,
+      BiFunction<Collection<Serializable>, Class<?>, List<?>> findAllFct,
       BiConsumer<Collection<Object>, Collection<Object>> handleSourceCollectionAndTargetEntities,
       BiConsumer<Collection<Object>, Object> handleOppositeCollectionAndSourceEntity,
       TriConsumer<Object, String, Object> handleTargetEntityAndFieldNameAndSourceEntity,
@@ -250,9 +479,9 @@ public class JpaDtoMapper {
     Class<? extends Object> targetResourceClass = resourceRegistry.findEntry(dtoClass)
         .getResourceInformation().findRelationshipFieldByName(fieldName).getElementType();
 
-    Collection<Object> targetEntities = Streams.stream(targetIds)
-        .map(id -> findFct.apply(id, this.getEntityClassForDto(targetResourceClass)))
-        .collect(Collectors.toList());
+    Class<?> targetEntityClass = this.getEntityClassForDto(targetResourceClass);
+    Collection<Object> targetEntities = targetIds.isEmpty() ? new ArrayList<>()
+        : new ArrayList<>(findAllFct.apply(targetIds, targetEntityClass));
 
     // Get the current value of the source object's relation field.
     Object sourceFieldValue = PropertyUtils.getProperty(sourceEntity, fieldName);
@@ -312,43 +541,175 @@ public class JpaDtoMapper {
    * @return - true if the given class has custom field resolvers for a given
    *         field.
    */
-  private boolean hasCustomFieldResolver(Class<?> clazz, String field){
-    return !customFieldResolvers.getOrDefault(clazz, new ArrayList<>())
-        .stream()
-        .filter(cfr->StringUtils.equalsIgnoreCase(field, cfr.getField()))
-        .collect(Collectors.toList()).isEmpty();
+  private boolean hasCustomFieldResolver(Class<?> clazz, String field) {
+    Set<String> resolvedFields = customResolvedFields.get(clazz);
+    return resolvedFields != null && resolvedFields.contains(field);
   }
 
   /**
-   * Converts an Entity to a DTO, only including the fields on this DTO, not included DTOs.
+   * Gets the plan mapping an entity to a DTO with the selected fields and the included relations
+   * of a QuerySpec.
    */
-  @SneakyThrows
-  private Object toSingleDto(Object entity, Class<?> dtoClass, Set<String> selectedFields) {
-    Object dto = dtoClass.getConstructor().newInstance();
+  private DtoMappingPlan getMappingPlan(
+    Class<?> entityClass,
+    QuerySpec querySpec,
+    Map<Class<?>, Set<String>> selectedFieldsPerClass
+  ) {
+    Class<?> dtoClass = this.getDtoClassForEntity(entityClass);
 
-    StandardEvaluationContext entityContext = new StandardEvaluationContext(entity);
-    StandardEvaluationContext dtoContext = new StandardEvaluationContext(dto);
+    Map<String, DtoMappingPlan.Key> includedRelations = new LinkedHashMap<>();
+    for (IncludeRelationSpec relation : querySpec.getIncludedRelations()) {
+      Class<?> relationDtoClass = getPropertyClass(dtoClass, relation.getAttributePath());
+      includedRelations.put(
+        String.join(".", relation.getAttributePath()),
+        new DtoMappingPlan.Key(
+          this.getEntityClassForDto(relationDtoClass),
+          relationDtoClass,
+          ImmutableSet.copyOf(selectedFieldsPerClass.get(relationDtoClass)),
+          ImmutableMap.of()));
+    }
+
+    return mappingPlans.getUnchecked(new DtoMappingPlan.Key(
+      this.getEntityClassForDto(dtoClass),
+      dtoClass,
+      ImmutableSet.copyOf(selectedFieldsPerClass.get(dtoClass)),
+      ImmutableMap.copyOf(includedRelations)));
+  }
 
+  /**
+   * Resolves the accessors (or parses the expressions) required to map the selected fields of
+   * an entity to a DTO, and the plans of the included relations. Called once per plan key, the
+   * result is cached.
+   */
+  @SuppressWarnings("unchecked")
+  @SneakyThrows(NoSuchMethodException.class)
+  private DtoMappingPlan createMappingPlan(DtoMappingPlan.Key key) {
+    Class<?> dtoClass = key.getDtoClass();
+    Set<String> selectedFields = key.getSelectedFields();
+
+    List<DtoMappingPlan.FieldCopy> fieldCopies = new ArrayList<>();
     for (String field : selectedFields) {
-      Object value;
-      try {
-        value = entityParser.parseExpression(field).getValue(entityContext);
-      } catch (EvaluationException ee) {
-        value = null;
-      }
-      if (value != null && !hasCustomFieldResolver(dtoClass, field)) {
-        dtoParser.parseExpression(field).setValue(dtoContext, value);
+      if (!hasCustomFieldResolver(dtoClass, field)) {
+        DtoMappingPlan.FieldCopy fieldCopy = createAccessorFieldCopy(
+          key.getEntityClass(), dtoClass, field);
+        if (fieldCopy == null) {
+          fieldCopy = new DtoMappingPlan.ExpressionFieldCopy(
+            entityParser.parseExpression(field),
+            dtoParser.parseExpression(field));
+        }
+        fieldCopies.add(fieldCopy);
       }
     }
 
-    // Apply custom field resolvers:
+    List<DtoMappingPlan.ResolvedField> resolvedFields = new ArrayList<>();
+    LambdaPropertyAccessorEngine generatedAccessors = getGeneratedAccessors();
     consumeFieldResolvers(dtoClass, cfr -> {
       if (selectedFields.contains(cfr.getField())) {
-        dtoParser.parseExpression(cfr.getField()).setValue(dtoContext, cfr.getResolver().apply(entity));
+        BiConsumer<Object, Object> dtoSetter = generatedAccessors == null ? null
+            : generatedAccessors.findSetter(dtoClass, cfr.getField());
+        if (dtoSetter == null) {
+          Expression dtoExpression = dtoParser.parseExpression(cfr.getField());
+          dtoSetter = dtoExpression::setValue;
+        }
+        resolvedFields.add(new DtoMappingPlan.ResolvedField(dtoSetter, cfr.getResolver()));
       }
     });
 
-    return dto;
+    List<DtoMappingPlan.IncludedRelation> includedRelations = new ArrayList<>();
+    key.getIncludedRelations().forEach((path, relationKey) -> includedRelations.add(
+      new DtoMappingPlan.IncludedRelation(
+        entityParser.parseExpression(path),
+        dtoParser.parseExpression(path),
+        mappingPlans.getUnchecked(relationKey))));
+
+    return new DtoMappingPlan(
+      dtoClass.getConstructor(), fieldCopies, resolvedFields, includedRelations);
+  }
+
+  /**
+   * Creates a field copy using the generated accessors of each element of the field path.
+   *
+   * @return the field copy or null if the accessor engine doesn't generate accessors or an
+   *         element of the path has no accessible accessor.
+   */
+  private DtoMappingPlan.FieldCopy createAccessorFieldCopy(
+    Class<?> entityClass,
+    Class<?> dtoClass,
+    String field
+  ) {
+    LambdaPropertyAccessorEngine generatedAccessors = getGeneratedAccessors();
+    if (generatedAccessors == null || entityClass == null) {
+      return null;
+    }
+    String[] path = StringUtils.split(field, '.');
+
+    List<DtoMappingPlan.EntityStep> entitySteps = new ArrayList<>(path.length);
+    Class<?> entityType = entityClass;
+    for (String pathElement : path) {
+      Function<Object, Object> getter = generatedAccessors.findGetter(entityType, pathElement);
+      if (getter == null) {
+        return null;
+      }
+      entitySteps.add(new DtoMappingPlan.EntityStep(entityType, getter));
+      entityType = generatedAccessors.findPropertyType(entityType, pathElement);
+    }
+
+    List<DtoMappingPlan.NestedDtoStep> dtoSteps = new ArrayList<>(path.length - 1);
+    Class<?> dtoType = dtoClass;
+    for (int i = 0; i < path.length - 1; i++) {
+      Function<Object, Object> getter = generatedAccessors.findGetter(dtoType, path[i]);
+      BiConsumer<Object, Object> setter = generatedAccessors.findSetter(dtoType, path[i]);
+      dtoType = generatedAccessors.findPropertyType(dtoType, path[i]);
+      Constructor<?> constructor = dtoType == null ? null
+          : ConstructorUtils.getAccessibleConstructor(dtoType);
+      if (getter == null || setter == null || constructor == null) {
+        return null;
+      }
+      dtoSteps.add(new DtoMappingPlan.NestedDtoStep(getter, setter, constructor));
+    }
+
+    String lastElement = path[path.length - 1];
+    BiConsumer<Object, Object> dtoSetter = generatedAccessors.findSetter(dtoType, lastElement);
+    // SpEL converts values between types, the generated setters don't
+    if (dtoSetter == null || !ClassUtils.isAssignable(
+        entityType, generatedAccessors.findPropertyType(dtoType, lastElement), true)) {
+      return null;
+    }
+    return new DtoMappingPlan.AccessorFieldCopy(entitySteps, dtoSteps, dtoSetter);
+  }
+
+  /**
+   * Gets the engine generating the accessors used by the mapping plans.
+   *
+   * @return the engine or null if the accessor engine doesn't generate accessors
+   */
+  private LambdaPropertyAccessorEngine getGeneratedAccessors() {
+    return accessorEngine instanceof LambdaPropertyAccessorEngine
+        ? (LambdaPropertyAccessorEngine) accessorEngine
+        : null;
+  }
+
+  /**
+   * Gets the selected fields per class of a querySpec. The selected fields only depend on the
+   * shape of the querySpec (resource class, included fields, included relations and nested specs)
+   * so they are computed once per shape and cached. The returned map is immutable.
+   *
+   * @param resourceRegistry
+   * @param querySpec
+   * @return the selected fields per class
+   */
+  private Map<Class<?>, Set<String>> getSelectedFieldsPerClass(
+      ResourceRegistry resourceRegistry, QuerySpec querySpec) {
+    SelectedFieldsKey key = SelectedFieldsKey.of(querySpec);
+    Map<Class<?>, Set<String>> selectedFields = selectedFieldsCache.getIfPresent(key);
+    if (selectedFields == null) {
+      ImmutableMap.Builder<Class<?>, Set<String>> builder = ImmutableMap.builder();
+      computeSelectedFieldsPerClass(resourceRegistry, querySpec)
+          .forEach((clazz, fields) -> builder.put(clazz, ImmutableSet.copyOf(fields)));
+      selectedFields = builder.build();
+      selectedFieldsCache.put(key, selectedFields);
+    }
+    return selectedFields;
   }
 
   /**
@@ -358,7 +719,7 @@ public class JpaDtoMapper {
    * @param root
    * @return
    */
-  private Map<Class<?>, Set<String>> getSelectedFieldsPerClass(
+  private Map<Class<?>, Set<String>> computeSelectedFieldsPerClass(
       ResourceRegistry resourceRegistry, QuerySpec querySpec) {
     Map<Class<?>, Set<String>> selectedFields = new HashMap<>();
     
@@ -415,7 +776,7 @@ public class JpaDtoMapper {
     
     // Add the selected fields for includes where sparse fields are requested.
     for (QuerySpec nestedSpec : querySpec.getNestedSpecs()) {
-      selectedFields.putAll(this.getSelectedFieldsPerClass(resourceRegistry, nestedSpec));
+      selectedFields.putAll(this.computeSelectedFieldsPerClass(resourceRegistry, nestedSpec));
     }
     
     // Add the selected fields for includes where fields are not selected for that type.
@@ -426,7 +787,8 @@ public class JpaDtoMapper {
       );
       if (!selectedFields.containsKey(relationClass)) {
         selectedFields
-            .putAll(this.getSelectedFieldsPerClass(resourceRegistry, new QuerySpec(relationClass)));
+            .putAll(this.computeSelectedFieldsPerClass(
+                resourceRegistry, new QuerySpec(relationClass)));
       }
     }
     
@@ -434,7 +796,8 @@ public class JpaDtoMapper {
   }
 
   /**
-   * Get the class of a property that may be more than one element away.
+   * Get the class of a property that may be more than one element away. The element class is
+   * returned for collections.
    * 
    * @param baseType
    * @param attributePath
@@ -443,7 +806,14 @@ public class JpaDtoMapper {
   private Class<?> getPropertyClass(Class<?> baseType, List<String> attributePath) {
     Class<?> type = baseType;
     for (String pathElement : attributePath) {
-      type = PropertyUtils.getPropertyClass(type, pathElement);
+      Class<?> propertyClass = PropertyUtils.getPropertyClass(type, pathElement);
+      if (Collection.class.isAssignableFrom(propertyClass)) {
+        propertyClass = ResolvableType
+          .forField(FieldUtils.getField(type, pathElement, true), type)
+          .asCollection()
+          .resolveGeneric(0);
+      }
+      type = propertyClass;
     }
     return type;
   }
@@ -463,4 +833,31 @@ public class JpaDtoMapper {
     }
   }
 
+  /**
+   * Shape of a QuerySpec: the only parts of a QuerySpec the selected fields depend on.
+   */
+  @Value
+  private static class SelectedFieldsKey {
+    Class<?> resourceClass;
+    Set<List<String>> includedFields;
+    Set<List<String>> includedRelations;
+    Set<SelectedFieldsKey> nestedSpecs;
+
+    static SelectedFieldsKey of(QuerySpec querySpec) {
+      ImmutableSet.Builder<SelectedFieldsKey> nestedSpecs = ImmutableSet.builder();
+      for (QuerySpec nestedSpec : querySpec.getNestedSpecs()) {
+        nestedSpecs.add(of(nestedSpec));
+      }
+      return new SelectedFieldsKey(
+        querySpec.getResourceClass(),
+        querySpec.getIncludedFields().stream()
+          .<List<String>>map(spec -> ImmutableList.copyOf(spec.getAttributePath()))
+          .collect(ImmutableSet.toImmutableSet()),
+        querySpec.getIncludedRelations().stream()
+          .<List<String>>map(spec -> ImmutableList.copyOf(spec.getAttributePath()))
+          .collect(ImmutableSet.toImmutableSet()),
+        nestedSpecs.build());
+    }
+  }
+
 }
@@ -0,0 +1,298 @@
+package ca.gc.aafc.dina.mapper;
+
+import java.beans.IntrospectionException;
+import java.beans.Introspector;
+import java.beans.PropertyDescriptor;
+import java.lang.invoke.CallSite;
+import java.lang.invoke.LambdaMetafactory;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+
+import org.apache.commons.lang3.ClassUtils;
+
+import lombok.NonNull;
+import lombok.SneakyThrows;
+import lombok.Value;
+import lombok.extern.log4j.Log4j2;
+
+/**
+ * {@link PropertyAccessorEngine} generating a getter and a setter function once per class and
+ * property using the {@link LambdaMetafactory}. Once generated, reading or writing a property is
+ * a map lookup followed by a direct interface call: no introspection and no reflective
+ * invocation.
+ *
+ * <p>
+ * When a lambda can not be generated (e.g. non-public class or class not visible from this
+ * class loader) the accessor falls back to a {@link MethodHandle}. Properties without accessor
+ * methods (e.g. nested paths like "friend.name") are delegated to the fallback engine.
+ * </p>
+ */
+@Log4j2
+public class LambdaPropertyAccessorEngine implements PropertyAccessorEngine {
+
+  private static final MethodHandles.Lookup LOOKUP = MethodHandles.lookup();
+
+  private final ConcurrentMap<Class<?>, Map<String, Accessor>> accessorsPerClass =
+      new ConcurrentHashMap<>();
+
+  private final PropertyAccessorEngine fallback;
+
+  public LambdaPropertyAccessorEngine() {
+    this(new BeanUtilsPropertyAccessorEngine());
+  }
+
+  /**
+   * @param fallback - engine used for properties without generated accessors
+   */
+  public LambdaPropertyAccessorEngine(@NonNull PropertyAccessorEngine fallback) {
+    this.fallback = fallback;
+  }
+
+  @Override
+  public Object getProperty(Object bean, String property) {
+    Accessor accessor = getAccessor(bean.getClass(), property);
+    if (accessor == null || accessor.getGetter() == null) {
+      return fallback.getProperty(bean, property);
+    }
+    return accessor.getGetter().apply(bean);
+  }
+
+  @Override
+  public void setProperty(Object bean, String property, Object value) {
+    Accessor accessor = getAccessor(bean.getClass(), property);
+    if (accessor == null || accessor.getSetter() == null) {
+      fallback.setProperty(bean, property, value);
+      return;
+    }
+    accessor.getSetter().accept(bean, value);
+  }
+
+  @Override
+  public Class<?> getPropertyType(Object bean, String property) {
+    Accessor accessor = getAccessor(bean.getClass(), property);
+    if (accessor == null) {
+      return fallback.getPropertyType(bean, property);
+    }
+    return accessor.getType();
+  }
+
+  /**
+   * Generates the accessors of all the properties of a given class ahead of their first use,
+   * e.g. at application startup.
+   *
+   * @param beanClass - class to introspect
+   */
+  public void precompile(@NonNull Class<?> beanClass) {
+    accessorsPerClass.computeIfAbsent(beanClass, LambdaPropertyAccessorEngine::createAccessors);
+  }
+
+  /**
+   * Returns the generated getter of a property.
+   *
+   * @param beanClass - class declaring the property
+   * @param property  - name of the property (not a nested path)
+   * @return the getter or null if the property has no accessible read method
+   */
+  public Function<Object, Object> findGetter(Class<?> beanClass, String property) {
+    Accessor accessor = getAccessor(beanClass, property);
+    return accessor == null ? null : accessor.getGetter();
+  }
+
+  /**
+   * Returns the generated setter of a property.
+   *
+   * @param beanClass - class declaring the property
+   * @param property  - name of the property (not a nested path)
+   * @return the setter or null if the property has no accessible write method
+   */
+  public BiConsumer<Object, Object> findSetter(Class<?> beanClass, String property) {
+    Accessor accessor = getAccessor(beanClass, property);
+    return accessor == null ? null : accessor.getSetter();
+  }
+
+  /**
+   * Returns the declared type of a property.
+   *
+   * @param beanClass - class declaring the property
+   * @param property  - name of the property (not a nested path)
+   * @return the type or null if the class has no such property
+   */
+  public Class<?> findPropertyType(Class<?> beanClass, String property) {
+    Accessor accessor = getAccessor(beanClass, property);
+    return accessor == null ? null : accessor.getType();
+  }
+
+  private Accessor getAccessor(Class<?> beanClass, String property) {
+    return accessorsPerClass
+      .computeIfAbsent(beanClass, LambdaPropertyAccessorEngine::createAccessors)
+      .get(property);
+  }
+
+  /**
+   * Generates the accessors of all the properties of a given class.
+   *
+   * @param beanClass - class to introspect
+   * @return accessors by property name
+   */
+  @SneakyThrows(IntrospectionException.class)
+  private static Map<String, Accessor> createAccessors(Class<?> beanClass) {
+    Map<String, Accessor> accessors = new HashMap<>();
+    for (PropertyDescriptor descriptor : Introspector.getBeanInfo(beanClass)
+        .getPropertyDescriptors()) {
+      // Indexed only properties have no type
+      if (descriptor.getPropertyType() == null) {
+        continue;
+      }
+      Method readMethod = descriptor.getReadMethod();
+      Method writeMethod = descriptor.getWriteMethod();
+      accessors.put(descriptor.getName(), new Accessor(
+        descriptor.getPropertyType(),
+        readMethod == null ? null : createGetter(readMethod),
+        writeMethod == null ? null : createSetter(writeMethod)));
+    }
+    return accessors;
+  }
+
+  @SuppressWarnings("unchecked")
+  private static Function<Object, Object> createGetter(Method readMethod) {
+    MethodHandle handle = unreflect(readMethod);
+    if (handle == null) {
+      return null;
+    }
+
+    if (isLambdaCompatible(readMethod)) {
+      try {
+        CallSite site = LambdaMetafactory.metafactory(
+          LOOKUP,
+          "apply",
+          MethodType.methodType(Function.class),
+          MethodType.methodType(Object.class, Object.class),
+          handle,
+          MethodType.methodType(
+            ClassUtils.primitiveToWrapper(readMethod.getReturnType()),
+            readMethod.getDeclaringClass()));
+        return (Function<Object, Object>) site.getTarget().invokeExact();
+      } catch (Throwable t) {
+        log.debug("Can't generate getter lambda for {}, using a MethodHandle", readMethod, t);
+      }
+    }
+
+    MethodHandle genericHandle = handle.asType(MethodType.methodType(Object.class, Object.class));
+    return bean -> invokeGetter(genericHandle, bean);
+  }
+
+  @SuppressWarnings("unchecked")
+  private static BiConsumer<Object, Object> createSetter(Method writeMethod) {
+    MethodHandle handle = unreflect(writeMethod);
+    if (handle == null) {
+      return null;
+    }
+
+    if (isLambdaCompatible(writeMethod)) {
+      try {
+        CallSite site = LambdaMetafactory.metafactory(
+          LOOKUP,
+          "accept",
+          MethodType.methodType(BiConsumer.class),
+          MethodType.methodType(void.class, Object.class, Object.class),
+          handle,
+          MethodType.methodType(
+            void.class,
+            writeMethod.getDeclaringClass(),
+            ClassUtils.primitiveToWrapper(writeMethod.getParameterTypes()[0])));
+        return (BiConsumer<Object, Object>) site.getTarget().invokeExact();
+      } catch (Throwable t) {
+        log.debug("Can't generate setter lambda for {}, using a MethodHandle", writeMethod, t);
+      }
+    }
+
+    MethodHandle genericHandle = handle
+      .asType(MethodType.methodType(void.class, Object.class, Object.class));
+    return (bean, value) -> invokeSetter(genericHandle, bean, value);
+  }
+
+  @SneakyThrows
+  private static Object invokeGetter(MethodHandle handle, Object bean) {
+    return (Object) handle.invokeExact(bean);
+  }
+
+  @SneakyThrows
+  private static void invokeSetter(MethodHandle handle, Object bean, Object value) {
+    handle.invokeExact(bean, value);
+  }
+
+  /**
+   * Returns a method handle for the given method or null if the method is not accessible.
+   */
+  private static MethodHandle unreflect(Method method) {
+    try {
+      return LOOKUP.unreflect(method);
+    } catch (IllegalAccessException iaEx) {
+      try {
+        method.setAccessible(true);
+        return LOOKUP.unreflect(method);
+      } catch (IllegalAccessException | RuntimeException e) {
+        log.debug("Method {} is not accessible", method, e);
+        return null;
+      }
+    }
+  }
+
+  /**
+   * A lambda can only be generated for a public method of a public class whose types are all
+   * visible from the class loader of this class.
+   */
+  private static boolean isLambdaCompatible(Method method) {
+    if (!Modifier.isPublic(method.getModifiers())) {
+      return false;
+    }
+    for (Class<?> clazz = method.getDeclaringClass(); clazz != null;
+        clazz = clazz.getEnclosingClass()) {
+      if (!Modifier.isPublic(clazz.getModifiers())) {
+        return false;
+      }
+    }
+    if (!isVisible(method.getDeclaringClass()) || !isVisible(method.getReturnType())) {
+      return false;
+    }
+    for (Class<?> parameterType : method.getParameterTypes()) {
+      if (!isVisible(parameterType)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static boolean isVisible(Class<?> clazz) {
+    if (clazz.isPrimitive()) {
+      return true;
+    }
+    try {
+      return Class.forName(
+        clazz.getName(), false, LambdaPropertyAccessorEngine.class.getClassLoader()) == clazz;
+    } catch (ClassNotFoundException | LinkageError e) {
+      return false;
+    }
+  }
+
+  /**
+   * Generated accessors of a single property. Getter or setter can be null if the property is
+   * write-only or read-only.
+   */
+  @Value
+  private static class Accessor {
+    Class<?> type;
+    Function<Object, Object> getter;
+    BiConsumer<Object, Object> setter;
+  }
+
+}
@@ -0,0 +1,35 @@
+package ca.gc.aafc.dina.mapper;
+
+/**
+ * Strategy used by the {@link DinaMapper} to read and write the properties of beans.
+ */
+public interface PropertyAccessorEngine {
+
+  /**
+   * Returns the value of a given property of a given bean.
+   *
+   * @param bean     - bean to read
+   * @param property - name of the property
+   * @return the value of the property
+   */
+  Object getProperty(Object bean, String property);
+
+  /**
+   * Sets the value of a given property of a given bean.
+   *
+   * @param bean     - bean to modify
+   * @param property - name of the property
+   * @param value    - value to set
+   */
+  void setProperty(Object bean, String property, Object value);
+
+  /**
+   * Returns the declared type of a given property of a given bean.
+   *
+   * @param bean     - bean declaring the property
+   * @param property - name of the property
+   * @return the type of the property
+   */
+  Class<?> getPropertyType(Object bean, String property);
+
+}
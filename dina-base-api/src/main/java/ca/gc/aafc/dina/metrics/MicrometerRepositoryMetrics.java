@@ -0,0 +1,108 @@
+package ca.gc.aafc.dina.metrics;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import io.crnk.core.resource.annotations.JsonApiResource;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.NonNull;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Records the {@link RepositoryMetrics} as Micrometer meters tagged by JSON:API resource type:
+ * <ul>
+ * <li>{@value #OPERATION_TIMER} timers, also tagged by operation</li>
+ * <li>{@value #PHASE_TIMER} timers, also tagged by phase</li>
+ * <li>{@value #ROWS_MAPPED_COUNTER}, {@value #INCLUDES_REQUESTED_COUNTER} and
+ * {@value #FILTERS_APPLIED_COUNTER} counters</li>
+ * <li>{@value #PAGE_SIZE_SUMMARY} distribution summaries</li>
+ * </ul>
+ */
+@RequiredArgsConstructor
+public class MicrometerRepositoryMetrics implements RepositoryMetrics {
+
+  public static final String OPERATION_TIMER = "dina.repository.operation";
+  public static final String PHASE_TIMER = "dina.repository.phase";
+  public static final String ROWS_MAPPED_COUNTER = "dina.repository.rows.mapped";
+  public static final String INCLUDES_REQUESTED_COUNTER = "dina.repository.includes.requested";
+  public static final String FILTERS_APPLIED_COUNTER = "dina.repository.filters.applied";
+  public static final String PAGE_SIZE_SUMMARY = "dina.repository.page.size";
+
+  public static final String RESOURCE_TAG = "resource";
+  public static final String OPERATION_TAG = "operation";
+  public static final String PHASE_TAG = "phase";
+
+  @NonNull
+  private final MeterRegistry meterRegistry;
+
+  /** JSON:API type per DTO class. */
+  private final Map<Class<?>, String> resourceTypes = new ConcurrentHashMap<>();
+
+  @Override
+  public Timing startOperation(Class<?> resourceClass, Operation operation) {
+    Timer.Sample sample = Timer.start(meterRegistry);
+    return () -> sample.stop(Timer.builder(OPERATION_TIMER)
+        .description("Time of the JSON:API repository operations")
+        .tag(RESOURCE_TAG, getResourceType(resourceClass))
+        .tag(OPERATION_TAG, operation.getTagValue())
+        .register(meterRegistry));
+  }
+
+  @Override
+  public Timing startPhase(Class<?> resourceClass, Phase phase) {
+    Timer.Sample sample = Timer.start(meterRegistry);
+    return () -> sample.stop(Timer.builder(PHASE_TIMER)
+        .description("Time of the phases of the JSON:API repository operations")
+        .tag(RESOURCE_TAG, getResourceType(resourceClass))
+        .tag(PHASE_TAG, phase.getTagValue())
+        .register(meterRegistry));
+  }
+
+  @Override
+  public void countRowsMapped(Class<?> resourceClass, int count) {
+    increment(ROWS_MAPPED_COUNTER, "Entities or rows mapped to DTOs", resourceClass, count);
+  }
+
+  @Override
+  public void countIncludesRequested(Class<?> resourceClass, int count) {
+    increment(INCLUDES_REQUESTED_COUNTER, "Relations requested by the include parameter",
+        resourceClass, count);
+  }
+
+  @Override
+  public void countFiltersApplied(Class<?> resourceClass, int count) {
+    increment(FILTERS_APPLIED_COUNTER, "Filters of queries", resourceClass, count);
+  }
+
+  @Override
+  public void recordPageSize(Class<?> resourceClass, int size) {
+    DistributionSummary.builder(PAGE_SIZE_SUMMARY)
+        .description("Number of resources of the returned pages")
+        .baseUnit("resources")
+        .tag(RESOURCE_TAG, getResourceType(resourceClass))
+        .register(meterRegistry)
+        .record(size);
+  }
+
+  private void increment(String name, String description, Class<?> resourceClass, int count) {
+    Counter.builder(name)
+        .description(description)
+        .tag(RESOURCE_TAG, getResourceType(resourceClass))
+        .register(meterRegistry)
+        .increment(count);
+  }
+
+  /**
+   * Gets the JSON:API type of a DTO class, or its simple name if it isn't annotated.
+   */
+  private String getResourceType(Class<?> resourceClass) {
+    return resourceTypes.computeIfAbsent(resourceClass, clazz -> {
+      JsonApiResource annotation = clazz.getAnnotation(JsonApiResource.class);
+      return annotation != null ? annotation.type() : clazz.getSimpleName();
+    });
+  }
+
+}
@@ -0,0 +1,152 @@
+package ca.gc.aafc.dina.metrics;
+
+import java.util.function.Supplier;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Instrumentation points of the JSON:API repository layer: operations of the repositories,
+ * phases of the reads and writes and the sizes of the pages. Does nothing by default, see
+ * {@link MicrometerRepositoryMetrics}.
+ *
+ * The resources are identified by their DTO class.
+ */
+public interface RepositoryMetrics {
+
+  /** Implementation recording nothing. */
+  RepositoryMetrics NOOP = new RepositoryMetrics() {
+  };
+
+  /**
+   * Starts timing an operation of a repository.
+   *
+   * @param resourceClass the DTO class of the repository
+   * @param operation the operation
+   * @return the timing, to stop once the operation is done
+   */
+  default Timing startOperation(Class<?> resourceClass, Operation operation) {
+    return Timing.NOOP;
+  }
+
+  /**
+   * Starts timing a phase of an operation.
+   *
+   * @param resourceClass the DTO class of the read or written resources
+   * @param phase the phase
+   * @return the timing, to stop once the phase is done
+   */
+  default Timing startPhase(Class<?> resourceClass, Phase phase) {
+    return Timing.NOOP;
+  }
+
+  /**
+   * Counts the entities (or projected rows) mapped to DTOs.
+   */
+  default void countRowsMapped(Class<?> resourceClass, int count) {
+  }
+
+  /**
+   * Counts the relations requested by the include parameter of a query.
+   */
+  default void countIncludesRequested(Class<?> resourceClass, int count) {
+  }
+
+  /**
+   * Counts the filters of a query.
+   */
+  default void countFiltersApplied(Class<?> resourceClass, int count) {
+  }
+
+  /**
+   * Records the number of resources of a returned page.
+   */
+  default void recordPageSize(Class<?> resourceClass, int size) {
+  }
+
+  /**
+   * Times an operation, failed or not.
+   *
+   * @param resourceClass the DTO class of the repository
+   * @param operation the operation
+   * @param action runs the operation
+   * @return the result of the operation
+   */
+  default <T> T time(Class<?> resourceClass, Operation operation, Supplier<T> action) {
+    Timing timing = startOperation(resourceClass, operation);
+    try {
+      return action.get();
+    } finally {
+      timing.stop();
+    }
+  }
+
+  /**
+   * Times a phase of an operation, failed or not.
+   *
+   * @param resourceClass the DTO class of the read or written resources
+   * @param phase the phase
+   * @param action runs the phase
+   * @return the result of the phase
+   */
+  default <T> T timePhase(Class<?> resourceClass, Phase phase, Supplier<T> action) {
+    Timing timing = startPhase(resourceClass, phase);
+    try {
+      return action.get();
+    } finally {
+      timing.stop();
+    }
+  }
+
+  /**
+   * A started timing.
+   */
+  @FunctionalInterface
+  interface Timing {
+
+    Timing NOOP = () -> { };
+
+    void stop();
+  }
+
+  /**
+   * Timed operations of the repositories.
+   */
+  @Getter
+  @RequiredArgsConstructor
+  enum Operation {
+    FIND_ONE("findOne"),
+    FIND_ALL("findAll"),
+    CREATE("create"),
+    SAVE("save"),
+    DELETE("delete"),
+    /** Finds the targets of a relationship. */
+    FIND_RELATED("findRelated"),
+    /** Sets, adds or removes the targets of a relationship. */
+    MODIFY_RELATION("modifyRelation");
+
+    private final String tagValue;
+  }
+
+  /**
+   * Timed phases of a findAll, and of a create or save followed by the mapping of the response.
+   * The count can run while the page is queried, see
+   * {@link ca.gc.aafc.dina.repository.meta.JpaTotalMetaInformationProvider#setAsyncCount}.
+   */
+  @Getter
+  @RequiredArgsConstructor
+  enum Phase {
+    /**
+     * Queries of the page, its includes and its initialized collections. For a write: loading
+     * the entity and its related entities, persist, and the flush and refresh when requested.
+     */
+    QUERY("query"),
+    /** Meta information of the page, e.g. the total count. */
+    COUNT("count"),
+    /** Mapping of the entities or projected rows to DTOs, or of a written entity. */
+    MAPPING("mapping");
+
+    private final String tagValue;
+  }
+
+}
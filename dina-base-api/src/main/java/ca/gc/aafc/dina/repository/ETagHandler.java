@@ -0,0 +1,96 @@
+package ca.gc.aafc.dina.repository;
+
+import java.util.Date;
+
+import javax.annotation.Nullable;
+
+import org.apache.commons.lang3.StringUtils;
+
+/**
+ * Provides methods for conditional requests: strong entity tags derived from the
+ * {@link javax.persistence.Version} attribute of an entity, and their comparison with the
+ * "If-None-Match" and "If-Match" request headers.
+ * Example:
+ *   ETag: "3"
+ *
+ * "If-None-Match" uses the weak comparison and "If-Match" the strong comparison (RFC 7232 2.3.2),
+ * so a weak tag sent by a client or a cache never matches "If-Match".
+ */
+public final class ETagHandler {
+
+  private static final String WEAK_PREFIX = "W/";
+  private static final String ANY = "*";
+
+  private ETagHandler() {
+  }
+
+  /**
+   * Gets the strong entity tag of a version.
+   *
+   * @param version the value of the Version attribute, e.g. a number or a timestamp
+   * @return the entity tag or null if the version is null
+   */
+  public static String toETag(@Nullable Object version) {
+    if (version == null) {
+      return null;
+    }
+    String value = version instanceof Date
+        ? String.valueOf(((Date) version).getTime())
+        : version.toString();
+    return "\"" + value + "\"";
+  }
+
+  /**
+   * Checks if an entity tag is matched by an "If-None-Match" header: "*" matches any existing tag,
+   * otherwise one of the comma-separated tags must be weakly equal to it, ignoring "W/".
+   *
+   * @param header the value of the If-None-Match header
+   * @param eTag the current entity tag, null if the entity has none
+   * @return false if the header is blank or the entity has no tag
+   */
+  public static boolean matchesWeak(@Nullable String header, @Nullable String eTag) {
+    return matches(header, eTag, false);
+  }
+
+  /**
+   * Checks if an entity tag is matched by an "If-Match" header: "*" matches any existing tag,
+   * otherwise one of the comma-separated tags must be strongly equal to it: both tags are strong
+   * and identical.
+   *
+   * @param header the value of the If-Match header
+   * @param eTag the current entity tag, null if the entity has none
+   * @return false if the header is blank or the entity has no tag
+   */
+  public static boolean matchesStrong(@Nullable String header, @Nullable String eTag) {
+    return matches(header, eTag, true);
+  }
+
+  private static boolean matches(@Nullable String header, @Nullable String eTag, boolean strong) {
+    if (StringUtils.isBlank(header) || eTag == null) {
+      return false;
+    }
+    for (String candidate : header.split(",")) {
+      String trimmed = candidate.trim();
+      if (ANY.equals(trimmed)) {
+        return true;
+      }
+      if (strong) {
+        if (!isWeak(eTag) && eTag.equals(trimmed)) {
+          return true;
+        }
+      } else if (toOpaqueTag(eTag).equals(toOpaqueTag(trimmed))) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private static boolean isWeak(String eTag) {
+    return eTag.startsWith(WEAK_PREFIX);
+  }
+
+  private static String toOpaqueTag(String eTag) {
+    return StringUtils.removeStart(eTag, WEAK_PREFIX);
+  }
+
+}
@@ -1,39 +1,78 @@
 package ca.gc.aafc.dina.repository;
 
 import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Consumer;
 import java.util.function.Function;
 import java.util.stream.Collectors;
 
 import javax.annotation.Nullable;
 import javax.inject.Inject;
 import javax.persistence.EntityManager;
+import javax.persistence.PersistenceUnitUtil;
+import javax.persistence.TypedQuery;
 import javax.persistence.criteria.CriteriaBuilder;
+import javax.persistence.criteria.CriteriaDelete;
 import javax.persistence.criteria.CriteriaQuery;
 import javax.persistence.criteria.Expression;
 import javax.persistence.criteria.FetchParent;
 import javax.persistence.criteria.From;
 import javax.persistence.criteria.JoinType;
 import javax.persistence.criteria.Order;
+import javax.persistence.criteria.Path;
 import javax.persistence.criteria.Predicate;
+import javax.persistence.criteria.Root;
 import javax.persistence.criteria.Selection;
+import javax.persistence.metamodel.Attribute;
+import javax.persistence.metamodel.Attribute.PersistentAttributeType;
+import javax.persistence.metamodel.ManagedType;
+import javax.persistence.metamodel.Metamodel;
 import javax.transaction.Transactional;
 
+import org.apache.commons.lang3.StringUtils;
+import org.hibernate.ScrollMode;
+import org.hibernate.ScrollableResults;
+import org.hibernate.engine.spi.EntityEntry;
+import org.hibernate.engine.spi.EntityKey;
+import org.hibernate.engine.spi.SessionImplementor;
+import org.hibernate.query.Query;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Repository;
 
+import com.google.common.collect.Iterables;
+
 import ca.gc.aafc.dina.jpa.BaseDAO;
+import ca.gc.aafc.dina.jpa.EntityIdentifierMetadata;
 import ca.gc.aafc.dina.mapper.JpaDtoMapper;
+import ca.gc.aafc.dina.metrics.RepositoryMetrics;
+import ca.gc.aafc.dina.metrics.RepositoryMetrics.Phase;
+import ca.gc.aafc.dina.metrics.RepositoryMetrics.Timing;
 import ca.gc.aafc.dina.repository.meta.JpaMetaInformationProvider;
 import ca.gc.aafc.dina.repository.meta.JpaMetaInformationProvider.JpaMetaInformationParams;
+import ca.gc.aafc.dina.repository.meta.KeysetPagedMetaInformation;
 import ca.gc.aafc.dina.util.TriFunction;
 import io.crnk.core.engine.internal.utils.PropertyUtils;
 import io.crnk.core.engine.registry.ResourceRegistry;
+import io.crnk.core.exception.ResourceNotFoundException;
 import io.crnk.core.queryspec.Direction;
 import io.crnk.core.queryspec.IncludeRelationSpec;
 import io.crnk.core.queryspec.QuerySpec;
+import io.crnk.core.queryspec.SortSpec;
 import io.crnk.core.resource.list.DefaultResourceList;
 import io.crnk.core.resource.list.ResourceList;
+import io.crnk.core.resource.meta.MetaInformation;
 import lombok.Builder;
 import lombok.Getter;
 import lombok.NonNull;
@@ -57,9 +96,32 @@ public class JpaDtoRepository {
   @Getter
   private final JpaDtoMapper dtoJpaMapper;
   
+  /**
+   * Metrics of the repository layer, shared by the resource and relationship repositories using
+   * this repository. Records nothing unless a {@link RepositoryMetrics} bean is injected, see
+   * {@link ca.gc.aafc.dina.DinaBaseApiAutoConfiguration}.
+   */
+  @NonNull
+  @Getter
+  private RepositoryMetrics repositoryMetrics = RepositoryMetrics.NOOP;
+
+  /** Default fetch size of {@link #streamAll}. */
+  public static final int DEFAULT_STREAM_FETCH_SIZE = 500;
+
   /* Forces CRNK to not display any top-level links. */
   private static final NoLinkInformation NO_LINK_INFORMATION = new NoLinkInformation();
 
+  /**
+   * Sets the metrics of the repository layer. Injected when a {@link RepositoryMetrics} bean
+   * exists.
+   *
+   * @param repositoryMetrics the metrics
+   */
+  @Autowired(required = false)
+  public void setRepositoryMetrics(@NonNull RepositoryMetrics repositoryMetrics) {
+    this.repositoryMetrics = repositoryMetrics;
+  }
+
   /**
    * Query the DTO repository backed by a JPA datasource for a list of DTOs.
    *
@@ -94,55 +156,436 @@ public class JpaDtoRepository {
 
     From<?, ?> targetPath = customRoot != null ? customRoot.apply(sourcePath) : sourcePath;
 
+    // The to-many relations are initialized per page after the query (no row repetition).
+    Set<String> prefetchedRelations = dtoJpaMapper.getRelationsToPrefetch(
+        querySpec, resourceRegistry);
+
+    List<String> projectedFields = options.isProjection() && !options.isKeysetPagination()
+        ? getProjectedFields(targetPath.getJavaType(), querySpec, resourceRegistry)
+        : null;
+
+    boolean twoPhaseIncludes = !querySpec.getIncludedRelations().isEmpty()
+        && options.getIncludeLoadingStrategy() == IncludeLoadingStrategy.TWO_PHASE;
+    if (projectedFields != null) {
+      // Select the columns of the selected fields only, the entities are not loaded.
+      criteriaQuery.multiselect(projectedFields.stream()
+          .<Selection<?>>map(field -> SelectionHandler.getExpression(
+              targetPath, Arrays.asList(StringUtils.split(field, '.'))))
+          .collect(Collectors.toList()));
+    } else if (twoPhaseIncludes) {
+      // Page the ids only, the entities and their includes are loaded by a second query.
+      criteriaQuery.select((Selection) getDatabaseIdPath(targetPath));
+    } else {
+      criteriaQuery.select((Selection) targetPath);
+
+      // Eager load any included entities:
+      fetchIncludedRelations(targetPath, querySpec, prefetchedRelations);
+    }
+
+    List<SortSpec> keys = null;
+    List<Expression<?>> keyExpressions = null;
+    Predicate keysetRestriction = null;
+    if (options.isKeysetPagination()) {
+      // Order by the keys, and start after the cursor of the previous page if any.
+      keys = KeysetPaginationHandler.getKeys(querySpec, targetDtoClass, resourceRegistry);
+      keyExpressions = KeysetPaginationHandler.getKeyExpressions(targetPath, keys);
+      criteriaQuery.orderBy(KeysetPaginationHandler.getOrders(keys, keyExpressions, cb));
+
+      Optional<String> cursor = KeysetPaginationHandler.findCursor(querySpec);
+      if (cursor.isPresent()) {
+        keysetRestriction = KeysetPaginationHandler.getRestriction(
+            cursor.get(), keys, keyExpressions, cb);
+      }
+
+      if (twoPhaseIncludes) {
+        // The next cursor is built from the keys of the last paged id, the second query may not
+        // return that row if it was deleted in between.
+        List<Selection<?>> selections = new ArrayList<>();
+        selections.add(getDatabaseIdPath(targetPath));
+        selections.addAll(keyExpressions);
+        criteriaQuery.multiselect(selections);
+      }
+    } else {
+      criteriaQuery.orderBy(getOrders(querySpec, targetPath, targetDtoClass, resourceRegistry, cb));
+    }
+
+    // Add the custom filter and the keyset restriction to the criteria query.
+    List<Predicate> restrictions = new ArrayList<>();
+    if (customFilter != null) {
+      restrictions.add(customFilter.apply(targetPath, criteriaQuery, cb));
+    }
+    if (keysetRestriction != null) {
+      restrictions.add(keysetRestriction);
+    }
+    if (!restrictions.isEmpty()) {
+      criteriaQuery.where(restrictions.toArray(new Predicate[0]));
+    }
+
+    int limit = Optional.ofNullable(querySpec.getLimit()).orElse(Long.valueOf(100)).intValue();
+    TypedQuery<?> query = entityManager.createQuery(criteriaQuery);
+    if (options.isKeysetPagination()) {
+      // One extra row tells if there is a next page, the offset is replaced by the cursor.
+      query.setMaxResults(limit + 1);
+    } else {
+      query.setFirstResult(
+          Optional.ofNullable(querySpec.getOffset()).orElse(Long.valueOf(0)).intValue());
+      query.setMaxResults(limit);
+    }
+
+    // Start the meta information (e.g. total count) so it can run while the page is fetched.
+    Timing countTiming = repositoryMetrics.startPhase(targetDtoClass, Phase.COUNT);
+    CompletableFuture<MetaInformation> metaInformationFuture = metaInformationProvider
+        .getMetaInformationAsync(
+            JpaMetaInformationParams.builder()
+              .sourceResourceClass(sourceDtoClass)
+              .customRoot(customRoot).customFilter(customFilter)
+              .querySpec(querySpec)
+              .restrictedByQuerySpecOnly(options.isRestrictedByQuerySpecOnly())
+              .countScope(options.getCountScope())
+              .build()
+        )
+        .whenComplete((meta, exception) -> countTiming.stop());
+
+    Timing queryTiming = repositoryMetrics.startPhase(targetDtoClass, Phase.QUERY);
+    List<?> result = query.getResultList();
+
+    boolean hasNextPage = options.isKeysetPagination() && result.size() > limit;
+    String nextCursor = null;
+    if (hasNextPage) {
+      result = result.subList(0, limit);
+      Object lastRow = result.get(limit - 1);
+      nextCursor = twoPhaseIncludes
+          ? KeysetPaginationHandler.createCursorFromValues(
+              Arrays.asList((Object[]) lastRow).subList(1, keys.size() + 1), keys)
+          : KeysetPaginationHandler.createCursor(lastRow, keys);
+    }
+
+    if (twoPhaseIncludes) {
+      List<?> ids = options.isKeysetPagination()
+          ? result.stream().map(row -> ((Object[]) row)[0]).collect(Collectors.toList())
+          : result;
+      result = findAllWithIncludedRelations(
+          targetPath.getJavaType(), ids, querySpec, prefetchedRelations);
+    }
+
+    if (projectedFields == null) {
+      // Initialize the collections read by the mapping for the whole page.
+      for (String relation : prefetchedRelations) {
+        initializeCollection(targetPath.getJavaType(), result, relation);
+      }
+    }
+    queryTiming.stop();
+
+    Timing mappingTiming = repositoryMetrics.startPhase(targetDtoClass, Phase.MAPPING);
+    List<Object> mappedDtos = projectedFields != null
+        ? dtoJpaMapper.projectionsToDtos(result, projectedFields, targetDtoClass)
+        : dtoJpaMapper.toDtos(result, querySpec, resourceRegistry);
+    mappingTiming.stop();
+
+    repositoryMetrics.countRowsMapped(targetDtoClass, mappedDtos.size());
+    repositoryMetrics.countIncludesRequested(
+        targetDtoClass, querySpec.getIncludedRelations().size());
+    repositoryMetrics.countFiltersApplied(targetDtoClass, querySpec.getFilters().size());
+    repositoryMetrics.recordPageSize(targetDtoClass, mappedDtos.size());
+
+    @SuppressWarnings("unchecked")
+    List<D> dtos = (List<D>) (List<?>) mappedDtos;
+
+    MetaInformation metaInformation = join(metaInformationFuture);
+    if (options.isKeysetPagination()) {
+      metaInformation = KeysetPagedMetaInformation.of(metaInformation, nextCursor);
+    }
+
+    return new DefaultResourceList<>(dtos, metaInformation, NO_LINK_INFORMATION);
+  }
+
+  /**
+   * Streams the DTOs matching a query instead of returning a page, e.g. to export a whole
+   * collection. The entities are read with a forward-only cursor using the given fetch size and
+   * mapped by chunks of that size, the entities loaded by the stream being detached after each
+   * chunk so the memory use doesn't grow with the result size.
+   *
+   * <p>
+   * Must be called in a transaction. Pending changes are flushed first. The streamed entities, and
+   * the entities they loaded, are read-only and detached once mapped; the entities managed before
+   * the call stay managed. The pagination, keyset pagination, projection and include
+   * loading strategy options are not used, the meta information is not computed.
+   * </p>
+   *
+   * @param options
+   *          the query, see {@link #findAll}
+   * @param fetchSize
+   *          number of rows fetched from the database at once, and mapped per chunk
+   * @param consumer
+   *          receives the DTOs in order, e.g. a {@link ca.gc.aafc.dina.json.NdjsonWriter}
+   * @return the number of streamed DTOs
+   */
+  @SuppressWarnings({ "unchecked", "rawtypes" })
+  public <D> long streamAll(FindAllParams options, int fetchSize, Consumer<? super D> consumer) {
+    QuerySpec querySpec = options.getQuerySpec();
+    ResourceRegistry resourceRegistry = options.getResourceRegistry();
+    Function<From<?, ?>, From<?, ?>> customRoot = options.getCustomRoot();
+    TriFunction<From<?, ?>, CriteriaQuery<?>, CriteriaBuilder, Predicate> customFilter = options
+        .getCustomFilter();
+
+    CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+    CriteriaQuery<?> criteriaQuery = cb.createQuery();
+    From<?, ?> sourcePath = criteriaQuery.from(
+        dtoJpaMapper.getEntityClassForDto(options.getSourceDtoClass()));
+    From<?, ?> targetPath = customRoot != null ? customRoot.apply(sourcePath) : sourcePath;
     criteriaQuery.select((Selection) targetPath);
 
-    // Eager load any included entities:
-    for (IncludeRelationSpec relation : querySpec.getIncludedRelations()) {
-      FetchParent<?, ?> join = targetPath;
-      for (String path : relation.getAttributePath()) {
-        join = join.fetch(path, JoinType.LEFT);
+    // The to-many relations are initialized per chunk, scrolling over fetched collections would
+    // split them.
+    Set<String> prefetchedRelations = dtoJpaMapper.getRelationsToPrefetch(
+        querySpec, resourceRegistry);
+    fetchIncludedRelations(targetPath, querySpec, prefetchedRelations);
+
+    criteriaQuery.orderBy(getOrders(
+        querySpec, targetPath, querySpec.getResourceClass(), resourceRegistry, cb));
+    if (customFilter != null) {
+      criteriaQuery.where(customFilter.apply(targetPath, criteriaQuery, cb));
+    }
+
+    SessionImplementor session = entityManager.unwrap(SessionImplementor.class);
+    if (session.isDirty()) {
+      // The streamed rows include the pending changes.
+      session.flush();
+    }
+    // Only the entities loaded by the stream are detached after each chunk.
+    Set<EntityKey> managedBefore = new HashSet<>();
+    for (Map.Entry<Object, EntityEntry> entry
+        : session.getPersistenceContext().reentrantSafeEntityEntries()) {
+      managedBefore.add(entry.getValue().getEntityKey());
+    }
+
+    Query<?> query = entityManager.createQuery(criteriaQuery).unwrap(Query.class);
+    query.setFetchSize(fetchSize);
+    query.setReadOnly(true);
+
+    long count = 0;
+    List<Object> chunk = new ArrayList<>(fetchSize);
+    ScrollableResults results = query.scroll(ScrollMode.FORWARD_ONLY);
+    try {
+      while (results.next()) {
+        chunk.add(results.get(0));
+        if (chunk.size() == fetchSize) {
+          count += mapChunk(targetPath.getJavaType(), chunk, querySpec, resourceRegistry,
+              prefetchedRelations, (Consumer<Object>) consumer);
+          detachLoadedEntities(session, managedBefore);
+        }
+      }
+      count += mapChunk(targetPath.getJavaType(), chunk, querySpec, resourceRegistry,
+          prefetchedRelations, (Consumer<Object>) consumer);
+      detachLoadedEntities(session, managedBefore);
+    } finally {
+      results.close();
+    }
+    return count;
+  }
+
+  /**
+   * Maps a chunk of streamed entities, then empties the chunk.
+   *
+   * @return the number of mapped entities
+   */
+  private int mapChunk(
+      Class<?> entityClass,
+      List<Object> chunk,
+      QuerySpec querySpec,
+      ResourceRegistry resourceRegistry,
+      Set<String> prefetchedRelations,
+      Consumer<Object> consumer
+  ) {
+    int size = chunk.size();
+    if (size == 0) {
+      return 0;
+    }
+    for (String relation : prefetchedRelations) {
+      initializeCollection(entityClass, chunk, relation);
+    }
+    dtoJpaMapper.toDtos(chunk, querySpec, resourceRegistry).forEach(consumer);
+    repositoryMetrics.countRowsMapped(querySpec.getResourceClass(), size);
+
+    chunk.clear();
+    return size;
+  }
+
+  /**
+   * Detaches the entities that were not in the persistence context before streaming.
+   */
+  private void detachLoadedEntities(SessionImplementor session, Set<EntityKey> managedBefore) {
+    for (Map.Entry<Object, EntityEntry> entry
+        : session.getPersistenceContext().reentrantSafeEntityEntries()) {
+      // Already detached entries (cascaded detach) are ignored by detach.
+      if (!managedBefore.contains(entry.getValue().getEntityKey())) {
+        entityManager.detach(entry.getKey());
       }
     }
+  }
 
+  /**
+   * Gets the requested sorts, or the ascending id when no sorts are requested.
+   */
+  private static List<Order> getOrders(
+      QuerySpec querySpec,
+      From<?, ?> targetPath,
+      Class<?> targetDtoClass,
+      ResourceRegistry resourceRegistry,
+      CriteriaBuilder cb
+  ) {
     if (querySpec.getSort().isEmpty()) {
       // When no sorts are requested, sort by ascending ID by default.
-      criteriaQuery.orderBy(cb.asc(
+      return Collections.singletonList(cb.asc(
           SelectionHandler.getIdExpression(targetPath, targetDtoClass, resourceRegistry)));
-    } else {
-      // Otherwise use the requested sorts.
-      List<Order> orders = querySpec.getSort().stream().map(sort -> {
-        Function<Expression<?>, Order> orderFunc = sort.getDirection() == Direction.ASC ? cb::asc
-            : cb::desc;
-        return orderFunc
-            .apply(SelectionHandler.getExpression(targetPath, sort.getAttributePath()));
-      }).collect(Collectors.toList());
+    }
+
+    // Otherwise use the requested sorts.
+    return querySpec.getSort().stream().map(sort -> {
+      Function<Expression<?>, Order> orderFunc = sort.getDirection() == Direction.ASC ? cb::asc
+          : cb::desc;
+      return orderFunc
+          .apply(SelectionHandler.getExpression(targetPath, sort.getAttributePath()));
+    }).collect(Collectors.toList());
+  }
 
-      criteriaQuery.orderBy(orders);
+  /**
+   * Gets the fields of a projection query, see {@link JpaDtoMapper#getProjectedFields}. Each
+   * field must be a path of singular attributes of the entity ending on a basic attribute.
+   *
+   * @return the fields or null if the query must load the entities
+   */
+  private List<String> getProjectedFields(
+      Class<?> entityClass, QuerySpec querySpec, ResourceRegistry resourceRegistry) {
+    List<String> fields = dtoJpaMapper.getProjectedFields(querySpec, resourceRegistry);
+    if (fields == null) {
+      return null;
     }
 
-    // Add the custom filter to the criteria query.
-    if (customFilter != null) {
-      criteriaQuery.where(customFilter.apply(targetPath, criteriaQuery, cb));
+    Metamodel metamodel = entityManager.getMetamodel();
+    for (String field : fields) {
+      ManagedType<?> type = metamodel.managedType(entityClass);
+      for (String pathElement : StringUtils.split(field, '.')) {
+        if (type == null) {
+          return null;
+        }
+        Attribute<?, ?> attribute;
+        try {
+          attribute = type.getAttribute(pathElement);
+        } catch (IllegalArgumentException iaEx) {
+          // e.g. a DTO field derived from other fields
+          return null;
+        }
+        if (attribute.isCollection()) {
+          return null;
+        }
+        type = attribute.getPersistentAttributeType() == PersistentAttributeType.BASIC
+            ? null
+            : metamodel.managedType(attribute.getJavaType());
+      }
+      if (type != null) {
+        // The path ends on an entity or embeddable, not a column.
+        return null;
+      }
     }
+    return fields;
+  }
 
-    List<?> result = entityManager.createQuery(criteriaQuery)
-        .setFirstResult(
-            Optional.ofNullable(querySpec.getOffset()).orElse(Long.valueOf(0)).intValue())
-        .setMaxResults(
-            Optional.ofNullable(querySpec.getLimit()).orElse(Long.valueOf(100)).intValue())
-        .getResultList();
+  /**
+   * Gets the path of the database id of the given entity path.
+   */
+  private Path<?> getDatabaseIdPath(From<?, ?> path) {
+    return path.get(baseDAO.getIdentifierMetadata(path.getJavaType()).getDatabaseIdName());
+  }
 
-    return new DefaultResourceList<>(
-      result.stream()
-        .map(entity -> (D) dtoJpaMapper.toDto(entity, querySpec, resourceRegistry))
-        .collect(Collectors.toList()),
-        metaInformationProvider.getMetaInformation(
-            JpaMetaInformationParams.builder()
-              .sourceResourceClass(sourceDtoClass)
-              .customRoot(customRoot).customFilter(customFilter).build()
-        ),
-        NO_LINK_INFORMATION
-      );
+  /**
+   * Adds a fetch join for each included relation, except the prefetched to-many relations.
+   */
+  private static void fetchIncludedRelations(
+      From<?, ?> root, QuerySpec querySpec, Set<String> prefetchedRelations) {
+    for (IncludeRelationSpec relation : querySpec.getIncludedRelations()) {
+      if (prefetchedRelations.contains(relation.getAttributePath().get(0))) {
+        continue;
+      }
+      FetchParent<?, ?> join = root;
+      for (String path : relation.getAttributePath()) {
+        join = SelectionHandler.getOrCreateFetch(join, path);
+      }
+    }
+  }
+
+  /**
+   * Loads the entities of a page of database ids with their included relations, using IN queries
+   * without pagination. Package-private for testing.
+   *
+   * @return the entities in the order of the given ids, without the ids deleted since the page
+   *         query
+   */
+  <T> List<T> findAllWithIncludedRelations(
+      Class<T> entityClass, List<?> ids, QuerySpec querySpec, Set<String> prefetchedRelations) {
+    String idName = baseDAO.getIdentifierMetadata(entityClass).getDatabaseIdName();
+    PersistenceUnitUtil persistenceUnitUtil = entityManager.getEntityManagerFactory()
+        .getPersistenceUnitUtil();
+    CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+
+    Map<Object, T> entitiesById = new HashMap<>();
+    for (List<?> chunk : Iterables.partition(ids, BaseDAO.MAX_IN_CLAUSE_SIZE)) {
+      CriteriaQuery<T> criteriaQuery = cb.createQuery(entityClass);
+      Root<T> root = criteriaQuery.from(entityClass);
+      fetchIncludedRelations(root, querySpec, prefetchedRelations);
+      criteriaQuery.where(root.get(idName).in(chunk));
+
+      for (T entity : entityManager.createQuery(criteriaQuery).getResultList()) {
+        entitiesById.put(persistenceUnitUtil.getIdentifier(entity), entity);
+      }
+    }
+    return ids.stream()
+        .map(entitiesById::get)
+        .filter(Objects::nonNull)
+        .collect(Collectors.toList());
+  }
+
+  /**
+   * Initializes a to-many relation of the given entities with one fetch join query (per
+   * MAX_IN_CLAUSE_SIZE entities), instead of one lazy load per entity. The entities where the
+   * relation is already loaded are skipped.
+   */
+  private <T> void initializeCollection(
+      Class<T> entityClass, List<?> entities, String attributeName) {
+    PersistenceUnitUtil persistenceUnitUtil = entityManager.getEntityManagerFactory()
+        .getPersistenceUnitUtil();
+    List<Object> ids = entities.stream()
+        .filter(entity -> !persistenceUnitUtil.isLoaded(entity, attributeName))
+        .map(persistenceUnitUtil::getIdentifier)
+        .collect(Collectors.toList());
+    if (ids.isEmpty()) {
+      return;
+    }
+
+    String idName = baseDAO.getIdentifierMetadata(entityClass).getDatabaseIdName();
+    CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+    for (List<Object> chunk : Iterables.partition(ids, BaseDAO.MAX_IN_CLAUSE_SIZE)) {
+      // The managed entities get their collection filled by the fetch join.
+      CriteriaQuery<T> criteriaQuery = cb.createQuery(entityClass);
+      Root<T> root = criteriaQuery.from(entityClass);
+      root.fetch(attributeName, JoinType.LEFT);
+      criteriaQuery.where(root.get(idName).in(chunk));
+      entityManager.createQuery(criteriaQuery).getResultList();
+    }
+  }
+
+  /**
+   * Waits for a future, rethrowing the exception it completed with (if any) as is.
+   */
+  private static <T> T join(CompletableFuture<T> future) {
+    try {
+      return future.join();
+    } catch (CompletionException cEx) {
+      if (cEx.getCause() instanceof RuntimeException) {
+        throw (RuntimeException) cEx.getCause();
+      }
+      throw cEx;
+    }
   }
 
   /**
@@ -152,6 +595,48 @@ public class JpaDtoRepository {
    * @return the updated resource's ID
    */
   public Serializable save(Object resource, ResourceRegistry resourceRegistry) {
+    return save(resource, resourceRegistry, null);
+  }
+
+  /**
+   * Update a JPA entity using a DTO if its current entity tag matches the given "If-Match"
+   * header. See {@link #saveEntity(Object, ResourceRegistry, String)}.
+   *
+   * @param resource
+   * @param ifMatch
+   *          the value of the If-Match header, null to update unconditionally
+   * @return the updated resource's ID
+   */
+  public Serializable save(
+      Object resource, ResourceRegistry resourceRegistry, @Nullable String ifMatch) {
+    return getExposedId(saveEntity(resource, resourceRegistry, ifMatch));
+  }
+
+  /**
+   * Update a JPA entity using a DTO.
+   *
+   * @param resource
+   * @return the updated entity, managed by the persistence context
+   */
+  public Object saveEntity(Object resource, ResourceRegistry resourceRegistry) {
+    return saveEntity(resource, resourceRegistry, null);
+  }
+
+  /**
+   * Update a JPA entity using a DTO if its current entity tag matches the given "If-Match"
+   * header. The tag is checked against the entity loaded for the update, without an extra read;
+   * a concurrent update committed after that check is still rejected by the optimistic lock of
+   * the Version attribute.
+   * The header is ignored for an entity without a Version attribute.
+   *
+   * @param resource
+   * @param ifMatch
+   *          the value of the If-Match header, null to update unconditionally
+   * @return the updated entity, managed by the persistence context
+   * @throws PreconditionFailedException if the header doesn't match the entity tag
+   */
+  public Object saveEntity(
+      Object resource, ResourceRegistry resourceRegistry, @Nullable String ifMatch) {
     // Get the entity of this DTO.
     Object id = PropertyUtils.getProperty(
         resource,
@@ -162,9 +647,24 @@ public class JpaDtoRepository {
         dtoJpaMapper.getEntityClassForDto(resource.getClass())
     );
 
-    this.dtoJpaMapper.applyDtoToEntity(resource, entity, resourceRegistry, this::findOneByExposedId);
+    // Resources without a Version attribute have no tag: the header is ignored.
+    EntityIdentifierMetadata metadata = entity != null
+        ? baseDAO.getIdentifierMetadata(entity.getClass())
+        : null;
+    if (ifMatch != null && metadata != null && metadata.hasVersion()) {
+      String eTag = ETagHandler.toETag(metadata.getVersion(entity));
+      if (!ETagHandler.matchesStrong(ifMatch, eTag)) {
+        throw new PreconditionFailedException(
+            "Precondition Failed",
+            resource.getClass().getSimpleName() + " with ID " + id
+              + " was modified, current tag is " + eTag);
+      }
+    }
+
+    this.dtoJpaMapper.applyDtoToEntity(
+        resource, entity, resourceRegistry, this::findAllByExposedIds);
 
-    return (Serializable) PropertyUtils.getProperty(entity, getExposedIdentifier(entity.getClass()));
+    return entity;
   }
 
   /**
@@ -173,17 +673,39 @@ public class JpaDtoRepository {
    * @param resource
    * @return the created resource's ID
    */
-  @SneakyThrows
   public Serializable create(Object resource, ResourceRegistry resourceRegistry) {
+    return getExposedId(createEntity(resource, resourceRegistry));
+  }
+
+  /**
+   * Persist a JPA entity using a DTO.
+   * 
+   * @param resource
+   * @return the created entity, managed by the persistence context
+   */
+  @SneakyThrows
+  public Object createEntity(Object resource, ResourceRegistry resourceRegistry) {
     Object entity = this.dtoJpaMapper.getEntityClassForDto(resource.getClass())
       .getConstructor()
       .newInstance();
 
-    this.dtoJpaMapper.applyDtoToEntity(resource, entity, resourceRegistry, this::findOneByExposedId);
+    this.dtoJpaMapper.applyDtoToEntity(
+        resource, entity, resourceRegistry, this::findAllByExposedIds);
 
     entityManager.persist(entity);
 
-    return (Serializable) PropertyUtils.getProperty(entity, getExposedIdentifier(entity.getClass()));
+    return entity;
+  }
+
+  /**
+   * Flushes the pending changes and reloads the state of an entity from the database, e.g. to
+   * get the values generated by the database.
+   * 
+   * @param entity managed entity
+   */
+  public void refresh(Object entity) {
+    entityManager.flush();
+    entityManager.refresh(entity);
   }
 
   /**
@@ -202,6 +724,75 @@ public class JpaDtoRepository {
     entityManager.remove(entity);
   }
   
+  /**
+   * Deletes a JPA entity given its exposed identifier. The entity is loaded once (or taken from
+   * the persistence context) so cascades and lifecycle callbacks apply.
+   * 
+   * @param id
+   *          the exposed identifier of the entity
+   * @param entityClass
+   *          the entity class
+   * @return false if there is no entity with the given id
+   */
+  public boolean deleteByExposedId(Serializable id, Class<?> entityClass) {
+    Object entity = findOneByExposedId(id, entityClass);
+    if (entity == null) {
+      return false;
+    }
+    entityManager.remove(entity);
+    return true;
+  }
+
+  /**
+   * Deletes JPA entities given their exposed identifiers. The entities are loaded with a single
+   * bulk load then removed one by one, so cascades and lifecycle callbacks apply.
+   * 
+   * @param ids
+   *          the exposed identifiers of the entities
+   * @param entityClass
+   *          the entity class
+   * @throws ResourceNotFoundException listing the ids without entity, nothing is deleted
+   */
+  public void deleteAllByExposedIds(
+      Collection<? extends Serializable> ids, Class<?> entityClass) {
+    for (Object entity : findAllByExposedIds(ids, entityClass)) {
+      entityManager.remove(entity);
+    }
+  }
+
+  /**
+   * Deletes JPA entities given their exposed identifiers using bulk delete statements of at most
+   * {@link BaseDAO#MAX_IN_CLAUSE_SIZE} ids, without loading them.
+   * 
+   * <p>
+   * The statements bypass the persistence context: they do not cascade to the associated entities,
+   * do not remove orphans and run no lifecycle callback nor optimistic locking. Entities already
+   * loaded are not removed from the persistence context. Only use it for entities without such
+   * logic. The second-level cache region of the entity class is evicted once the rows are deleted.
+   * </p>
+   * 
+   * @param ids
+   *          the exposed identifiers of the entities
+   * @param entityClass
+   *          the entity class
+   * @return the number of deleted rows
+   */
+  public <T> int bulkDeleteByExposedIds(
+      Collection<? extends Serializable> ids, Class<T> entityClass) {
+    String exposedIdName = getExposedIdentifier(entityClass);
+    CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+
+    int deleted = 0;
+    for (List<?> chunk : Iterables.partition(ids, BaseDAO.MAX_IN_CLAUSE_SIZE)) {
+      CriteriaDelete<T> criteriaDelete = cb.createCriteriaDelete(entityClass);
+      Root<T> root = criteriaDelete.from(entityClass);
+      criteriaDelete.where(root.get(exposedIdName).in(chunk));
+      deleted += entityManager.createQuery(criteriaDelete).executeUpdate();
+    }
+    entityManager.getEntityManagerFactory().getCache().evict(entityClass);
+    return deleted;
+  }
+
   /**
    * Return the identifier field name on an entity exposed by a resource. NaturalId if available or
    * Id (database id) otherwise.
@@ -210,8 +801,7 @@ public class JpaDtoRepository {
    * @return
    */
   public String getExposedIdentifier(Class<?> clazz) {
-    return Optional.ofNullable(baseDAO.getNaturalIdFieldName(clazz))
-        .orElse(baseDAO.getDatabaseIdFieldName(clazz));
+    return baseDAO.getIdentifierMetadata(clazz).getExposedIdName();
   }
   
   /**
@@ -223,7 +813,7 @@ public class JpaDtoRepository {
    * @return
    */
   public <T> T findOneByExposedId(Object id, Class<T> entityClass) {
-    if (baseDAO.getNaturalIdFieldName(entityClass) != null) {
+    if (baseDAO.getIdentifierMetadata(entityClass).hasNaturalId()) {
       return baseDAO.findOneByNaturalId(id, entityClass);
     }
 
@@ -231,6 +821,96 @@ public class JpaDtoRepository {
     return baseDAO.findOneByDatabaseId(id, entityClass);
   }
 
+  /**
+   * Gets the strong entity tag of an entity from its {@link javax.persistence.Version} attribute,
+   * selecting only that column: the entity is neither hydrated nor mapped. See
+   * {@link ETagHandler}.
+   *
+   * @param id
+   *          the exposed identifier of the entity
+   * @param entityClass
+   *          the entity class
+   * @return the entity tag, or null if the entity is not found or has no Version attribute
+   */
+  public String findETagByExposedId(Object id, Class<?> entityClass) {
+    EntityIdentifierMetadata metadata = baseDAO.getIdentifierMetadata(entityClass);
+    if (!metadata.hasVersion()) {
+      return null;
+    }
+
+    CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+    CriteriaQuery<Object> criteriaQuery = cb.createQuery(Object.class);
+    Root<?> root = criteriaQuery.from(entityClass);
+    criteriaQuery
+        .select(root.get(metadata.getVersionName()))
+        .where(cb.equal(root.get(metadata.getExposedIdName()), id));
+
+    List<Object> versions = entityManager.createQuery(criteriaQuery)
+        .setMaxResults(1)
+        .getResultList();
+    return versions.isEmpty() ? null : ETagHandler.toETag(versions.get(0));
+  }
+
+  /**
+   * Gets the exposed identifier of an entity: its NaturalId if available or its Id otherwise.
+   *
+   * @param entity
+   * @return the exposed identifier
+   */
+  public Serializable getExposedId(Object entity) {
+    return (Serializable) baseDAO.getIdentifierMetadata(entity.getClass()).getExposedId(entity);
+  }
+
+  /**
+   * Gets the entity tag of a managed entity from its Version attribute, as last flushed.
+   *
+   * @param entity
+   * @return the strong entity tag, or null if the entity has no Version attribute
+   */
+  public String getETag(Object entity) {
+    EntityIdentifierMetadata metadata = baseDAO.getIdentifierMetadata(entity.getClass());
+    return metadata.hasVersion() ? ETagHandler.toETag(metadata.getVersion(entity)) : null;
+  }
+
+  /**
+   * Find entities by their exposed identifiers with a single bulk load. By NaturalId if
+   * available or Id (database id) otherwise.
+   * 
+   * @param ids
+   * @param entityClass
+   * @return the entities in the order of the given ids
+   * @throws ResourceNotFoundException listing the ids without entity
+   */
+  public <T> List<T> findAllByExposedIds(
+      Collection<? extends Serializable> ids, Class<T> entityClass) {
+    EntityIdentifierMetadata metadata = baseDAO.getIdentifierMetadata(entityClass);
+    List<T> entities = metadata.hasNaturalId()
+        ? baseDAO.findAllByNaturalIds(ids, entityClass)
+        : baseDAO.findAllByDatabaseIds(ids, entityClass);
+
+    Map<Object, T> entitiesById = new HashMap<>();
+    for (T entity : entities) {
+      entitiesById.put(metadata.getExposedId(entity), entity);
+    }
+
+    List<T> orderedEntities = new ArrayList<>(ids.size());
+    List<Serializable> missingIds = new ArrayList<>();
+    for (Serializable id : ids) {
+      T entity = entitiesById.get(id);
+      if (entity == null) {
+        missingIds.add(id);
+      } else {
+        orderedEntities.add(entity);
+      }
+    }
+
+    if (!missingIds.isEmpty()) {
+      throw new ResourceNotFoundException(
+          entityClass.getSimpleName() + " not found for ids " + missingIds);
+    }
+    return orderedEntities;
+  }
+
   /**
    * Named parameters for the "findAll" method.
    */
@@ -248,6 +928,56 @@ public class JpaDtoRepository {
     
     @Nullable private TriFunction<From<?, ?>, CriteriaQuery<?>, CriteriaBuilder, Predicate> customFilter;
     @Nullable private Function<From<?, ?>, From<?, ?>> customRoot;
+
+    /**
+     * Replaces the offset by the cursor of the "filter[cursor]" pseudo filter. See
+     * {@link KeysetPaginationHandler}.
+     */
+    @Builder.Default
+    private boolean keysetPagination = false;
+
+    /**
+     * Selects only the columns of a sparse fieldset (e.g. fields[employee]=name) instead of
+     * loading the entities, when the QuerySpec allows it. See
+     * {@link JpaDtoMapper#getProjectedFields}. Not used with keyset pagination.
+     */
+    @Builder.Default
+    private boolean projection = false;
+
+    /**
+     * True when the custom filter only applies the filters of the QuerySpec. Lets the meta
+     * information provider identify the query by its QuerySpec filters.
+     */
+    @Builder.Default
+    private boolean restrictedByQuerySpecOnly = false;
+
+    /**
+     * Identifies the restrictions of the custom filter that don't come from the QuerySpec, see
+     * {@link JpaMetaInformationParams#getCountScope}.
+     */
+    @Nullable
+    private Object countScope;
+
+    @NonNull
+    @Builder.Default
+    private IncludeLoadingStrategy includeLoadingStrategy = IncludeLoadingStrategy.FETCH_JOIN;
+  }
+
+  /**
+   * How the included relations are loaded by findAll.
+   */
+  public enum IncludeLoadingStrategy {
+    /**
+     * Fetch joins in the page query. The to-many relations of the queried entities are
+     * initialized for the page by a separate query, a to-many relation further in an include
+     * path still makes Hibernate paginate in memory (HHH000104).
+     */
+    FETCH_JOIN,
+    /**
+     * The page query selects the ids only, then the entities of the page are loaded with their
+     * included relations by an IN query. The pagination stays in the database.
+     */
+    TWO_PHASE
   }
 
 }
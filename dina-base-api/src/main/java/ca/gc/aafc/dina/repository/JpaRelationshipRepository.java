@@ -12,6 +12,7 @@ import javax.persistence.criteria.Predicate;
 import javax.transaction.Transactional;
 
 import ca.gc.aafc.dina.filter.FilterHandler;
+import ca.gc.aafc.dina.metrics.RepositoryMetrics.Operation;
 import ca.gc.aafc.dina.repository.JpaDtoRepository.FindAllParams;
 import ca.gc.aafc.dina.repository.meta.JpaMetaInformationProvider;
 import io.crnk.core.engine.internal.utils.PropertyUtils;
@@ -60,10 +61,13 @@ public class JpaRelationshipRepository<S, T>
 
   @Override
   public void setRelation(S source, Serializable targetId, String fieldName) {
-    this.dtoRepository.getDtoJpaMapper().modifyRelation(
+    timeModification(() -> this.dtoRepository.getDtoJpaMapper().modifyRelation(
         this.findEntityFromDto(source),
-        Collections.singletonList(targetId),
-        fieldName, dtoRepository::findOneByExposedId,
+        // A null target clears the relation.
+        targetId == null
+            ? Collections.<Serializable>emptyList()
+            : Collections.singletonList(targetId),
+        fieldName, dtoRepository::findAllByExposedIds,
         null,
         Collection::add,
         (targetEntity, oppositeFieldName, sourceEntity) -> PropertyUtils.setProperty(
@@ -72,15 +76,15 @@ public class JpaRelationshipRepository<S, T>
             sourceEntity
         ),
         this.resourceRegistry
-    );
+    ));
   }
 
   @Override
   public void setRelations(S source, Collection<Serializable> targetIds, String fieldName) {
-    this.dtoRepository.getDtoJpaMapper().modifyRelation(
+    timeModification(() -> this.dtoRepository.getDtoJpaMapper().modifyRelation(
         this.findEntityFromDto(source),
         targetIds,
-        fieldName, dtoRepository::findOneByExposedId,
+        fieldName, dtoRepository::findAllByExposedIds,
         (sourceCollection, targetEntities) -> {
           sourceCollection.clear();
           sourceCollection.addAll(targetEntities);
@@ -92,15 +96,15 @@ public class JpaRelationshipRepository<S, T>
             sourceEntity
         ),
         this.resourceRegistry
-    );
+    ));
   }
 
   @Override
   public void addRelations(S source, Collection<Serializable> targetIds, String fieldName) {
-    this.dtoRepository.getDtoJpaMapper().modifyRelation(
+    timeModification(() -> this.dtoRepository.getDtoJpaMapper().modifyRelation(
         this.findEntityFromDto(source),
         targetIds,
-        fieldName, dtoRepository::findOneByExposedId,
+        fieldName, dtoRepository::findAllByExposedIds,
         Collection::addAll,
         Collection::add,
         (targetEntity, oppositeFieldName, sourceEntity) -> PropertyUtils.setProperty(
@@ -109,15 +113,15 @@ public class JpaRelationshipRepository<S, T>
             sourceEntity
         ),
         this.resourceRegistry
-    );
+    ));
   }
 
   @Override
   public void removeRelations(S source, Collection<Serializable> targetIds, String fieldName) {
-    this.dtoRepository.getDtoJpaMapper().modifyRelation(
+    timeModification(() -> this.dtoRepository.getDtoJpaMapper().modifyRelation(
         this.findEntityFromDto(source),
         targetIds,
-        fieldName, dtoRepository::findOneByExposedId,
+        fieldName, dtoRepository::findAllByExposedIds,
         Collection::removeAll,
         Collection::remove,
         (targetEntity, oppositeFieldName, sourceEntity) -> PropertyUtils.setProperty(
@@ -126,14 +130,15 @@ public class JpaRelationshipRepository<S, T>
             null
         ),
         this.resourceRegistry
-    );
+    ));
   }
 
   @Override
   public T findOneTarget(Serializable sourceId, String fieldName, QuerySpec targetQuerySpec) {
     // Use the findManyTargets method, but limit the result size to 1.
     targetQuerySpec.setLimit(Long.valueOf(1));
-    ResourceList<T> resultSet = this.findManyTargets(sourceId, fieldName, targetQuerySpec);
+    ResourceList<T> resultSet = dtoRepository.getRepositoryMetrics().time(sourceResourceClass,
+        Operation.FIND_RELATED, () -> findTargets(sourceId, fieldName, targetQuerySpec));
 
     // Throw the 404 exception if the resource is not found.
     if (resultSet.size() == 0) {
@@ -147,6 +152,12 @@ public class JpaRelationshipRepository<S, T>
   @Override
   public ResourceList<T> findManyTargets(Serializable sourceId, String fieldName,
       QuerySpec querySpec) {
+    return dtoRepository.getRepositoryMetrics().time(sourceResourceClass,
+        Operation.FIND_RELATED, () -> findTargets(sourceId, fieldName, querySpec));
+  }
+
+  private ResourceList<T> findTargets(Serializable sourceId, String fieldName,
+      QuerySpec querySpec) {
 
     // The source entity has the to-many relationship.
     Class<?> sourceEntityClass = dtoRepository.getDtoJpaMapper()
@@ -198,6 +209,14 @@ public class JpaRelationshipRepository<S, T>
     return resultSet;
   }
 
+  private void timeModification(Runnable modification) {
+    dtoRepository.getRepositoryMetrics().time(sourceResourceClass, Operation.MODIFY_RELATION,
+        () -> {
+          modification.run();
+          return null;
+        });
+  }
+
   private Object findEntityFromDto(Object dto) {
     return this.dtoRepository.findOneByExposedId(
         this.resourceRegistry.findEntry(dto.getClass())
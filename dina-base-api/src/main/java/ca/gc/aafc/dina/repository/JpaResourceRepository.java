@@ -4,16 +4,34 @@ import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
 
 import javax.annotation.Nullable;
+import javax.persistence.criteria.CriteriaBuilder;
+import javax.persistence.criteria.CriteriaQuery;
+import javax.persistence.criteria.From;
 import javax.persistence.criteria.Predicate;
 import javax.transaction.Transactional;
 
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.http.HttpHeaders;
+
 import com.google.common.collect.Iterables;
 
 import ca.gc.aafc.dina.filter.FilterHandler;
+import ca.gc.aafc.dina.filter.QuerySpecFilterHandler;
+import ca.gc.aafc.dina.metrics.RepositoryMetrics;
+import ca.gc.aafc.dina.metrics.RepositoryMetrics.Operation;
+import ca.gc.aafc.dina.metrics.RepositoryMetrics.Phase;
 import ca.gc.aafc.dina.repository.JpaDtoRepository.FindAllParams;
+import ca.gc.aafc.dina.repository.JpaDtoRepository.IncludeLoadingStrategy;
 import ca.gc.aafc.dina.repository.meta.JpaMetaInformationProvider;
+import ca.gc.aafc.dina.repository.meta.JpaTotalMetaInformationProvider;
+import ca.gc.aafc.dina.util.TriFunction;
+import io.crnk.core.engine.http.HttpRequestContext;
+import io.crnk.core.engine.http.HttpRequestContextAware;
+import io.crnk.core.engine.http.HttpRequestContextProvider;
 import io.crnk.core.engine.registry.ResourceRegistry;
 import io.crnk.core.engine.registry.ResourceRegistryAware;
 import io.crnk.core.exception.ResourceNotFoundException;
@@ -34,7 +52,7 @@ import lombok.Setter;
 @RequiredArgsConstructor
 //CHECKSTYLE:OFF AnnotationUseStyle
 public class JpaResourceRepository<D>
-    implements ResourceRepository<D, Serializable>, ResourceRegistryAware {
+    implements ResourceRepository<D, Serializable>, ResourceRegistryAware, HttpRequestContextAware {
 
   /**
    * The JsonApi resource class.
@@ -55,8 +73,105 @@ public class JpaResourceRepository<D>
   @Setter(onMethod_ = @Override)
   private ResourceRegistry resourceRegistry;
 
+  @Getter
+  @Setter(onMethod_ = @Override)
+  private HttpRequestContextProvider httpRequestContextProvider;
+
+  /**
+   * Opt-in keyset pagination for findAll: pages are requested with the "filter[cursor]" pseudo
+   * filter and the next cursor is returned in the meta section. See
+   * {@link KeysetPaginationHandler}.
+   */
+  @Getter
+  @Setter
+  private boolean keysetPaginationEnabled;
+
+  /**
+   * How the DTO returned by create and save is built.
+   */
+  @Getter
+  @Setter
+  @NonNull
+  private WriteResponseStrategy writeResponseStrategy = WriteResponseStrategy.REQUERY;
+
+  /**
+   * Opt-in projection queries for sparse fieldsets: only the columns of the requested fields are
+   * selected when the QuerySpec allows it. See
+   * {@link ca.gc.aafc.dina.mapper.JpaDtoMapper#getProjectedFields}.
+   */
+  @Getter
+  @Setter
+  private boolean projectionEnabled;
+
+  /**
+   * Fetch size of {@link #streamAll}.
+   */
+  @Getter
+  @Setter
+  private int streamFetchSize = JpaDtoRepository.DEFAULT_STREAM_FETCH_SIZE;
+
+  /**
+   * How findOne and findAll load the included relations.
+   */
+  @Getter
+  @Setter
+  @NonNull
+  private IncludeLoadingStrategy includeLoadingStrategy = IncludeLoadingStrategy.FETCH_JOIN;
+
+  /**
+   * Opt-in conditional requests for resources whose entity has a Version attribute: findOne
+   * returns the ETag of the entity and answers a matching "If-None-Match" header with a bodiless
+   * 304 without loading the entity, save rejects a non-matching "If-Match" header with a 412, and
+   * save and create return the new ETag unless the write response strategy is
+   * FROM_PERSISTENCE_CONTEXT. Costs one single-column query by id per findOne with an
+   * "If-None-Match" header. findOne doesn't use projection. See {@link ETagHandler}.
+   */
+  @Getter
+  @Setter
+  private boolean conditionalRequestsEnabled;
+
+  /**
+   * Identifies the restrictions of the filter handlers that are not
+   * {@link QuerySpecFilterHandler}s, e.g. returns the group of the current user for an
+   * authorization filter handler. The total counts of findAll are cached per scope, see
+   * {@link JpaTotalMetaInformationProvider#setCountCacheTtl}. When null (default) and some filter
+   * handler is not a QuerySpecFilterHandler, the counts are neither cached nor estimated.
+   */
+  @Getter
+  @Setter
+  private Supplier<?> countScopeProvider;
+
   @Override
   public D findOne(Serializable id, QuerySpec querySpec) {
+    return dtoRepository.getRepositoryMetrics()
+        .time(resourceClass, Operation.FIND_ONE, () -> {
+          HttpRequestContext requestContext = conditionalRequestsEnabled
+              ? getHttpRequestContext()
+              : null;
+          if (requestContext == null) {
+            return loadOne(id, querySpec, this.projectionEnabled);
+          }
+
+          checkNotModified(id, requestContext);
+          // Loads the entity to read its tag: no projection. The lookup below resolves it from
+          // the persistence context without a query.
+          D dto = loadOne(id, querySpec, false);
+          String eTag = dtoRepository.getETag(dtoRepository.findOneByExposedId(
+              id,
+              this.dtoRepository.getDtoJpaMapper().getEntityClassForDto(this.resourceClass)
+          ));
+          if (eTag != null) {
+            requestContext.setResponseHeader(HttpHeaders.ETAG, eTag);
+          }
+          return dto;
+        });
+  }
+
+  /**
+   * Untimed findOne without conditional request handling, also used to requery the written
+   * resources. The loaded entity stays in the persistence context unless projection is used.
+   */
+  private D loadOne(Serializable id, QuerySpec querySpec, boolean projection) {
     // Use the findAll method, but limit the result size to 1.
     querySpec.setLimit(Long.valueOf(1));
     ResourceList<D> resultSet = dtoRepository.findAll(
@@ -64,6 +179,8 @@ public class JpaResourceRepository<D>
             .sourceDtoClass(this.resourceClass)
             .querySpec(querySpec)
             .resourceRegistry(this.resourceRegistry)
+            .includeLoadingStrategy(this.includeLoadingStrategy)
+            .projection(projection)
             .customFilter((root, query, cb) -> cb.equal(
                 SelectionHandler.getIdExpression(root, resourceClass, resourceRegistry),
                 id
@@ -82,6 +199,60 @@ public class JpaResourceRepository<D>
     return resultSet.get(0);
   }
 
+  /**
+   * Throws a 304 if the If-None-Match request header matches the current tag of the resource,
+   * selected with a single-column query. Does nothing if the header is absent.
+   */
+  private void checkNotModified(Serializable id, HttpRequestContext requestContext) {
+    String ifNoneMatch = requestContext.getRequestHeader(HttpHeaders.IF_NONE_MATCH);
+    if (StringUtils.isBlank(ifNoneMatch)) {
+      return;
+    }
+
+    // Null if not found: the 404 is thrown by findOne.
+    String eTag = dtoRepository.findETagByExposedId(
+        id,
+        this.dtoRepository.getDtoJpaMapper().getEntityClassForDto(this.resourceClass)
+    );
+    if (ETagHandler.matchesWeak(ifNoneMatch, eTag)) {
+      // The 304 repeats the tag, its body is dropped by the NotModifiedDocumentFilter.
+      requestContext.setResponseHeader(HttpHeaders.ETAG, eTag);
+      throw new NotModifiedException(
+          "Not Modified",
+          this.resourceClass.getSimpleName() + " with ID " + id + " has tag " + eTag
+      );
+    }
+  }
+
+  /**
+   * Sets the ETag response header of a written entity. The tag is read from the entity, so the
+   * Version attribute must have been flushed: not set for
+   * {@link WriteResponseStrategy#FROM_PERSISTENCE_CONTEXT}.
+   */
+  private void setETagHeader(Object entity) {
+    HttpRequestContext requestContext = getHttpRequestContext();
+    if (!conditionalRequestsEnabled || requestContext == null
+        || writeResponseStrategy == WriteResponseStrategy.FROM_PERSISTENCE_CONTEXT) {
+      return;
+    }
+
+    String eTag = dtoRepository.getETag(entity);
+    if (eTag != null) {
+      requestContext.setResponseHeader(HttpHeaders.ETAG, eTag);
+    }
+  }
+
+  /**
+   * Gets the context of the current HTTP request, null if there is none.
+   */
+  private HttpRequestContext getHttpRequestContext() {
+    if (httpRequestContextProvider == null
+        || !httpRequestContextProvider.hasThreadRequestContext()) {
+      return null;
+    }
+    return httpRequestContextProvider.getRequestContext();
+  }
+
   @Override
   public ResourceList<D> findAll(QuerySpec querySpec) {
     return this.findAll(null, querySpec);
@@ -89,61 +260,201 @@ public class JpaResourceRepository<D>
 
   @Override
   public ResourceList<D> findAll(@Nullable Collection<Serializable> ids, QuerySpec querySpec) {
+    Object countScope = countScopeProvider != null ? countScopeProvider.get() : null;
+    // The counts can be identified by the QuerySpec when the other restrictions are known.
+    boolean restrictedByQuerySpecOnly = ids == null && (countScope != null
+        || filterHandlers.stream().allMatch(QuerySpecFilterHandler.class::isInstance));
+
+    return dtoRepository.getRepositoryMetrics().time(resourceClass, Operation.FIND_ALL,
+        () -> dtoRepository.findAll(
+            FindAllParams.builder()
+                .sourceDtoClass(this.resourceClass)
+                .querySpec(querySpec)
+                .resourceRegistry(this.resourceRegistry)
+                .metaInformationProvider(this.metaInformationProvider)
+                .keysetPagination(this.keysetPaginationEnabled)
+                .includeLoadingStrategy(this.includeLoadingStrategy)
+                .projection(this.projectionEnabled)
+                .restrictedByQuerySpecOnly(restrictedByQuerySpecOnly)
+                .countScope(countScope)
+                .customFilter(getFilter(ids, querySpec))
+            .build()
+        )
+    );
     
-    return dtoRepository.findAll(
+  }
+
+  /**
+   * Streams all the resources matching the filters and sorts of the QuerySpec, ignoring its
+   * pagination. Meant for exports, e.g. writing the resources to the response with a
+   * {@link ca.gc.aafc.dina.json.NdjsonWriter}. See {@link JpaDtoRepository#streamAll}.
+   *
+   * @param querySpec the crnk QuerySpec
+   * @param consumer receives the resources in order
+   * @return the number of streamed resources
+   */
+  public long streamAll(QuerySpec querySpec, Consumer<? super D> consumer) {
+    return dtoRepository.streamAll(
         FindAllParams.builder()
             .sourceDtoClass(this.resourceClass)
             .querySpec(querySpec)
             .resourceRegistry(this.resourceRegistry)
-            .metaInformationProvider(this.metaInformationProvider)
-            .customFilter((root, query, cb) -> {
-              List<Predicate> restrictions = new ArrayList<>();
-              
-              // Add the filter handler's restriction.
-              for (FilterHandler filterHandler : this.filterHandlers) {
-                restrictions.add(filterHandler.getRestriction(querySpec, root, query, cb));
-              }
-              
-              // If the list of IDs is given, filter by ID.
-              if (ids != null) {
-                restrictions.add(
-                  SelectionHandler.getIdExpression(root, resourceClass, resourceRegistry)
-                    .in(Iterables.toArray(ids, Object.class))
-                );
-              }
-              
-              // Combine the restrictions in an 'and' operation.
-              return cb.and(restrictions.stream().toArray(Predicate[]::new));
-            })
-        .build()
+            .customFilter(getFilter(null, querySpec))
+            .build(),
+        this.streamFetchSize,
+        consumer
     );
-    
   }
 
-  @SuppressWarnings("unchecked")
+  /**
+   * Gets the filter of findAll: the restrictions of the filter handlers and, if given, the IDs.
+   */
+  private TriFunction<From<?, ?>, CriteriaQuery<?>, CriteriaBuilder, Predicate> getFilter(
+      @Nullable Collection<Serializable> ids, QuerySpec querySpec) {
+    return (root, query, cb) -> {
+      List<Predicate> restrictions = new ArrayList<>();
+      
+      // Add the filter handler's restriction.
+      for (FilterHandler filterHandler : this.filterHandlers) {
+        restrictions.add(filterHandler.getRestriction(querySpec, root, query, cb));
+      }
+      
+      // If the list of IDs is given, filter by ID.
+      if (ids != null) {
+        restrictions.add(
+          SelectionHandler.getIdExpression(root, resourceClass, resourceRegistry)
+            .in(Iterables.toArray(ids, Object.class))
+        );
+      }
+      
+      // Combine the restrictions in an 'and' operation.
+      return cb.and(restrictions.stream().toArray(Predicate[]::new));
+    };
+  }
+
   @Override
   public <S extends D> S save(S resource) {
-    return (S) this.findOne(
-        this.dtoRepository.save(resource, this.resourceRegistry),
-        new QuerySpec(this.resourceClass)
-    );
+    return dtoRepository.getRepositoryMetrics()
+        .time(resourceClass, Operation.SAVE, () -> saveResource(resource));
   }
 
   @SuppressWarnings("unchecked")
+  private <S extends D> S saveResource(S resource) {
+    HttpRequestContext requestContext = getHttpRequestContext();
+    String ifMatch = conditionalRequestsEnabled && requestContext != null
+        ? requestContext.getRequestHeader(HttpHeaders.IF_MATCH)
+        : null;
+
+    Object entity = dtoRepository.getRepositoryMetrics().timePhase(resourceClass, Phase.QUERY,
+        () -> this.dtoRepository.saveEntity(resource, this.resourceRegistry, ifMatch));
+    return (S) toResponseDto(entity);
+  }
+
   @Override
   public <S extends D> S create(S resource) {
-    return (S) this.findOne(
-        this.dtoRepository.create(resource, this.resourceRegistry),
-        new QuerySpec(this.resourceClass)
-    );
+    return dtoRepository.getRepositoryMetrics()
+        .time(resourceClass, Operation.CREATE, () -> createResource(resource));
+  }
+
+  @SuppressWarnings("unchecked")
+  private <S extends D> S createResource(S resource) {
+    Object entity = dtoRepository.getRepositoryMetrics().timePhase(resourceClass, Phase.QUERY,
+        () -> this.dtoRepository.createEntity(resource, this.resourceRegistry));
+    return (S) toResponseDto(entity);
+  }
+
+  /**
+   * Maps a written entity to the response DTO according to the {@link WriteResponseStrategy},
+   * with the same fields as {@link #findOne} would return for an empty QuerySpec.
+   */
+  private Object toResponseDto(Object entity) {
+    Object dto;
+    if (writeResponseStrategy == WriteResponseStrategy.REQUERY) {
+      // The requery flushes the entity before it is read back.
+      dto = this.loadOne(
+          this.dtoRepository.getExposedId(entity),
+          new QuerySpec(this.resourceClass),
+          this.projectionEnabled);
+    } else {
+      RepositoryMetrics metrics = dtoRepository.getRepositoryMetrics();
+      if (writeResponseStrategy == WriteResponseStrategy.REFRESH) {
+        metrics.timePhase(resourceClass, Phase.QUERY, () -> {
+          this.dtoRepository.refresh(entity);
+          return null;
+        });
+      }
+      dto = metrics.timePhase(resourceClass, Phase.MAPPING, () -> this.dtoRepository
+          .getDtoJpaMapper()
+          .toDto(entity, new QuerySpec(this.resourceClass), this.resourceRegistry));
+    }
+    setETagHeader(entity);
+    return dto;
   }
 
   @Override
   public void delete(Serializable id) {
-    this.dtoRepository.delete(
-        this.findOne(id, new QuerySpec(this.resourceClass)),
-        this.resourceRegistry
+    boolean deleted = dtoRepository.getRepositoryMetrics().time(resourceClass, Operation.DELETE,
+        () -> this.dtoRepository.deleteByExposedId(
+            id,
+            this.dtoRepository.getDtoJpaMapper().getEntityClassForDto(this.resourceClass)
+        )
+    );
+    if (!deleted) {
+      throw new ResourceNotFoundException(
+          this.resourceClass.getSimpleName() + " with ID " + id + " Not Found."
+      );
+    }
+  }
+
+  /**
+   * Deletes many resources given their IDs. Nothing is deleted if an ID is not found.
+   * 
+   * @param ids the resource IDs
+   * @throws ResourceNotFoundException listing the IDs not found
+   */
+  public void deleteAll(Collection<Serializable> ids) {
+    dtoRepository.getRepositoryMetrics().time(resourceClass, Operation.DELETE, () -> {
+      this.dtoRepository.deleteAllByExposedIds(
+          ids,
+          this.dtoRepository.getDtoJpaMapper().getEntityClassForDto(this.resourceClass)
+      );
+      return null;
+    });
+  }
+
+  /**
+   * Deletes many resources given their IDs using bulk delete statements, without loading them. IDs
+   * not found are ignored. See {@link JpaDtoRepository#bulkDeleteByExposedIds}: the deletes do not
+   * cascade nor remove orphans, only use it for resources without such logic.
+   * 
+   * @param ids the resource IDs
+   * @return the number of deleted resources
+   */
+  public int bulkDeleteAll(Collection<Serializable> ids) {
+    return dtoRepository.getRepositoryMetrics().time(resourceClass, Operation.DELETE,
+        () -> this.dtoRepository.bulkDeleteByExposedIds(
+            ids,
+            this.dtoRepository.getDtoJpaMapper().getEntityClassForDto(this.resourceClass)
+        )
     );
   }
 
+  /**
+   * Strategies to build the DTO returned by create and save.
+   */
+  public enum WriteResponseStrategy {
+    /** Query the written resource again using {@link #findOne}. */
+    REQUERY,
+    /**
+     * Map the managed entity already in the persistence context, without any query. Values
+     * generated by the database on insert or update (other than the id) are not included.
+     */
+    FROM_PERSISTENCE_CONTEXT,
+    /**
+     * Flush and refresh the managed entity before mapping it, to include the values generated by
+     * the database.
+     */
+    REFRESH
+  }
+
 }
@@ -0,0 +1,229 @@
+package ca.gc.aafc.dina.repository;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+
+import javax.persistence.criteria.CriteriaBuilder;
+import javax.persistence.criteria.Expression;
+import javax.persistence.criteria.From;
+import javax.persistence.criteria.Order;
+import javax.persistence.criteria.Predicate;
+
+import org.apache.commons.beanutils.NestedNullException;
+import org.apache.commons.beanutils.PropertyUtils;
+import org.apache.commons.lang3.StringUtils;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+
+import io.crnk.core.engine.registry.ResourceRegistry;
+import io.crnk.core.exception.BadRequestException;
+import io.crnk.core.queryspec.Direction;
+import io.crnk.core.queryspec.FilterSpec;
+import io.crnk.core.queryspec.PathSpec;
+import io.crnk.core.queryspec.QuerySpec;
+import io.crnk.core.queryspec.SortSpec;
+import lombok.SneakyThrows;
+
+/**
+ * Provides methods for keyset (seek) pagination: instead of skipping "offset" rows, a page starts
+ * right after the last row of the previous page, identified by an opaque cursor holding the sort
+ * values of that row.
+ * Example query:
+ *   localhost:8080/api/employee?sort=name&amp;filter[cursor]=WyJib2IiLDQyXQ
+ *
+ * The keys are the requested sorts followed by the id (ascending) to guarantee a total order. The
+ * key attributes are expected to be non-null.
+ */
+public final class KeysetPaginationHandler {
+
+  /** Pseudo filter holding the cursor of the previous page. */
+  public static final PathSpec CURSOR_FILTER_PATH = PathSpec.of("cursor");
+
+  private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper()
+      .findAndRegisterModules()
+      .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+
+  private KeysetPaginationHandler() {
+  }
+
+  /**
+   * Gets the keys of a query: the requested sorts followed by the id in ascending order, unless
+   * the id is already sorted on.
+   *
+   * @param querySpec the crnk QuerySpec
+   * @param resourceClass the queried resource class
+   * @param resourceRegistry the crnk ResourceRegistry
+   * @return the keys in order
+   */
+  public static List<SortSpec> getKeys(
+      QuerySpec querySpec,
+      Class<?> resourceClass,
+      ResourceRegistry resourceRegistry
+  ) {
+    List<String> idPath = Collections.singletonList(
+        SelectionHandler.getIdAttribute(resourceClass, resourceRegistry));
+
+    List<SortSpec> keys = new ArrayList<>(querySpec.getSort());
+    if (keys.stream().noneMatch(key -> key.getAttributePath().equals(idPath))) {
+      keys.add(new SortSpec(idPath, Direction.ASC));
+    }
+    return keys;
+  }
+
+  /**
+   * Gets the expressions of the given keys.
+   *
+   * @param root the query root
+   * @param keys the keys returned by {@link #getKeys}
+   * @return the expressions in the same order as the keys
+   */
+  public static List<Expression<?>> getKeyExpressions(From<?, ?> root, List<SortSpec> keys) {
+    List<Expression<?>> expressions = new ArrayList<>(keys.size());
+    for (SortSpec key : keys) {
+      expressions.add(SelectionHandler.getExpression(root, key.getAttributePath()));
+    }
+    return expressions;
+  }
+
+  /**
+   * Gets the orders of the given keys.
+   */
+  public static List<Order> getOrders(
+      List<SortSpec> keys,
+      List<Expression<?>> keyExpressions,
+      CriteriaBuilder cb
+  ) {
+    List<Order> orders = new ArrayList<>(keys.size());
+    for (int i = 0; i < keys.size(); i++) {
+      orders.add(keys.get(i).getDirection() == Direction.DESC
+          ? cb.desc(keyExpressions.get(i))
+          : cb.asc(keyExpressions.get(i)));
+    }
+    return orders;
+  }
+
+  /**
+   * Gets the cursor requested by the client, if any.
+   *
+   * @param querySpec the crnk QuerySpec
+   * @return the cursor or empty if this is the first page
+   */
+  public static Optional<String> findCursor(QuerySpec querySpec) {
+    return querySpec.findFilter(CURSOR_FILTER_PATH)
+        .map(FilterSpec::getValue)
+        .map(Object::toString)
+        .filter(StringUtils::isNotBlank);
+  }
+
+  /**
+   * Gets the restriction selecting the rows after a cursor:
+   * (k1 &gt; v1) or (k1 = v1 and k2 &gt; v2) or ... using "&lt;" for descending keys.
+   *
+   * @param cursor the cursor returned by {@link #createCursor}
+   * @param keys the keys returned by {@link #getKeys}
+   * @param keyExpressions the expressions of the keys
+   * @param cb the CriteriaBuilder
+   * @return the restriction
+   * @throws BadRequestException if the cursor doesn't match the keys
+   */
+  @SuppressWarnings({ "unchecked", "rawtypes" })
+  public static Predicate getRestriction(
+      String cursor,
+      List<SortSpec> keys,
+      List<Expression<?>> keyExpressions,
+      CriteriaBuilder cb
+  ) {
+    List<Comparable> values = decodeCursor(cursor, keyExpressions);
+
+    List<Predicate> alternatives = new ArrayList<>(keys.size());
+    List<Predicate> equalities = new ArrayList<>(keys.size());
+    for (int i = 0; i < keys.size(); i++) {
+      Expression<Comparable> expression = (Expression<Comparable>) keyExpressions.get(i);
+      Comparable value = values.get(i);
+
+      Predicate after = keys.get(i).getDirection() == Direction.DESC
+          ? cb.lessThan(expression, value)
+          : cb.greaterThan(expression, value);
+
+      List<Predicate> conjunction = new ArrayList<>(equalities);
+      conjunction.add(after);
+      alternatives.add(cb.and(conjunction.toArray(new Predicate[0])));
+
+      equalities.add(cb.equal(expression, value));
+    }
+    return cb.or(alternatives.toArray(new Predicate[0]));
+  }
+
+  /**
+   * Creates the cursor of the page following the given row.
+   *
+   * @param entity the last entity of the current page
+   * @param keys the keys returned by {@link #getKeys}
+   * @return an opaque, url-safe cursor
+   * @throws BadRequestException if a key attribute is null
+   */
+  @SneakyThrows
+  public static String createCursor(Object entity, List<SortSpec> keys) {
+    List<Object> values = new ArrayList<>(keys.size());
+    for (SortSpec key : keys) {
+      String path = String.join(".", key.getAttributePath());
+      Object value;
+      try {
+        value = PropertyUtils.getProperty(entity, path);
+      } catch (NestedNullException nnEx) {
+        value = null;
+      }
+      values.add(value);
+    }
+    return createCursorFromValues(values, keys);
+  }
+
+  /**
+   * Creates the cursor of the page following the row having the given key values, e.g. selected
+   * with the {@link #getKeyExpressions key expressions}.
+   *
+   * @param values the key values of the last row of the current page, in the order of the keys
+   * @param keys the keys returned by {@link #getKeys}
+   * @return an opaque, url-safe cursor
+   * @throws BadRequestException if a key value is null
+   */
+  @SneakyThrows
+  public static String createCursorFromValues(List<?> values, List<SortSpec> keys) {
+    for (int i = 0; i < keys.size(); i++) {
+      if (values.get(i) == null) {
+        throw new BadRequestException("Keyset pagination requires non-null sort attributes, "
+            + String.join(".", keys.get(i).getAttributePath()) + " is null");
+      }
+    }
+    return Base64.getUrlEncoder().withoutPadding().encodeToString(
+        OBJECT_MAPPER.writeValueAsBytes(values));
+  }
+
+  @SuppressWarnings("rawtypes")
+  private static List<Comparable> decodeCursor(String cursor, List<Expression<?>> keyExpressions) {
+    try {
+      JsonNode node = OBJECT_MAPPER.readTree(
+          new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8));
+      if (!node.isArray() || node.size() != keyExpressions.size()) {
+        throw new BadRequestException("Invalid cursor: " + cursor);
+      }
+
+      List<Comparable> values = new ArrayList<>(keyExpressions.size());
+      for (int i = 0; i < keyExpressions.size(); i++) {
+        values.add((Comparable) OBJECT_MAPPER.treeToValue(
+            node.get(i), keyExpressions.get(i).getJavaType()));
+      }
+      return values;
+    } catch (IOException | IllegalArgumentException | ClassCastException e) {
+      throw new BadRequestException("Invalid cursor: " + cursor);
+    }
+  }
+
+}
@@ -0,0 +1,27 @@
+package ca.gc.aafc.dina.repository;
+
+import javax.inject.Named;
+
+import io.crnk.core.engine.dispatcher.Response;
+import io.crnk.core.engine.filter.DocumentFilter;
+import io.crnk.core.engine.filter.DocumentFilterChain;
+import io.crnk.core.engine.filter.DocumentFilterContext;
+import io.crnk.core.engine.http.HttpStatus;
+
+/**
+ * Answers a {@link NotModifiedException} with a 304 without document: the response must not carry
+ * a body (RFC 7232 4.1). The ETag header is set by the repository before throwing.
+ */
+@Named
+public class NotModifiedDocumentFilter implements DocumentFilter {
+
+  @Override
+  public Response filter(DocumentFilterContext filterRequestContext, DocumentFilterChain chain) {
+    try {
+      return chain.doFilter(filterRequestContext);
+    } catch (NotModifiedException e) {
+      return new Response(null, HttpStatus.NOT_MODIFIED_304);
+    }
+  }
+
+}
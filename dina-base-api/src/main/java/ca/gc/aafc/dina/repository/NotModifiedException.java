@@ -0,0 +1,22 @@
+package ca.gc.aafc.dina.repository;
+
+import io.crnk.core.engine.document.ErrorData;
+import io.crnk.core.exception.CrnkMappableException;
+
+/**
+ * Crnk Exception for HTTP 304 : NOT MODIFIED
+ * The {@link NotModifiedDocumentFilter} answers it without body.
+ */
+public class NotModifiedException extends CrnkMappableException {
+
+  private static final long serialVersionUID = -3390528187437469231L;
+
+  public NotModifiedException(String title, String message) {
+    super(304, ErrorData.builder()
+        .setTitle(title)
+        .setDetail(message)
+        .setStatus("304")
+        .build());
+  }
+
+}
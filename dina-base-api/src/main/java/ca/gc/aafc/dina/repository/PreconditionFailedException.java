@@ -0,0 +1,22 @@
+package ca.gc.aafc.dina.repository;
+
+import io.crnk.core.engine.document.ErrorData;
+import io.crnk.core.exception.CrnkMappableException;
+
+/**
+ * Crnk Exception for HTTP 412 : PRECONDITION FAILED
+ *
+ */
+public class PreconditionFailedException extends CrnkMappableException {
+
+  private static final long serialVersionUID = 5073619324512263402L;
+
+  public PreconditionFailedException(String title, String message) {
+    super(412, ErrorData.builder()
+        .setTitle(title)
+        .setDetail(message)
+        .setStatus("412")
+        .build());
+  }
+
+}
@@ -3,7 +3,10 @@ package ca.gc.aafc.dina.repository;
 import java.util.List;
 
 import javax.persistence.criteria.Expression;
+import javax.persistence.criteria.Fetch;
+import javax.persistence.criteria.FetchParent;
 import javax.persistence.criteria.From;
+import javax.persistence.criteria.Join;
 import javax.persistence.criteria.JoinType;
 
 import io.crnk.core.engine.registry.ResourceRegistry;
@@ -20,6 +23,11 @@ public final class SelectionHandler {
    * get expressions that could require joins.
    * This method could be rewritten later to map DTO fields to custom expressions.
    * 
+   * <p>
+   * The joins of singular attributes already in the query are reused: a sort, a filter and an
+   * include on the same to-one path share a single join (see {@link #getOrCreateJoin}).
+   * </p>
+   * 
    * @param basePath the base path
    * @param attributePath the attribute path
    * @return the expression
@@ -27,10 +35,63 @@ public final class SelectionHandler {
   public static Expression<?> getExpression(From<?, ?> basePath, List<String> attributePath) {
     From<?, ?> from = basePath;
     for (String pathElement : attributePath.subList(0, attributePath.size() - 1)) {
-      from = from.join(pathElement, JoinType.LEFT);
+      from = getOrCreateJoin(from, pathElement);
     }
     return from.get(attributePath.get(attributePath.size() - 1));
   }
+
+  /**
+   * Gets the LEFT join of a singular attribute from the given path, creating it only if the query
+   * has none. A LEFT fetch join of the attribute (e.g. from an include) is also reused. A new join
+   * is always created for a collection: each restriction on a to-many path must be able to match
+   * a different element (e.g. "employees.name==a;employees.name==b"), and restricting a fetch
+   * join would change the fetched collection.
+   * 
+   * @param from the path to join from
+   * @param attributeName the attribute to join
+   * @return the join
+   */
+  public static From<?, ?> getOrCreateJoin(From<?, ?> from, String attributeName) {
+    for (Join<?, ?> join : from.getJoins()) {
+      if (isLeftJoinOf(join, attributeName) && !join.getAttribute().isCollection()) {
+        return join;
+      }
+    }
+    for (Fetch<?, ?> fetch : from.getFetches()) {
+      if (fetch instanceof Join && isLeftJoinOf(fetch, attributeName)
+          && !fetch.getAttribute().isCollection()) {
+        return (Join<?, ?>) fetch;
+      }
+    }
+    return from.join(attributeName, JoinType.LEFT);
+  }
+
+  /**
+   * Gets the LEFT fetch join of an attribute from the given parent, creating it only if the query
+   * has none. Used to include the same relation (or relation path) only once.
+   * 
+   * @param parent the parent to fetch from
+   * @param attributeName the attribute to fetch
+   * @return the fetch
+   */
+  public static FetchParent<?, ?> getOrCreateFetch(FetchParent<?, ?> parent, String attributeName) {
+    for (Fetch<?, ?> fetch : parent.getFetches()) {
+      if (isLeftJoinOf(fetch, attributeName) && fetch instanceof FetchParent) {
+        return (FetchParent<?, ?>) fetch;
+      }
+    }
+    return parent.fetch(attributeName, JoinType.LEFT);
+  }
+
+  private static boolean isLeftJoinOf(Join<?, ?> join, String attributeName) {
+    return join.getJoinType() == JoinType.LEFT
+        && join.getAttribute().getName().equals(attributeName);
+  }
+
+  private static boolean isLeftJoinOf(Fetch<?, ?> fetch, String attributeName) {
+    return fetch.getJoinType() == JoinType.LEFT
+        && fetch.getAttribute().getName().equals(attributeName);
+  }
   
   /**
    * Gets the name of the JPA entity's @Id attribute
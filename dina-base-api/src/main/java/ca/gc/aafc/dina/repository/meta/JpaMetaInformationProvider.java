@@ -1,5 +1,6 @@
 package ca.gc.aafc.dina.repository.meta;
 
+import java.util.concurrent.CompletableFuture;
 import java.util.function.Function;
 
 import javax.annotation.Nullable;
@@ -9,6 +10,7 @@ import javax.persistence.criteria.From;
 import javax.persistence.criteria.Predicate;
 
 import ca.gc.aafc.dina.util.TriFunction;
+import io.crnk.core.queryspec.QuerySpec;
 import io.crnk.core.resource.meta.MetaInformation;
 import lombok.Builder;
 import lombok.Getter;
@@ -26,6 +28,18 @@ public interface JpaMetaInformationProvider {
    * @return the query's MetaInformation
    */
   MetaInformation getMetaInformation(JpaMetaInformationParams params);
+
+  /**
+   * Starts getting the MetaInformation of a JPA/DTO resource query, so it can run while the
+   * resources are fetched. Computes it synchronously by default.
+   * 
+   * @param params The parameters for creating this MetaInformation.
+   * @return the query's MetaInformation
+   */
+  default CompletableFuture<MetaInformation> getMetaInformationAsync(
+      JpaMetaInformationParams params) {
+    return CompletableFuture.completedFuture(getMetaInformation(params));
+  }
   
   @Builder
   @Getter
@@ -48,6 +62,26 @@ public interface JpaMetaInformationProvider {
      */
     @Nullable
     private TriFunction<From<?, ?>, CriteriaQuery<?>, CriteriaBuilder, Predicate> customFilter;
+
+    /**
+     * The QuerySpec of the request.
+     */
+    @Nullable
+    private QuerySpec querySpec;
+
+    /**
+     * True when the custom filter only applies the filters of the QuerySpec (e.g. no restriction
+     * on a list of ids or on a relationship source), so the QuerySpec filters identify the query.
+     * Also true when the other restrictions are identified by the count scope.
+     */
+    private boolean restrictedByQuerySpecOnly;
+
+    /**
+     * Identifies the restrictions of the custom filter that don't come from the QuerySpec (e.g.
+     * the group of the current user), null if there are none.
+     */
+    @Nullable
+    private Object countScope;
     
   }
   
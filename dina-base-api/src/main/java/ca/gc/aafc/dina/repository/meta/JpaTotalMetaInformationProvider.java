@@ -1,54 +1,374 @@
 package ca.gc.aafc.dina.repository.meta;
 
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
 import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
 
 import javax.persistence.EntityManager;
 import javax.persistence.criteria.CriteriaBuilder;
 import javax.persistence.criteria.CriteriaQuery;
 import javax.persistence.criteria.From;
 
+import org.hibernate.Session;
+import org.hibernate.dialect.PostgreSQL81Dialect;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.persister.entity.AbstractEntityPersister;
+import org.hibernate.persister.entity.EntityPersister;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+
 import ca.gc.aafc.dina.mapper.JpaDtoMapper;
+import ca.gc.aafc.dina.repository.KeysetPaginationHandler;
+import io.crnk.core.queryspec.FilterSpec;
+import io.crnk.core.queryspec.PathSpec;
+import io.crnk.core.queryspec.QuerySpec;
 import io.crnk.core.resource.meta.DefaultPagedMetaInformation;
+import io.crnk.core.resource.meta.MetaInformation;
+import lombok.Getter;
 import lombok.RequiredArgsConstructor;
+import lombok.Setter;
+import lombok.Value;
 
 /**
  * Uses an existing JPA criteria query to provide a DefaultPagedMetaInformation containing the total
  * count of resources that match the existing query's restrictions.
+ *
+ * <p>
+ * By default the count is exact and computed on every request. Optionally:
+ * <ul>
+ * <li>the count can be computed only when requested by the client with the
+ * "filter[totalResourceCount]=true" pseudo filter, see {@link #setCountOnRequestOnly}</li>
+ * <li>the count of unfiltered queries can be estimated from the PostgreSQL planner statistics,
+ * see {@link #setEstimateUnfilteredCount}</li>
+ * <li>the counts can be cached for a short time per resource class and filters, see
+ * {@link #setCountCacheTtl}</li>
+ * <li>the count can run in parallel with the page query, see {@link #setAsyncCount}</li>
+ * </ul>
+ * </p>
  */
 @RequiredArgsConstructor
 public class JpaTotalMetaInformationProvider implements JpaMetaInformationProvider {
 
+  /** Pseudo filter used by the client to request the total count. */
+  public static final PathSpec TOTAL_COUNT_FILTER_PATH = PathSpec.of("totalResourceCount");
+
+  private static final long COUNT_CACHE_SIZE = 1000;
+
   private final EntityManager entityManager;
-  
+
   private final JpaDtoMapper jpaDtoMapper;
 
+  /**
+   * Only count when the request contains "filter[totalResourceCount]=true". The meta information
+   * is null otherwise.
+   */
+  @Getter
+  @Setter
+  private volatile boolean countOnRequestOnly;
+
+  /**
+   * Use the row estimate of the PostgreSQL planner statistics (pg_class.reltuples) for queries
+   * without any filter. Only applies to the queries restricted by their QuerySpec only (see
+   * {@link JpaMetaInformationParams#isRestrictedByQuerySpecOnly}) without count scope, e.g. not
+   * to a findOne, a relationship or a query restricted by an authorization filter handler. Falls
+   * back to an exact count on other databases or when the table was never analyzed.
+   */
+  @Getter
+  @Setter
+  private volatile boolean estimateUnfilteredCount;
+
+  /** Counts per resource class, filters and count scope, null if disabled. */
+  private volatile Cache<CountKey, Long> countCache;
+
+  /** Null until first checked. */
+  private volatile Boolean postgreSQL;
+
+  /**
+   * Executor and transaction manager of the parallel counts, null to count synchronously. Set
+   * together so a request thread never sees one without the other.
+   */
+  private volatile AsyncCount asyncCount;
+
+  /** Whether the {@link TransactionWriteTracker} was registered. */
+  private volatile boolean writeTrackerRegistered;
+
+  /**
+   * Runs the count queries in parallel with the page queries, each in its own read-only
+   * transaction (so its own connection) using the isolation level of the request transaction.
+   *
+   * <p>
+   * The count transaction doesn't see the changes of the request transaction: the count runs
+   * synchronously when the persistence context has pending changes or when the request
+   * transaction already flushed entities or collections. Bulk and native statements are not
+   * tracked, only enable it for read endpoints. The count query, with the restrictions of the
+   * filter handlers, is built on the request thread, only its execution runs on the executor.
+   * The executor should be bounded, the count runs synchronously when it rejects a task.
+   * </p>
+   *
+   * @param executor executor running the counts, null to count synchronously
+   * @param transactionManager transaction manager of the count transactions
+   */
+  public synchronized void setAsyncCount(
+      Executor executor, PlatformTransactionManager transactionManager) {
+    if (executor != null && !writeTrackerRegistered) {
+      TransactionWriteTracker.register(entityManager.getEntityManagerFactory());
+      writeTrackerRegistered = true;
+    }
+    this.asyncCount = executor == null ? null
+        : new AsyncCount(executor, Objects.requireNonNull(transactionManager));
+  }
+
+  /**
+   * Caches the counts of the queries restricted by their QuerySpec only (see
+   * {@link JpaMetaInformationParams#isRestrictedByQuerySpecOnly}), per resource class, filters
+   * and count scope, for the given time. The other queries, e.g. with a restriction on ids, on a
+   * relationship source or by a filter handler depending on the request, are always counted.
+   *
+   * @param duration time to live of a count, 0 to disable the cache
+   * @param unit unit of the duration
+   */
+  public void setCountCacheTtl(long duration, TimeUnit unit) {
+    this.countCache = duration <= 0 ? null : CacheBuilder.newBuilder()
+        .expireAfterWrite(duration, unit)
+        .maximumSize(COUNT_CACHE_SIZE)
+        .recordStats()
+        .build();
+  }
+
+  /**
+   * Returns the statistics of the count cache.
+   *
+   * @return the statistics or null if the cache is disabled
+   */
+  public CacheStats getCountCacheStats() {
+    return countCache == null ? null : countCache.stats();
+  }
+
   @Override
   public DefaultPagedMetaInformation getMetaInformation(JpaMetaInformationParams params) {
+    if (!isCounted(params)) {
+      return null;
+    }
+
+    Cache<CountKey, Long> countCache = this.countCache;
+    CountKey countKey = countCache != null ? CountKey.of(params) : null;
+    Long total = countKey != null ? countCache.getIfPresent(countKey) : null;
+    if (total == null) {
+      total = prepareCount(params).get();
+    }
+    return toMetaInformation(countCache, countKey, total);
+  }
+
+  @Override
+  public CompletableFuture<MetaInformation> getMetaInformationAsync(
+      JpaMetaInformationParams params) {
+    AsyncCount asyncCount = this.asyncCount;
+    if (asyncCount == null || !isCounted(params) || hasRequestTransactionChanges()) {
+      return CompletableFuture.completedFuture(getMetaInformation(params));
+    }
+
+    Cache<CountKey, Long> countCache = this.countCache;
+    CountKey countKey = countCache != null ? CountKey.of(params) : null;
+    Long cachedTotal = countKey != null ? countCache.getIfPresent(countKey) : null;
+    if (cachedTotal != null) {
+      return CompletableFuture.completedFuture(
+          toMetaInformation(countCache, countKey, cachedTotal));
+    }
+
+    // Built on the request thread: the filter handlers may depend on its context (e.g. the
+    // security context or the crnk request context).
+    Supplier<Long> count = prepareCount(params);
+
+    TransactionTemplate transactionTemplate = new TransactionTemplate(
+        asyncCount.getTransactionManager());
+    transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    transactionTemplate.setReadOnly(true);
+    Integer isolationLevel = TransactionSynchronizationManager
+        .getCurrentTransactionIsolationLevel();
+    if (isolationLevel != null) {
+      transactionTemplate.setIsolationLevel(isolationLevel);
+    }
+
+    try {
+      return CompletableFuture
+          .supplyAsync(
+              () -> transactionTemplate.execute(status -> count.get()),
+              asyncCount.getExecutor())
+          .<MetaInformation>thenApply(total -> toMetaInformation(countCache, countKey, total));
+    } catch (RejectedExecutionException reEx) {
+      return CompletableFuture.completedFuture(
+          toMetaInformation(countCache, countKey, count.get()));
+    }
+  }
+
+  /**
+   * Whether the request transaction has changes the count transaction can't see: pending
+   * changes or changes already flushed.
+   */
+  private boolean hasRequestTransactionChanges() {
+    return TransactionSynchronizationManager.isActualTransactionActive()
+        && (TransactionWriteTracker.hasCurrentTransactionWritten()
+          || entityManager.unwrap(Session.class).isDirty());
+  }
+
+  private boolean isCounted(JpaMetaInformationParams params) {
+    return !countOnRequestOnly || isCountRequested(params.getQuerySpec());
+  }
+
+  /**
+   * Caches the total if a key is given and returns the meta information holding it.
+   */
+  private static DefaultPagedMetaInformation toMetaInformation(
+      Cache<CountKey, Long> countCache, CountKey countKey, long total) {
+    if (countKey != null) {
+      countCache.put(countKey, total);
+    }
+    DefaultPagedMetaInformation metaInformation = new DefaultPagedMetaInformation();
+    metaInformation.setTotalResourceCount(total);
+    return metaInformation;
+  }
+
+  /**
+   * Builds the count query of the given params. The returned supplier executes it, or gets the
+   * estimate of an unfiltered count if enabled.
+   */
+  private Supplier<Long> prepareCount(JpaMetaInformationParams params) {
+    Class<?> entityClass = jpaDtoMapper.getEntityClassForDto(params.getSourceResourceClass());
+    CriteriaQuery<Long> countQuery = createCountQuery(params, entityClass);
+    boolean estimate = estimateUnfilteredCount && isUnfiltered(params);
+
+    return () -> {
+      if (estimate) {
+        Long estimatedCount = estimateCount(entityClass);
+        if (estimatedCount != null) {
+          return estimatedCount;
+        }
+      }
+      return entityManager.createQuery(countQuery).getSingleResult();
+    };
+  }
+
+  private CriteriaQuery<Long> createCountQuery(
+      JpaMetaInformationParams params, Class<?> entityClass) {
     CriteriaBuilder cb = entityManager.getCriteriaBuilder();
-    
+
     // Create the total count query.
     CriteriaQuery<Long> countQuery = cb.createQuery(Long.class);
-    From<?, ?> sourcePath = countQuery.from(
-        jpaDtoMapper.getEntityClassForDto(params.getSourceResourceClass())
-    );
-    
+    From<?, ?> sourcePath = countQuery.from(entityClass);
+
     Function<From<?, ?>, From<?, ?>> customRoot = params.getCustomRoot();
     From<?, ?> targetPath = customRoot != null ? customRoot.apply(sourcePath) : sourcePath;
-    
+
     countQuery.select(cb.count(targetPath));
 
     // Use the same restrictions as the existing entity query.
     if (params.getCustomFilter() != null) {
       countQuery.where(params.getCustomFilter().apply(targetPath, countQuery, cb));
     }
+    return countQuery;
+  }
 
-    // Get the total.
-    Long total = this.entityManager.createQuery(countQuery).getSingleResult();
+  /**
+   * Returns the number of rows of the entity table estimated by the PostgreSQL planner.
+   *
+   * @return the estimate or null if not available
+   */
+  private Long estimateCount(Class<?> entityClass) {
+    SessionFactoryImplementor sessionFactory = entityManager.getEntityManagerFactory()
+        .unwrap(SessionFactoryImplementor.class);
+    if (postgreSQL == null) {
+      postgreSQL = sessionFactory.getJdbcServices().getDialect() instanceof PostgreSQL81Dialect;
+    }
+    EntityPersister persister = sessionFactory.getMetamodel().entityPersister(entityClass);
+    if (!postgreSQL || !(persister instanceof AbstractEntityPersister)) {
+      return null;
+    }
 
-    // Return the DefaultPagedMetaInformation with the total.
-    DefaultPagedMetaInformation metaInformation = new DefaultPagedMetaInformation();
-    metaInformation.setTotalResourceCount(total);
-    return metaInformation;
+    List<?> result = entityManager.createNativeQuery(
+        "SELECT CAST(reltuples AS bigint) FROM pg_class WHERE oid = to_regclass(?1)")
+        .setParameter(1, ((AbstractEntityPersister) persister).getTableName())
+        .getResultList();
+
+    // reltuples is 0 or -1 when the table was never analyzed
+    if (result.isEmpty() || ((Number) result.get(0)).longValue() <= 0) {
+      return null;
+    }
+    return ((Number) result.get(0)).longValue();
+  }
+
+  private static boolean isCountRequested(QuerySpec querySpec) {
+    return querySpec != null && querySpec.findFilter(TOTAL_COUNT_FILTER_PATH)
+        .map(filter -> Boolean.parseBoolean(String.valueOf((Object) filter.getValue())))
+        .orElse(false);
+  }
+
+  private static boolean isUnfiltered(JpaMetaInformationParams params) {
+    return isIdentifiedByQuerySpec(params)
+        && params.getCountScope() == null
+        && getFilters(params.getQuerySpec()).isEmpty();
+  }
+
+  /**
+   * Whether the count only depends on the resource class, the QuerySpec filters and the count
+   * scope: the custom filter applies nothing else and there is no custom root.
+   */
+  private static boolean isIdentifiedByQuerySpec(JpaMetaInformationParams params) {
+    return params.isRestrictedByQuerySpecOnly()
+        && params.getCustomRoot() == null
+        && params.getQuerySpec() != null;
+  }
+
+  /**
+   * Returns the filters of a QuerySpec without the pseudo filters that don't restrict the
+   * query.
+   */
+  private static List<FilterSpec> getFilters(QuerySpec querySpec) {
+    return querySpec.getFilters().stream()
+        .filter(filter -> !TOTAL_COUNT_FILTER_PATH.equals(filter.getPath())
+            && !KeysetPaginationHandler.CURSOR_FILTER_PATH.equals(filter.getPath()))
+        .collect(Collectors.toList());
+  }
+
+  @Value
+  private static class AsyncCount {
+    Executor executor;
+    PlatformTransactionManager transactionManager;
+  }
+
+  /**
+   * Count cache key: queries restricted by their QuerySpec only are identified by the resource
+   * class, the filters and the count scope.
+   */
+  @Value
+  private static class CountKey {
+    Class<?> resourceClass;
+    String filters;
+    Object countScope;
+
+    /**
+     * @return the key or null if the query can't be identified by its QuerySpec
+     */
+    static CountKey of(JpaMetaInformationParams params) {
+      if (!isIdentifiedByQuerySpec(params)) {
+        return null;
+      }
+      return new CountKey(
+          params.getSourceResourceClass(),
+          getFilters(params.getQuerySpec()).toString(),
+          params.getCountScope());
+    }
   }
 
 }
@@ -0,0 +1,37 @@
+package ca.gc.aafc.dina.repository.meta;
+
+import io.crnk.core.resource.meta.DefaultPagedMetaInformation;
+import io.crnk.core.resource.meta.MetaInformation;
+import io.crnk.core.resource.meta.PagedMetaInformation;
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * Meta information of a keyset paginated response: the optional total count plus the cursor of
+ * the next page, to be sent back as "filter[cursor]". The next cursor is null on the last page.
+ */
+@Getter
+@Setter
+public class KeysetPagedMetaInformation extends DefaultPagedMetaInformation {
+
+  private String nextCursor;
+
+  /**
+   * Creates the keyset meta information, keeping the total count of the given meta information.
+   *
+   * @param metaInformation meta information returned by a {@link JpaMetaInformationProvider},
+   *          can be null
+   * @param nextCursor cursor of the next page, null on the last page
+   * @return the meta information
+   */
+  public static KeysetPagedMetaInformation of(MetaInformation metaInformation, String nextCursor) {
+    KeysetPagedMetaInformation keysetMetaInformation = new KeysetPagedMetaInformation();
+    if (metaInformation instanceof PagedMetaInformation) {
+      keysetMetaInformation.setTotalResourceCount(
+          ((PagedMetaInformation) metaInformation).getTotalResourceCount());
+    }
+    keysetMetaInformation.setNextCursor(nextCursor);
+    return keysetMetaInformation;
+  }
+
+}
@@ -0,0 +1,125 @@
+package ca.gc.aafc.dina.repository.meta;
+
+import javax.persistence.EntityManagerFactory;
+
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.event.service.spi.EventListenerRegistry;
+import org.hibernate.event.spi.EventType;
+import org.hibernate.event.spi.PostCollectionRecreateEvent;
+import org.hibernate.event.spi.PostCollectionRecreateEventListener;
+import org.hibernate.event.spi.PostCollectionRemoveEvent;
+import org.hibernate.event.spi.PostCollectionRemoveEventListener;
+import org.hibernate.event.spi.PostCollectionUpdateEvent;
+import org.hibernate.event.spi.PostCollectionUpdateEventListener;
+import org.hibernate.event.spi.PostDeleteEvent;
+import org.hibernate.event.spi.PostDeleteEventListener;
+import org.hibernate.event.spi.PostInsertEvent;
+import org.hibernate.event.spi.PostInsertEventListener;
+import org.hibernate.event.spi.PostUpdateEvent;
+import org.hibernate.event.spi.PostUpdateEventListener;
+import org.hibernate.persister.entity.EntityPersister;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Marks the Spring transactions in which Hibernate wrote entities or collections to the database,
+ * i.e. flushed changes that other transactions can't see until the commit. Bulk and native
+ * statements are not tracked.
+ */
+final class TransactionWriteTracker implements PostInsertEventListener, PostUpdateEventListener,
+    PostDeleteEventListener, PostCollectionRecreateEventListener,
+    PostCollectionUpdateEventListener, PostCollectionRemoveEventListener {
+
+  private static final long serialVersionUID = 1L;
+
+  /** Transaction resource bound while the transaction has written. */
+  private static final Object WRITTEN_KEY = new Object();
+
+  private TransactionWriteTracker() {
+  }
+
+  /**
+   * Registers a tracker with the Hibernate events of the given EntityManagerFactory.
+   */
+  static void register(EntityManagerFactory entityManagerFactory) {
+    TransactionWriteTracker tracker = new TransactionWriteTracker();
+    EventListenerRegistry registry = entityManagerFactory
+        .unwrap(SessionFactoryImplementor.class)
+        .getServiceRegistry()
+        .getService(EventListenerRegistry.class);
+    registry.appendListeners(EventType.POST_INSERT, tracker);
+    registry.appendListeners(EventType.POST_UPDATE, tracker);
+    registry.appendListeners(EventType.POST_DELETE, tracker);
+    registry.appendListeners(EventType.POST_COLLECTION_RECREATE, tracker);
+    registry.appendListeners(EventType.POST_COLLECTION_UPDATE, tracker);
+    registry.appendListeners(EventType.POST_COLLECTION_REMOVE, tracker);
+  }
+
+  /**
+   * @return true if the current transaction wrote entities or collections
+   */
+  static boolean hasCurrentTransactionWritten() {
+    return TransactionSynchronizationManager.hasResource(WRITTEN_KEY);
+  }
+
+  private static void markCurrentTransaction() {
+    if (!TransactionSynchronizationManager.isSynchronizationActive()
+        || TransactionSynchronizationManager.hasResource(WRITTEN_KEY)) {
+      return;
+    }
+    TransactionSynchronizationManager.bindResource(WRITTEN_KEY, Boolean.TRUE);
+    TransactionSynchronizationManager.registerSynchronization(
+        new TransactionSynchronizationAdapter() {
+          @Override
+          public void suspend() {
+            TransactionSynchronizationManager.unbindResourceIfPossible(WRITTEN_KEY);
+          }
+
+          @Override
+          public void resume() {
+            TransactionSynchronizationManager.bindResource(WRITTEN_KEY, Boolean.TRUE);
+          }
+
+          @Override
+          public void afterCompletion(int status) {
+            TransactionSynchronizationManager.unbindResourceIfPossible(WRITTEN_KEY);
+          }
+        });
+  }
+
+  @Override
+  public void onPostInsert(PostInsertEvent event) {
+    markCurrentTransaction();
+  }
+
+  @Override
+  public void onPostUpdate(PostUpdateEvent event) {
+    markCurrentTransaction();
+  }
+
+  @Override
+  public void onPostDelete(PostDeleteEvent event) {
+    markCurrentTransaction();
+  }
+
+  @Override
+  public void onPostRecreateCollection(PostCollectionRecreateEvent event) {
+    markCurrentTransaction();
+  }
+
+  @Override
+  public void onPostUpdateCollection(PostCollectionUpdateEvent event) {
+    markCurrentTransaction();
+  }
+
+  @Override
+  public void onPostRemoveCollection(PostCollectionRemoveEvent event) {
+    markCurrentTransaction();
+  }
+
+  @Override
+  public boolean requiresPostCommitHanding(EntityPersister persister) {
+    return false;
+  }
+
+}
@@ -76,6 +76,7 @@ public class TestConfiguration {
       CustomFieldResolverSpec.<Department>builder()
         .field("employeeCount")
         .resolver(dept -> dept.getEmployees().size())
+        .prefetchedRelation("employees")
         .build()
     ));
 
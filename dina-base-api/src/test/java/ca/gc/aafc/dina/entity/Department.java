@@ -11,6 +11,7 @@ import javax.persistence.Id;
 import javax.persistence.ManyToOne;
 import javax.persistence.OneToMany;
 import javax.persistence.PrePersist;
+import javax.persistence.Version;
 import javax.validation.constraints.NotNull;
 import javax.validation.constraints.Size;
 
@@ -35,6 +36,9 @@ public class Department implements DinaEntity {
   @NaturalId
   private UUID uuid;
 
+  @Version
+  private Integer version;
+
   @Size(min = 1, max = 50)
   private String name;
   
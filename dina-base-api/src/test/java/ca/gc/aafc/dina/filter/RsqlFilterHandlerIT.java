@@ -1,6 +1,7 @@
 package ca.gc.aafc.dina.filter;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import java.io.Serializable;
 import java.util.Collections;
@@ -47,6 +48,9 @@ public class RsqlFilterHandlerIT {
 
   @Inject
   protected ResourceRegistry resourceRegistry;
+
+  @Inject
+  private RsqlFilterHandler rsqlFilterHandler;
   
   @BeforeEach
   public void initEmployees() {
@@ -118,6 +122,38 @@ public class RsqlFilterHandlerIT {
     assertEquals("employee4", employees.get(1).getName());
   }
   
+  @Test
+  public void findAllEmployees_whenSameRsqlFilterIsRepeated_filterParsedOnce() {
+    String rsql = "name==employee1 or name==employee3";
+    long missCount = rsqlFilterHandler.getParsedFilterCacheStats().missCount();
+    long hitCount = rsqlFilterHandler.getParsedFilterCacheStats().hitCount();
+
+    for (int i = 0; i < 3; i++) {
+      assertEquals(2, this.employeeRepository.findAll(rsqlQuerySpec(rsql)).size());
+    }
+
+    // Parsed once for the first page query, reused by the count and the next requests.
+    assertEquals(missCount + 1, rsqlFilterHandler.getParsedFilterCacheStats().missCount());
+    assertTrue(rsqlFilterHandler.getParsedFilterCacheStats().hitCount() >= hitCount + 2);
+  }
+
+  @Test
+  public void findAllEmployees_whenRsqlFiltersDiffer_eachFilterParsed() {
+    long missCount = rsqlFilterHandler.getParsedFilterCacheStats().missCount();
+
+    assertEquals(1, this.employeeRepository.findAll(rsqlQuerySpec("name==employee2")).size());
+    assertEquals(1, this.employeeRepository.findAll(rsqlQuerySpec("name==employee5")).size());
+
+    assertEquals(missCount + 2, rsqlFilterHandler.getParsedFilterCacheStats().missCount());
+  }
+
+  private static QuerySpec rsqlQuerySpec(String rsql) {
+    QuerySpec querySpec = new QuerySpec(EmployeeDto.class);
+    querySpec.setFilters(Collections.singletonList(
+        new FilterSpec(Collections.singletonList("rsql"), FilterOperator.EQ, rsql)));
+    return querySpec;
+  }
+
   /**
    * For RSQL strings containing commas to work, the Crnk QuerySpecUrlMapper needs to be
    * configured to not convert those strings to HashSets. This test ensures that the
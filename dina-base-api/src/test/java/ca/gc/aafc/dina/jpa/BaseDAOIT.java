@@ -15,6 +15,7 @@ import org.junit.jupiter.api.Test;
 import org.springframework.boot.test.context.SpringBootTest;
 
 import ca.gc.aafc.dina.TestConfiguration;
+import ca.gc.aafc.dina.dto.DepartmentDto;
 import ca.gc.aafc.dina.entity.Department;
 import ca.gc.aafc.dina.entity.DepartmentType;
 
@@ -30,6 +31,22 @@ public class BaseDAOIT {
     assertEquals("id", baseDAO.getDatabaseIdFieldName(Department.class));
     assertEquals("uuid", baseDAO.getNaturalIdFieldName(Department.class));
   }
+
+  @Test
+  public void getNaturalIdFieldName_onNonEntityClass_returnNull() {
+    assertNull(baseDAO.getNaturalIdFieldName(DepartmentDto.class));
+  }
+
+  @Test
+  public void getIdentifierMetadata_onEntityClass_returnsExposedIdentifier() {
+    EntityIdentifierMetadata metadata = baseDAO.getIdentifierMetadata(Department.class);
+    assertEquals(UUID.class, metadata.getNaturalIdType());
+    assertEquals("uuid", metadata.getExposedIdName());
+
+    Department dep = Department.builder().name("dep1").location("dep location").build();
+    baseDAO.create(dep);
+    assertEquals(dep.getUuid(), metadata.getExposedId(dep));
+  }
   
   @Test
   public void findOne_onValidIdentifier_returnsEntity() {
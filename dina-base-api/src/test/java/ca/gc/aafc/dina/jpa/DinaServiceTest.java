@@ -2,9 +2,12 @@ package ca.gc.aafc.dina.jpa;
 
 import static org.junit.Assert.assertNull;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
@@ -12,6 +15,7 @@ import java.util.Map;
 import java.util.UUID;
 
 import javax.inject.Inject;
+import javax.persistence.EntityManager;
 import javax.transaction.Transactional;
 
 import com.google.common.collect.ImmutableMap;
@@ -32,12 +36,45 @@ public class DinaServiceTest {
   @Inject
   private DinaServiceTestImplementation serviceUnderTest;
 
+  @Inject
+  private EntityManager entityManager;
+
   @Test
   public void create_ValidEntity_EntityPersists() {
     Department result = persistDepartment();
     assertNotNull(result.getId());
   }
 
+  @Test
+  public void createAll_ValidEntities_EntitiesPersistedByChunks() {
+    List<Department> departments = new ArrayList<>();
+    for (int i = 0; i < 25; i++) {
+      departments.add(createDepartment());
+    }
+
+    BulkCreateResult result = serviceUnderTest.createAll(departments, 10);
+
+    assertEquals(25, result.getCount());
+    for (int i = 0; i < departments.size(); i++) {
+      Department department = departments.get(i);
+      // preCreate ran and the natural ids are returned in order
+      assertNotNull(department.getId());
+      assertEquals(department.getUuid(), result.getIds().get(i));
+      assertNotNull(serviceUnderTest.findOne(department.getUuid(), Department.class));
+    }
+  }
+
+  @Test
+  public void createAll_EntityLoadedBeforeCall_EntityStaysManaged() {
+    Department loaded = persistDepartment();
+    List<Department> departments = Collections.singletonList(createDepartment());
+
+    serviceUnderTest.createAll(departments, 10);
+
+    assertTrue(entityManager.contains(loaded));
+    assertFalse(entityManager.contains(departments.get(0)));
+  }
+
   @Test
   public void findOne_ValidInput_FindsOne() {
     Department expected = persistDepartment();
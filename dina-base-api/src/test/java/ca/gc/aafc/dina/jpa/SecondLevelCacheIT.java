@@ -0,0 +1,87 @@
+package ca.gc.aafc.dina.jpa;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Collections;
+import java.util.UUID;
+
+import javax.inject.Inject;
+
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import ca.gc.aafc.dina.TestConfiguration;
+import ca.gc.aafc.dina.entity.DepartmentType;
+import ca.gc.aafc.dina.repository.JpaDtoRepository;
+
+/**
+ * Not transactional: the second-level cache is only updated when the transactions commit.
+ */
+@SpringBootTest(classes = TestConfiguration.class, properties = "dina.cache.enabled=true")
+public class SecondLevelCacheIT {
+
+  @Inject
+  private BaseDAO baseDAO;
+
+  @Inject
+  private JpaDtoRepository dtoRepository;
+
+  @Inject
+  private PlatformTransactionManager transactionManager;
+
+  @Test
+  public void findOneByNaturalId_whenEntityIsCached_resolvedFromCache() {
+    TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+    UUID uuid = UUID.randomUUID();
+    transactionTemplate.execute(status -> {
+      baseDAO.create(DepartmentType.builder().uuid(uuid).name("cached type").build());
+      return null;
+    });
+
+    try {
+      // First lookup, puts the entity in the cache if the insert didn't.
+      transactionTemplate.execute(status -> baseDAO.findOneByNaturalId(uuid, DepartmentType.class));
+
+      Statistics statistics = baseDAO.getStatistics();
+      long naturalIdCacheHits = statistics.getNaturalIdCacheHitCount();
+      long entityCacheHits = statistics.getSecondLevelCacheHitCount();
+      long queries = statistics.getPrepareStatementCount();
+
+      DepartmentType found = transactionTemplate.execute(
+          status -> baseDAO.findOneByNaturalId(uuid, DepartmentType.class));
+
+      assertEquals("cached type", found.getName());
+      assertTrue(statistics.getNaturalIdCacheHitCount() > naturalIdCacheHits);
+      assertTrue(statistics.getSecondLevelCacheHitCount() > entityCacheHits);
+      assertEquals(queries, statistics.getPrepareStatementCount());
+    } finally {
+      transactionTemplate.execute(status -> {
+        baseDAO.delete(baseDAO.findOneByNaturalId(uuid, DepartmentType.class));
+        return null;
+      });
+    }
+  }
+
+  @Test
+  public void bulkDeleteByExposedIds_whenEntityIsCached_cacheEvicted() {
+    TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+    UUID uuid = UUID.randomUUID();
+    transactionTemplate.execute(status -> {
+      baseDAO.create(DepartmentType.builder().uuid(uuid).name("evicted type").build());
+      return null;
+    });
+    transactionTemplate.execute(status -> baseDAO.findOneByNaturalId(uuid, DepartmentType.class));
+
+    transactionTemplate.execute(status -> dtoRepository.bulkDeleteByExposedIds(
+        Collections.singletonList(uuid), DepartmentType.class));
+
+    assertNull(transactionTemplate.execute(
+        status -> baseDAO.findOneByNaturalId(uuid, DepartmentType.class)));
+  }
+
+}
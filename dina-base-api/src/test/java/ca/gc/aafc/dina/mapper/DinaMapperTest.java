@@ -1,7 +1,9 @@
 package ca.gc.aafc.dina.mapper;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -131,6 +133,86 @@ public class DinaMapperTest {
     assertNull(dto.getClassMates());
   }
 
+  @Test
+  public void toDtos_MultipleEntities_MappedInOrder() {
+    List<Student> entities = Arrays.asList(createEntity(), createEntity(), createEntity());
+
+    Map<Class<?>, Set<String>> selectedFieldPerClass = ImmutableMap.of(
+      Student.class, ImmutableSet.of("name", "customField"));
+
+    List<StudentDto> dtos = mapper.toDtos(entities, selectedFieldPerClass, new HashSet<>());
+
+    assertEquals(entities.size(), dtos.size());
+    for (int i = 0; i < entities.size(); i++) {
+      assertEquals(entities.get(i).getName(), dtos.get(i).getName());
+      assertEquals(entities.get(i).getCustomField().getName(), dtos.get(i).getCustomField());
+    }
+  }
+
+  @Test
+  public void toDtos_AboveParallelThreshold_MappedInOrder() {
+    DinaMapper<StudentDto, Student> parallelMapper = new DinaMapper<>(
+      StudentDto.class, Student.class, dtoResolvers, entityResolvers);
+    parallelMapper.setParallelMappingThreshold(10);
+
+    List<Student> entities = new ArrayList<>();
+    for (int i = 0; i < 100; i++) {
+      entities.add(createEntity());
+    }
+
+    Map<Class<?>, Set<String>> selectedFieldPerClass = ImmutableMap.of(
+      Student.class, ImmutableSet.of("name", "iq"));
+
+    List<StudentDto> dtos = parallelMapper.toDtos(entities, selectedFieldPerClass, new HashSet<>());
+
+    assertEquals(entities.size(), dtos.size());
+    for (int i = 0; i < entities.size(); i++) {
+      assertEquals(entities.get(i).getName(), dtos.get(i).getName());
+      assertEquals(entities.get(i).getIq(), dtos.get(i).getIq());
+    }
+  }
+
+  @Test
+  public void toDto_SameSelectedFields_FieldSelectionReused() {
+    DinaMapper<StudentDto, Student> cachingMapper = new DinaMapper<>(
+      StudentDto.class, Student.class, dtoResolvers, entityResolvers);
+    Map<Class<?>, Set<String>> selectedFieldPerClass = ImmutableMap.of(
+      Student.class, ImmutableSet.of("name", "customField"));
+
+    cachingMapper.toDto(createEntity(), selectedFieldPerClass, new HashSet<>());
+    StudentDto dto = cachingMapper.toDto(createEntity(), selectedFieldPerClass, new HashSet<>());
+
+    assertEquals(1, cachingMapper.getDtoFieldSelectionCacheStats().missCount());
+    assertEquals(1, cachingMapper.getDtoFieldSelectionCacheStats().hitCount());
+    // The resolvers of the cached selection still apply.
+    assertNotNull(dto.getCustomField());
+
+    cachingMapper.toDto(
+      createEntity(), ImmutableMap.of(Student.class, ImmutableSet.of("name")), new HashSet<>());
+
+    assertEquals(2, cachingMapper.getDtoFieldSelectionCacheStats().missCount());
+    assertEquals(1, cachingMapper.getDtoFieldSelectionCacheStats().hitCount());
+  }
+
+  @Test
+  public void applyDtoToEntity_SameSelectedFields_FieldSelectionReused() {
+    DinaMapper<StudentDto, Student> cachingMapper = new DinaMapper<>(
+      StudentDto.class, Student.class, dtoResolvers, entityResolvers);
+    Map<Class<?>, Set<String>> selectedFieldPerClass = ImmutableMap.of(
+      StudentDto.class, ImmutableSet.of("name", "iq"));
+
+    cachingMapper.applyDtoToEntity(
+      createDTO(), new Student(), selectedFieldPerClass, new HashSet<>());
+    cachingMapper.applyDtoToEntity(
+      createDTO(), new Student(), selectedFieldPerClass, new HashSet<>());
+    cachingMapper.applyDtoToEntity(
+      createDTO(), new Student(), ImmutableMap.of(StudentDto.class, ImmutableSet.of("name")),
+      new HashSet<>());
+
+    assertEquals(2, cachingMapper.getEntityFieldSelectionCacheStats().missCount());
+    assertEquals(1, cachingMapper.getEntityFieldSelectionCacheStats().hitCount());
+  }
+
   @Test
   public void applyDtoToEntity_BaseAttributesTest_SelectedFieldsMapped() {
     Student result = new Student();
@@ -293,6 +375,17 @@ public class DinaMapperTest {
     entityResolvers.add(customFieldResolver);
   }
 
+  @Test
+  public void applyDtoToEntity_NullOnPrimitiveWithDefaultEngine_IllegalArgumentExceptionThrown() {
+    DinaMapper<ScoreDto, Score> scoreMapper = new DinaMapper<>(
+      ScoreDto.class, Score.class, new ArrayList<>(), new ArrayList<>());
+    Map<Class<?>, Set<String>> selectedFieldPerClass = ImmutableMap.of(
+      ScoreDto.class, ImmutableSet.of("value"));
+
+    assertThrows(IllegalArgumentException.class, () -> scoreMapper.applyDtoToEntity(
+      new ScoreDto(), new Score(), selectedFieldPerClass, new HashSet<>()));
+  }
+
   @Data
   @Builder
   @NoArgsConstructor
@@ -338,4 +431,15 @@ public class DinaMapperTest {
     private List<Student> classMates;
 
   }
+
+  @Data
+  public static final class ScoreDto {
+    private Integer value;
+  }
+
+  @Data
+  public static final class Score {
+    private int value;
+  }
+
 }
@@ -0,0 +1,198 @@
+package ca.gc.aafc.dina.mapper;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import javax.inject.Inject;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import ca.gc.aafc.dina.TestConfiguration;
+import ca.gc.aafc.dina.dto.DepartmentDto;
+import ca.gc.aafc.dina.dto.EmployeeDto;
+import ca.gc.aafc.dina.entity.ComplexObject;
+import ca.gc.aafc.dina.entity.Department;
+import ca.gc.aafc.dina.entity.Employee;
+import io.crnk.core.engine.registry.ResourceRegistry;
+import io.crnk.core.queryspec.IncludeFieldSpec;
+import io.crnk.core.queryspec.QuerySpec;
+
+/**
+ * Compares the mapping plans using the accessors generated by a
+ * {@link LambdaPropertyAccessorEngine} with the SpEL mapping plans.
+ */
+@SpringBootTest(classes = TestConfiguration.class)
+public class JpaDtoMapperIT {
+
+  @Inject
+  private ResourceRegistry resourceRegistry;
+
+  private final JpaDtoMapper spelMapper = new JpaDtoMapper(
+    jpaEntities(), Collections.emptyMap());
+
+  private final JpaDtoMapper accessorMapper = new JpaDtoMapper(
+    jpaEntities(),
+    Collections.emptyMap(),
+    JpaDtoMapper.DEFAULT_MAPPING_PLAN_CACHE_SIZE,
+    new LambdaPropertyAccessorEngine());
+
+  private static Map<Class<?>, Class<?>> jpaEntities() {
+    Map<Class<?>, Class<?>> jpaEntities = new HashMap<>();
+    jpaEntities.put(DepartmentDto.class, Department.class);
+    jpaEntities.put(EmployeeDto.class, Employee.class);
+    return jpaEntities;
+  }
+
+  @Test
+  public void toDto_withAccessorEngine_nestedToOnePathMapped() {
+    UUID deptUuid = UUID.randomUUID();
+    Employee employee = Employee.builder()
+      .id(1)
+      .name("employee")
+      .department(Department.builder().uuid(deptUuid).name("dept").build())
+      .build();
+
+    EmployeeDto dto = toDto(accessorMapper, employee);
+
+    assertEquals("employee", dto.getName());
+    assertNotNull(dto.getDepartment());
+    assertEquals(deptUuid, dto.getDepartment().getUuid());
+    // Only the id of a to-one relation is selected by default.
+    assertNull(dto.getDepartment().getName());
+  }
+
+  @Test
+  public void toDto_withAccessorEngineAndNullIntermediate_nestedDtoNotCreated() {
+    Employee employee = Employee.builder().id(1).name("employee").build();
+
+    EmployeeDto dto = toDto(accessorMapper, employee);
+
+    assertEquals("employee", dto.getName());
+    assertNull(dto.getDepartment());
+  }
+
+  @Test
+  public void toDto_withAccessorEngineAndTypeMismatch_spelConversionUsed() {
+    // The entity's ComplexObject is converted to the DTO's String by SpEL.
+    ComplexObject customField = ComplexObject.builder().id(2L).name("custom").build();
+    Employee employee = Employee.builder().id(1).customField(customField).build();
+
+    EmployeeDto dto = toDto(accessorMapper, employee);
+
+    assertEquals(customField.toString(), dto.getCustomField());
+  }
+
+  @Test
+  public void toDto_withAccessorEngineAndGetterThrowingClassCastException_exceptionPropagated() {
+    Department department = new Department() {
+      @Override
+      public UUID getUuid() {
+        throw new ClassCastException("thrown by the getter");
+      }
+    };
+    Employee employee = Employee.builder().id(1).name("employee").department(department).build();
+
+    assertThrows(ClassCastException.class, () -> toDto(accessorMapper, employee));
+  }
+
+  @Test
+  public void toDto_withAccessorEngine_sameDtoAsSpelMapping() {
+    Employee employee = Employee.builder()
+      .id(1)
+      .name("employee")
+      .job("job")
+      .customField(ComplexObject.builder().id(2L).name("custom").build())
+      .department(Department.builder().uuid(UUID.randomUUID()).name("dept").build())
+      .build();
+
+    assertEquals(toDto(spelMapper, employee), toDto(accessorMapper, employee));
+  }
+
+  @Test
+  public void toDto_whenSameSelectedFields_mappingPlanReused() {
+    JpaDtoMapper mapper = new JpaDtoMapper(jpaEntities(), Collections.emptyMap());
+    Employee employee = Employee.builder().id(1).name("employee").job("job").build();
+
+    toDto(mapper, employee);
+    long plansCreated = mapper.getMappingPlanCacheStats().missCount();
+    long plansReused = mapper.getMappingPlanCacheStats().hitCount();
+
+    EmployeeDto dto = toDto(mapper, employee);
+
+    assertEquals("job", dto.getJob());
+    assertEquals(plansCreated, mapper.getMappingPlanCacheStats().missCount());
+    assertTrue(mapper.getMappingPlanCacheStats().hitCount() > plansReused);
+
+    QuerySpec nameOnly = new QuerySpec(EmployeeDto.class);
+    nameOnly.setIncludedFields(Collections.singletonList(
+      new IncludeFieldSpec(Collections.singletonList("name"))));
+    dto = (EmployeeDto) mapper.toDto(employee, nameOnly, resourceRegistry);
+
+    assertNull(dto.getJob());
+    assertTrue(mapper.getMappingPlanCacheStats().missCount() > plansCreated);
+  }
+
+  @Test
+  public void toDto_whenSameQuerySpecShape_selectedFieldsReused() {
+    JpaDtoMapper mapper = new JpaDtoMapper(jpaEntities(), Collections.emptyMap());
+    Employee employee = Employee.builder().id(1).name("employee").job("job").build();
+
+    // Distinct QuerySpec instances of the same shape share the cached selected fields.
+    toDto(mapper, employee);
+    toDto(mapper, employee);
+
+    assertEquals(1, mapper.getSelectedFieldsCacheStats().missCount());
+    assertEquals(1, mapper.getSelectedFieldsCacheStats().hitCount());
+
+    QuerySpec nameOnly = new QuerySpec(EmployeeDto.class);
+    nameOnly.setIncludedFields(Collections.singletonList(
+      new IncludeFieldSpec(Collections.singletonList("name"))));
+    mapper.toDto(employee, nameOnly, resourceRegistry);
+
+    assertEquals(2, mapper.getSelectedFieldsCacheStats().missCount());
+    assertEquals(1, mapper.getSelectedFieldsCacheStats().hitCount());
+  }
+
+  @Test
+  public void toDtos_withIncludedRelation_onePlanLookupPerCall() {
+    JpaDtoMapper mapper = new JpaDtoMapper(jpaEntities(), Collections.emptyMap());
+    List<Employee> employees = new ArrayList<>();
+    for (int i = 1; i <= 3; i++) {
+      employees.add(Employee.builder()
+        .id(i)
+        .name("employee " + i)
+        .department(Department.builder().uuid(UUID.randomUUID()).name("dept " + i).build())
+        .build());
+    }
+    QuerySpec querySpec = new QuerySpec(EmployeeDto.class);
+    querySpec.includeRelation(Collections.singletonList("department"));
+
+    mapper.toDtos(employees, querySpec, resourceRegistry);
+    long plansCreated = mapper.getMappingPlanCacheStats().missCount();
+    long plansReused = mapper.getMappingPlanCacheStats().hitCount();
+
+    List<Object> dtos = mapper.toDtos(employees, querySpec, resourceRegistry);
+
+    // The included relation is mapped with the cached plan of the root DTO.
+    assertEquals("dept 3", ((EmployeeDto) dtos.get(2)).getDepartment().getName());
+    assertEquals(plansCreated, mapper.getMappingPlanCacheStats().missCount());
+    assertEquals(plansReused + 1, mapper.getMappingPlanCacheStats().hitCount());
+  }
+
+  private EmployeeDto toDto(JpaDtoMapper mapper, Employee employee) {
+    return (EmployeeDto) mapper.toDto(
+      employee, new QuerySpec(EmployeeDto.class), resourceRegistry);
+  }
+
+}
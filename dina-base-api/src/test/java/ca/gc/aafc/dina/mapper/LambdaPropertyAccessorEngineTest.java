@@ -0,0 +1,64 @@
+package ca.gc.aafc.dina.mapper;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import org.junit.jupiter.api.Test;
+
+import ca.gc.aafc.dina.mapper.DinaMapperTest.Student;
+
+public class LambdaPropertyAccessorEngineTest {
+
+  private final LambdaPropertyAccessorEngine engine = new LambdaPropertyAccessorEngine();
+
+  @Test
+  public void getProperty_BaseAttributes_ValuesReturned() {
+    Student student = Student.builder().name("name").iq(120).build();
+
+    assertEquals("name", engine.getProperty(student, "name"));
+    assertEquals(120, engine.getProperty(student, "iq"));
+    assertNull(engine.getProperty(student, "friend"));
+  }
+
+  @Test
+  public void setProperty_BaseAttributes_ValuesSet() {
+    Student student = new Student();
+
+    engine.setProperty(student, "name", "name");
+    engine.setProperty(student, "iq", 120);
+
+    assertEquals("name", student.getName());
+    assertEquals(120, student.getIq());
+  }
+
+  @Test
+  public void getProperty_NestedPath_FallbackEngineUsed() {
+    Student friend = Student.builder().name("friend").build();
+    Student student = Student.builder().friend(friend).build();
+
+    assertEquals("friend", engine.getProperty(student, "friend.name"));
+  }
+
+  @Test
+  public void getPropertyType_BaseAttributes_DeclaredTypeReturned() {
+    Student student = new Student();
+
+    assertEquals(String.class, engine.getPropertyType(student, "name"));
+    assertEquals(int.class, engine.getPropertyType(student, "iq"));
+    assertEquals(Student.class, engine.getPropertyType(student, "friend"));
+  }
+
+  @Test
+  public void findAccessors_PrecompiledClass_GeneratedAccessorsReturned() {
+    engine.precompile(Student.class);
+    Student student = new Student();
+
+    engine.findSetter(Student.class, "name").accept(student, "name");
+
+    assertEquals("name", engine.findGetter(Student.class, "name").apply(student));
+    assertEquals(Student.class, engine.findPropertyType(Student.class, "friend"));
+    assertNull(engine.findGetter(Student.class, "unknown"));
+    assertNull(engine.findSetter(Student.class, "unknown"));
+  }
+
+}
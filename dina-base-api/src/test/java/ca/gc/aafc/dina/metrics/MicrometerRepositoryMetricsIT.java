@@ -0,0 +1,177 @@
+package ca.gc.aafc.dina.metrics;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.Collections;
+
+import javax.inject.Inject;
+import javax.persistence.EntityManager;
+import javax.transaction.Transactional;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import ca.gc.aafc.dina.TestConfiguration;
+import ca.gc.aafc.dina.dto.DepartmentDto;
+import ca.gc.aafc.dina.dto.EmployeeDto;
+import ca.gc.aafc.dina.entity.Department;
+import ca.gc.aafc.dina.entity.Employee;
+import ca.gc.aafc.dina.repository.JpaDtoRepository;
+import ca.gc.aafc.dina.repository.JpaRelationshipRepository;
+import ca.gc.aafc.dina.repository.JpaResourceRepository;
+import ca.gc.aafc.dina.repository.JpaResourceRepository.WriteResponseStrategy;
+import io.crnk.core.queryspec.IncludeRelationSpec;
+import io.crnk.core.queryspec.QuerySpec;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+@Transactional
+@SpringBootTest(classes = TestConfiguration.class)
+public class MicrometerRepositoryMetricsIT {
+
+  @Inject
+  private JpaDtoRepository dtoRepository;
+
+  @Inject
+  private JpaResourceRepository<EmployeeDto> employeeRepository;
+
+  @Inject
+  private JpaResourceRepository<DepartmentDto> departmentRepository;
+
+  @Inject
+  private JpaRelationshipRepository<DepartmentDto, EmployeeDto> departmentToEmployeeRepository;
+
+  @Inject
+  private JpaRelationshipRepository<EmployeeDto, DepartmentDto> employeeToDepartmentRepository;
+
+  @Inject
+  private EntityManager entityManager;
+
+  @Test
+  public void findAll_whenMeterRegistryIsSet_operationPhasesAndPageRecorded() {
+    Department department = Department.builder().name("metrics dept").location("Ottawa").build();
+    entityManager.persist(department);
+    for (int i = 0; i < 3; i++) {
+      entityManager.persist(
+          Employee.builder().name("metrics employee " + i).department(department).build());
+    }
+
+    SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    RepositoryMetrics previousMetrics = dtoRepository.getRepositoryMetrics();
+    dtoRepository.setRepositoryMetrics(new MicrometerRepositoryMetrics(meterRegistry));
+    try {
+      QuerySpec querySpec = new QuerySpec(EmployeeDto.class);
+      querySpec.setIncludedRelations(Collections.singletonList(
+          new IncludeRelationSpec(Collections.singletonList("department"))));
+      int pageSize = employeeRepository.findAll(querySpec).size();
+
+      assertEquals(1, meterRegistry.get(MicrometerRepositoryMetrics.OPERATION_TIMER)
+          .tag(MicrometerRepositoryMetrics.RESOURCE_TAG, "employee")
+          .tag(MicrometerRepositoryMetrics.OPERATION_TAG, "findAll")
+          .timer().count());
+      for (String phase : new String[] {"query", "count", "mapping"}) {
+        assertEquals(1, meterRegistry.get(MicrometerRepositoryMetrics.PHASE_TIMER)
+            .tag(MicrometerRepositoryMetrics.PHASE_TAG, phase)
+            .timer().count());
+      }
+      assertEquals(pageSize, meterRegistry.get(MicrometerRepositoryMetrics.ROWS_MAPPED_COUNTER)
+          .counter().count());
+      assertEquals(1, meterRegistry.get(MicrometerRepositoryMetrics.INCLUDES_REQUESTED_COUNTER)
+          .counter().count());
+      assertEquals(pageSize, meterRegistry.get(MicrometerRepositoryMetrics.PAGE_SIZE_SUMMARY)
+          .summary().totalAmount());
+    } finally {
+      dtoRepository.setRepositoryMetrics(previousMetrics);
+    }
+  }
+
+  @Test
+  public void create_whenMeterRegistryIsSet_writeAndMappingPhasesRecorded() {
+    SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    RepositoryMetrics previousMetrics = dtoRepository.getRepositoryMetrics();
+    dtoRepository.setRepositoryMetrics(new MicrometerRepositoryMetrics(meterRegistry));
+    employeeRepository.setWriteResponseStrategy(WriteResponseStrategy.FROM_PERSISTENCE_CONTEXT);
+    try {
+      EmployeeDto employee = new EmployeeDto();
+      employee.setName("metrics employee");
+      employeeRepository.create(employee);
+
+      assertEquals(1, meterRegistry.get(MicrometerRepositoryMetrics.OPERATION_TIMER)
+          .tag(MicrometerRepositoryMetrics.RESOURCE_TAG, "employee")
+          .tag(MicrometerRepositoryMetrics.OPERATION_TAG, "create")
+          .timer().count());
+      assertPhaseCount(meterRegistry, "employee", "query", 1);
+      assertPhaseCount(meterRegistry, "employee", "mapping", 1);
+    } finally {
+      employeeRepository.setWriteResponseStrategy(WriteResponseStrategy.REQUERY);
+      dtoRepository.setRepositoryMetrics(previousMetrics);
+    }
+  }
+
+  @Test
+  public void save_whenRefreshStrategy_refreshTimedAsQueryPhase() {
+    Department department = Department.builder().name("metrics dept").location("Ottawa").build();
+    entityManager.persist(department);
+    DepartmentDto departmentDto = departmentRepository.findOne(
+        department.getUuid(), new QuerySpec(DepartmentDto.class));
+    departmentDto.setName("edited metrics dept");
+
+    SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    RepositoryMetrics previousMetrics = dtoRepository.getRepositoryMetrics();
+    dtoRepository.setRepositoryMetrics(new MicrometerRepositoryMetrics(meterRegistry));
+    departmentRepository.setWriteResponseStrategy(WriteResponseStrategy.REFRESH);
+    try {
+      departmentRepository.save(departmentDto);
+
+      assertEquals(1, meterRegistry.get(MicrometerRepositoryMetrics.OPERATION_TIMER)
+          .tag(MicrometerRepositoryMetrics.RESOURCE_TAG, "department")
+          .tag(MicrometerRepositoryMetrics.OPERATION_TAG, "save")
+          .timer().count());
+      // Loading and updating the entity, then the refresh.
+      assertPhaseCount(meterRegistry, "department", "query", 2);
+      assertPhaseCount(meterRegistry, "department", "mapping", 1);
+    } finally {
+      departmentRepository.setWriteResponseStrategy(WriteResponseStrategy.REQUERY);
+      dtoRepository.setRepositoryMetrics(previousMetrics);
+    }
+  }
+
+  @Test
+  public void relationshipRepository_whenMeterRegistryIsSet_operationsTaggedBySource() {
+    Department department = Department.builder().name("metrics dept").location("Ottawa").build();
+    entityManager.persist(department);
+    Employee employee = Employee.builder().name("metrics employee").build();
+    entityManager.persist(employee);
+    EmployeeDto employeeDto = employeeRepository.findOne(
+        employee.getId(), new QuerySpec(EmployeeDto.class));
+
+    SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    RepositoryMetrics previousMetrics = dtoRepository.getRepositoryMetrics();
+    dtoRepository.setRepositoryMetrics(new MicrometerRepositoryMetrics(meterRegistry));
+    try {
+      employeeToDepartmentRepository.setRelation(
+          employeeDto, department.getUuid(), "department");
+      departmentToEmployeeRepository.findManyTargets(
+          department.getUuid(), "employees", new QuerySpec(EmployeeDto.class));
+
+      assertEquals(1, meterRegistry.get(MicrometerRepositoryMetrics.OPERATION_TIMER)
+          .tag(MicrometerRepositoryMetrics.RESOURCE_TAG, "employee")
+          .tag(MicrometerRepositoryMetrics.OPERATION_TAG, "modifyRelation")
+          .timer().count());
+      assertEquals(1, meterRegistry.get(MicrometerRepositoryMetrics.OPERATION_TIMER)
+          .tag(MicrometerRepositoryMetrics.RESOURCE_TAG, "department")
+          .tag(MicrometerRepositoryMetrics.OPERATION_TAG, "findRelated")
+          .timer().count());
+    } finally {
+      dtoRepository.setRepositoryMetrics(previousMetrics);
+    }
+  }
+
+  private static void assertPhaseCount(
+      SimpleMeterRegistry meterRegistry, String resourceType, String phase, long count) {
+    assertEquals(count, meterRegistry.get(MicrometerRepositoryMetrics.PHASE_TIMER)
+        .tag(MicrometerRepositoryMetrics.RESOURCE_TAG, resourceType)
+        .tag(MicrometerRepositoryMetrics.PHASE_TAG, phase)
+        .timer().count());
+  }
+
+}
@@ -0,0 +1,39 @@
+package ca.gc.aafc.dina.metrics;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import javax.inject.Inject;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import ca.gc.aafc.dina.TestConfiguration;
+import ca.gc.aafc.dina.repository.JpaDtoRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+@SpringBootTest(classes = {
+  TestConfiguration.class, RepositoryMetricsConfigurationIT.MeterRegistryConfig.class })
+public class RepositoryMetricsConfigurationIT {
+
+  @Inject
+  private JpaDtoRepository dtoRepository;
+
+  @Test
+  public void jpaDtoRepository_whenMeterRegistryBeanExists_micrometerMetricsInjected() {
+    assertTrue(dtoRepository.getRepositoryMetrics() instanceof MicrometerRepositoryMetrics);
+  }
+
+  @Configuration
+  static class MeterRegistryConfig {
+
+    @Bean
+    public MeterRegistry meterRegistry() {
+      return new SimpleMeterRegistry();
+    }
+
+  }
+
+}
@@ -4,6 +4,7 @@ import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import java.io.Serializable;
 import java.util.Arrays;
@@ -184,6 +185,21 @@ public class JpaRelationshipRepositoryIT {
     assertEquals(dept2, empEntityToMove.getDepartment());
   }
   
+  @Test
+  public void setRelation_whenTargetIdIsNull_employeeEntityRelatedDepartmentIsCleared() {
+    Employee testEmp = persistEmployeeWithDepartment(
+      Employee.builder().name("employee").build(),
+      Department.builder().name("department").location("Ottawa").build()
+    );
+
+    EmployeeDto testEmpDto = employeeRepository.findOne(testEmp.getId(),
+        new QuerySpec(EmployeeDto.class));
+
+    employeeToDepartmentRepository.setRelation(testEmpDto, null, "department");
+
+    assertNull(testEmp.getDepartment());
+  }
+
   @Test
   public void setRelationEmployeeToDepartment_whenEmployeeAlreadyLinkedToDepartment_relationDoesNotChange() {
     Department dept = persistTestDepartmentWith22Employees("dept");
@@ -233,6 +249,19 @@ public class JpaRelationshipRepositoryIT {
     }
   }
   
+  @Test
+  public void setRelations_whenTargetEmployeesDoNotExist_throwResourceNotFoundException() {
+    Department dept = persistTestDepartmentWith22Employees("dept");
+    DepartmentDto deptDto = departmentRepository.findOne(dept.getUuid(), new QuerySpec(DepartmentDto.class));
+
+    List<Serializable> targetIds = Arrays.asList(dept.getEmployees().get(0).getId(), -1, -2);
+
+    ResourceNotFoundException exception = assertThrows(
+        ResourceNotFoundException.class,
+        () -> departmentToEmployeeRepository.setRelations(deptDto, targetIds, "employees"));
+    assertTrue(exception.getMessage().contains("[-1, -2]"));
+  }
+
   @Test
   public void addRelations_whenEmployeesAreMovedToDifferentDept_entityRelationsAreSuccessfullyChanged() {
     // Create a test dept with 22 emps.
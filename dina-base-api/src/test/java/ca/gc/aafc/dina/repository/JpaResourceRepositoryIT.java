@@ -1,15 +1,21 @@
 package ca.gc.aafc.dina.repository;
 
+import static ca.gc.aafc.dina.testsupport.sql.SqlStatementAssertions.assertQueryCount;
+import static ca.gc.aafc.dina.testsupport.sql.SqlStatementAssertions.assertSelectCount;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
 import java.io.Serializable;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
 import java.util.stream.Collectors;
 
@@ -17,11 +23,15 @@ import javax.inject.Inject;
 import javax.persistence.EntityManager;
 import javax.transaction.Transactional;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.google.common.collect.Comparators;
 
 import org.apache.commons.lang3.StringUtils;
+import org.hibernate.Session;
 import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
 
 import ca.gc.aafc.dina.TestConfiguration;
 import ca.gc.aafc.dina.dto.DepartmentDto;
@@ -30,8 +40,22 @@ import ca.gc.aafc.dina.entity.ComplexObject;
 import ca.gc.aafc.dina.entity.Department;
 import ca.gc.aafc.dina.entity.Employee;
 import ca.gc.aafc.dina.jpa.BaseDAO;
+import ca.gc.aafc.dina.json.NdjsonWriter;
+import ca.gc.aafc.dina.repository.meta.KeysetPagedMetaInformation;
+import ca.gc.aafc.dina.testsupport.sql.SqlStatementCounter;
+import ca.gc.aafc.dina.testsupport.sql.SqlStatementCountingConfig;
+import io.crnk.core.engine.dispatcher.Response;
+import io.crnk.core.engine.document.Document;
+import io.crnk.core.engine.filter.DocumentFilterChain;
+import io.crnk.core.engine.filter.DocumentFilterContext;
+import io.crnk.core.engine.http.HttpRequestContext;
+import io.crnk.core.engine.http.HttpRequestContextProvider;
+import io.crnk.core.engine.http.HttpStatus;
+import io.crnk.core.engine.registry.ResourceRegistry;
 import io.crnk.core.exception.ResourceNotFoundException;
 import io.crnk.core.queryspec.Direction;
+import io.crnk.core.queryspec.FilterOperator;
+import io.crnk.core.queryspec.FilterSpec;
 import io.crnk.core.queryspec.IncludeFieldSpec;
 import io.crnk.core.queryspec.IncludeRelationSpec;
 import io.crnk.core.queryspec.QuerySpec;
@@ -39,7 +63,7 @@ import io.crnk.core.queryspec.SortSpec;
 import io.crnk.core.resource.list.ResourceList;
 
 @Transactional
-@SpringBootTest(classes = TestConfiguration.class)
+@SpringBootTest(classes = { TestConfiguration.class, SqlStatementCountingConfig.class })
 public class JpaResourceRepositoryIT {
   
   @Inject
@@ -53,6 +77,12 @@ public class JpaResourceRepositoryIT {
 
   @Inject
   private BaseDAO baseDAO;
+
+  @Inject
+  private JpaDtoRepository dtoRepository;
+
+  @Inject
+  private ResourceRegistry resourceRegistry;
   
   // using factory methods from dbi to create a employee and dept and persist them in the repository
   // together
@@ -298,6 +328,489 @@ public class JpaResourceRepositoryIT {
     assertEquals(expectedEmpId, employeeDtos.get(0).getId());
   }
   
+  @Test
+  public void findAll_whenKeysetPaginationIsEnabled_allPagesWalkedWithCursor() {
+    List<Integer> expectedIds = new ArrayList<>();
+    for (int i = 1; i <= 25; i++) {
+      // Duplicated names, the id is used as tie-breaker.
+      Employee emp = Employee.builder().name("keyset employee " + (i % 5)).build();
+      entityManager.persist(emp);
+      expectedIds.add(emp.getId());
+    }
+
+    employeeRepository.setKeysetPaginationEnabled(true);
+    try {
+      List<EmployeeDto> walkedEmps = new ArrayList<>();
+      String cursor = null;
+      do {
+        QuerySpec querySpec = new QuerySpec(EmployeeDto.class);
+        querySpec.setLimit(Long.valueOf(4));
+        querySpec.setSort(Arrays.asList(new SortSpec(Arrays.asList("name"), Direction.ASC)));
+        if (cursor != null) {
+          querySpec.addFilter(
+              new FilterSpec(Arrays.asList("cursor"), FilterOperator.EQ, cursor));
+        }
+        ResourceList<EmployeeDto> page = employeeRepository.findAll(querySpec);
+        walkedEmps.addAll(page);
+        cursor = ((KeysetPagedMetaInformation) page.getMeta()).getNextCursor();
+      } while (cursor != null);
+
+      List<Integer> walkedIds = walkedEmps.stream()
+          .map(EmployeeDto::getId)
+          .collect(Collectors.toList());
+      assertEquals(walkedIds.size(), walkedIds.stream().distinct().count());
+      assertTrue(walkedIds.containsAll(expectedIds));
+      assertTrue(Comparators.isInOrder(
+          walkedEmps.stream().map(EmployeeDto::getName).collect(Collectors.toList()),
+          String::compareTo));
+    } finally {
+      employeeRepository.setKeysetPaginationEnabled(false);
+    }
+  }
+
+  @Test
+  public void findAll_whenIncludesAreLoadedInTwoPhases_pageReturnedInOrderWithIncludes() {
+    for (String empName : Arrays.asList("two phase emp 3", "two phase emp 1", "two phase emp 2")) {
+      persistEmployeeWithDepartment(
+          Employee.builder().name(empName).build(),
+          Department.builder().name(empName + " dept").location("Ottawa").build());
+    }
+    // Reload the employees and their departments from the database.
+    entityManager.flush();
+    entityManager.clear();
+
+    employeeRepository.setIncludeLoadingStrategy(
+        JpaDtoRepository.IncludeLoadingStrategy.TWO_PHASE);
+    try {
+      QuerySpec querySpec = new QuerySpec(EmployeeDto.class);
+      querySpec.setLimit(Long.valueOf(2));
+      querySpec.setSort(Arrays.asList(new SortSpec(Arrays.asList("name"), Direction.ASC)));
+      querySpec.setIncludedRelations(includeRelationSpecs("department"));
+
+      List<EmployeeDto> empDtos = employeeRepository.findAll(querySpec);
+
+      assertEquals(
+          Arrays.asList("two phase emp 1", "two phase emp 2"),
+          empDtos.stream().map(EmployeeDto::getName).collect(Collectors.toList()));
+      empDtos.forEach(empDto -> assertEquals(
+          empDto.getName() + " dept", empDto.getDepartment().getName()));
+    } finally {
+      employeeRepository.setIncludeLoadingStrategy(
+          JpaDtoRepository.IncludeLoadingStrategy.FETCH_JOIN);
+    }
+  }
+
+  @Test
+  public void findAll_whenLastPagedRowDeletedBeforeTwoPhaseReload_cursorFromPagedRow() {
+    List<Integer> empIds = new ArrayList<>();
+    for (String empName : Arrays.asList("keyset emp 1", "keyset emp 2", "keyset emp 3")) {
+      Employee emp = Employee.builder().name(empName).build();
+      persistEmployeeWithDepartment(
+          emp, Department.builder().name(empName + " dept").location("Ottawa").build());
+      empIds.add(emp.getId());
+    }
+    entityManager.flush();
+    entityManager.clear();
+
+    // Deletes the last row of the first page between the page query and the reload.
+    JpaDtoRepository deletingRepository = Mockito.spy(
+        new JpaDtoRepository(entityManager, baseDAO, dtoRepository.getDtoJpaMapper()));
+    Mockito.doAnswer(invocation -> {
+      entityManager.createQuery("DELETE FROM Employee e WHERE e.id = :id")
+          .setParameter("id", empIds.get(1))
+          .executeUpdate();
+      return invocation.callRealMethod();
+    }).when(deletingRepository).findAllWithIncludedRelations(
+        Mockito.any(), Mockito.anyList(), Mockito.any(), Mockito.any());
+
+    QuerySpec querySpec = new QuerySpec(EmployeeDto.class);
+    querySpec.setLimit(Long.valueOf(2));
+    querySpec.setSort(Arrays.asList(new SortSpec(Arrays.asList("name"), Direction.ASC)));
+    querySpec.setIncludedRelations(includeRelationSpecs("department"));
+    ResourceList<EmployeeDto> firstPage = deletingRepository.findAll(findAllParams(querySpec));
+
+    assertEquals(
+        Collections.singletonList("keyset emp 1"),
+        firstPage.stream().map(EmployeeDto::getName).collect(Collectors.toList()));
+    String cursor = ((KeysetPagedMetaInformation) firstPage.getMeta()).getNextCursor();
+    assertNotNull(cursor);
+
+    // The next page starts after the deleted row.
+    querySpec.addFilter(new FilterSpec(Arrays.asList("cursor"), FilterOperator.EQ, cursor));
+    ResourceList<EmployeeDto> secondPage = dtoRepository.findAll(findAllParams(querySpec));
+
+    assertEquals(
+        Collections.singletonList("keyset emp 3"),
+        secondPage.stream().map(EmployeeDto::getName).collect(Collectors.toList()));
+    assertEquals("keyset emp 3 dept", secondPage.get(0).getDepartment().getName());
+  }
+
+  private JpaDtoRepository.FindAllParams findAllParams(QuerySpec querySpec) {
+    return JpaDtoRepository.FindAllParams.builder()
+        .sourceDtoClass(EmployeeDto.class)
+        .querySpec(querySpec)
+        .resourceRegistry(resourceRegistry)
+        .keysetPagination(true)
+        .includeLoadingStrategy(JpaDtoRepository.IncludeLoadingStrategy.TWO_PHASE)
+        .build();
+  }
+
+  @Test
+  public void findAllWithIncludedRelations_whenRowDeletedAfterPageQuery_deletedRowSkipped() {
+    List<Integer> pageIds = new ArrayList<>();
+    for (String empName : Arrays.asList("two phase emp 1", "two phase emp 2", "two phase emp 3")) {
+      Employee emp = Employee.builder().name(empName).build();
+      persistEmployeeWithDepartment(
+          emp, Department.builder().name(empName + " dept").location("Ottawa").build());
+      pageIds.add(emp.getId());
+    }
+    entityManager.flush();
+
+    // Deleted between the page query and the reload of the page with its includes.
+    entityManager.remove(entityManager.find(Employee.class, pageIds.get(1)));
+    entityManager.flush();
+    entityManager.clear();
+
+    QuerySpec querySpec = new QuerySpec(EmployeeDto.class);
+    querySpec.setIncludedRelations(includeRelationSpecs("department"));
+    List<Employee> emps = dtoRepository.findAllWithIncludedRelations(
+        Employee.class, pageIds, querySpec, Collections.emptySet());
+
+    assertEquals(
+        Arrays.asList("two phase emp 1", "two phase emp 3"),
+        emps.stream().map(Employee::getName).collect(Collectors.toList()));
+  }
+
+  @Test
+  public void findAll_whenEmployeesAreIncluded_departmentsReturnedWithAllEmployees() {
+    for (String deptName : Arrays.asList("prefetch dept 1", "prefetch dept 2")) {
+      persistTestDepartmentWith22Employees(deptName);
+    }
+    // Reload the departments from the database, with uninitialized employee collections.
+    entityManager.flush();
+    entityManager.clear();
+
+    QuerySpec querySpec = new QuerySpec(DepartmentDto.class);
+    querySpec.setSort(Arrays.asList(new SortSpec(Arrays.asList("name"), Direction.ASC)));
+    querySpec.setIncludedRelations(includeRelationSpecs("employees"));
+
+    // The count, the page and one query initializing the employees of the whole page.
+    List<DepartmentDto> deptDtos = new ArrayList<>();
+    assertSelectCount(3, () -> deptDtos.addAll(departmentRepository.findAll(querySpec)));
+
+    assertEquals(2, deptDtos.size());
+    for (DepartmentDto deptDto : deptDtos) {
+      assertEquals(22, deptDto.getEmployees().size());
+      assertEquals(22, deptDto.getEmployeeCount());
+      deptDto.getEmployees().forEach(empDto ->
+          assertTrue(empDto.getName().startsWith(deptDto.getName())));
+    }
+  }
+
+  @Test
+  public void findAll_whenProjectionIsEnabled_selectedFieldsReturnedWithoutLoadingEntities() {
+    Employee emp = createPersistedEmployeeWithDepartment();
+    emp.setJob("projected job");
+    entityManager.flush();
+    entityManager.clear();
+
+    employeeRepository.setProjectionEnabled(true);
+    try {
+      QuerySpec querySpec = new QuerySpec(EmployeeDto.class);
+      querySpec.setIncludedFields(includeFieldSpecs("name", "job"));
+
+      List<EmployeeDto> empDtos = employeeRepository.findAll(querySpec);
+
+      assertEquals(1, empDtos.size());
+      assertEquals(emp.getId(), empDtos.get(0).getId());
+      assertEquals("employee", empDtos.get(0).getName());
+      assertEquals("projected job", empDtos.get(0).getJob());
+      assertNull(empDtos.get(0).getDepartment());
+      // No entity was loaded in the persistence context.
+      assertEquals(0, entityManager.unwrap(Session.class).getStatistics().getEntityCount());
+    } finally {
+      employeeRepository.setProjectionEnabled(false);
+    }
+  }
+
+  @Test
+  public void streamAll_whenWrittenAsNdjson_allEmployeesWrittenInOrder() throws IOException {
+    List<String> expectedNames = new ArrayList<>();
+    for (int i = 1; i <= 25; i++) {
+      String name = String.format("stream employee %02d", i);
+      entityManager.persist(Employee.builder().name(name).build());
+      expectedNames.add(name);
+    }
+
+    employeeRepository.setStreamFetchSize(4);
+    try {
+      QuerySpec querySpec = new QuerySpec(EmployeeDto.class);
+      querySpec.setSort(Arrays.asList(new SortSpec(Arrays.asList("name"), Direction.ASC)));
+
+      ObjectMapper objectMapper = new ObjectMapper();
+      ByteArrayOutputStream output = new ByteArrayOutputStream();
+      long count = employeeRepository.streamAll(
+          querySpec, new NdjsonWriter(output, objectMapper));
+
+      List<String> lines = Arrays.asList(
+          output.toString(StandardCharsets.UTF_8.name()).split("\n"));
+      assertEquals(25, count);
+      assertEquals(25, lines.size());
+      List<String> streamedNames = new ArrayList<>();
+      for (String line : lines) {
+        streamedNames.add(objectMapper.readTree(line).get("name").asText());
+      }
+      assertEquals(expectedNames, streamedNames);
+    } finally {
+      employeeRepository.setStreamFetchSize(JpaDtoRepository.DEFAULT_STREAM_FETCH_SIZE);
+    }
+  }
+
+  @Test
+  public void streamAll_whenEntitiesManagedBeforeCall_onlyStreamedEntitiesDetached() {
+    for (int i = 1; i <= 5; i++) {
+      entityManager.persist(Employee.builder().name("detached employee " + i).build());
+    }
+    Department dept = Department.builder().name("managed dept").location("Ottawa").build();
+    entityManager.persist(dept);
+    entityManager.flush();
+    entityManager.clear();
+    Department managedDept = entityManager.find(Department.class, dept.getId());
+
+    employeeRepository.setStreamFetchSize(2);
+    try {
+      List<EmployeeDto> streamed = new ArrayList<>();
+      employeeRepository.streamAll(new QuerySpec(EmployeeDto.class), streamed::add);
+
+      assertEquals(5, streamed.size());
+      assertTrue(entityManager.contains(managedDept));
+      assertEquals(1, entityManager.unwrap(Session.class).getStatistics().getEntityCount());
+    } finally {
+      employeeRepository.setStreamFetchSize(JpaDtoRepository.DEFAULT_STREAM_FETCH_SIZE);
+    }
+  }
+
+  @Test
+  public void findOne_whenIfNoneMatchIsCurrentETag_throwNotModifiedException() {
+    Department dept = Department.builder().name("tagged dept").location("Ottawa").build();
+    entityManager.persist(dept);
+    entityManager.flush();
+    String eTag = "\"" + dept.getVersion() + "\"";
+
+    HttpRequestContext requestContext = Mockito.mock(HttpRequestContext.class);
+    Mockito.when(requestContext.getRequestHeader(HttpHeaders.IF_NONE_MATCH)).thenReturn(eTag);
+
+    HttpRequestContextProvider provider = departmentRepository.getHttpRequestContextProvider();
+    departmentRepository.setHttpRequestContextProvider(mockProvider(requestContext));
+    departmentRepository.setConditionalRequestsEnabled(true);
+    try {
+      QuerySpec querySpec = new QuerySpec(DepartmentDto.class);
+      assertThrows(
+          NotModifiedException.class,
+          () -> departmentRepository.findOne(dept.getUuid(), querySpec));
+      Mockito.verify(requestContext).setResponseHeader(HttpHeaders.ETAG, eTag);
+
+      // If-None-Match uses the weak comparison.
+      Mockito.when(requestContext.getRequestHeader(HttpHeaders.IF_NONE_MATCH))
+          .thenReturn("W/" + eTag);
+      assertThrows(
+          NotModifiedException.class,
+          () -> departmentRepository.findOne(dept.getUuid(), querySpec));
+
+      // A stale tag returns the resource.
+      Mockito.when(requestContext.getRequestHeader(HttpHeaders.IF_NONE_MATCH))
+          .thenReturn("\"-1\"");
+      assertEquals(
+          "tagged dept",
+          departmentRepository.findOne(dept.getUuid(), new QuerySpec(DepartmentDto.class))
+              .getName());
+    } finally {
+      departmentRepository.setConditionalRequestsEnabled(false);
+      departmentRepository.setHttpRequestContextProvider(provider);
+    }
+  }
+
+  @Test
+  public void findOne_whenNotModified_304WithoutBodyReturned() {
+    Department dept = Department.builder().name("tagged dept").location("Ottawa").build();
+    entityManager.persist(dept);
+    entityManager.flush();
+
+    HttpRequestContext requestContext = Mockito.mock(HttpRequestContext.class);
+    Mockito.when(requestContext.getRequestHeader(HttpHeaders.IF_NONE_MATCH))
+        .thenReturn("\"" + dept.getVersion() + "\"");
+
+    // The chain stands for the crnk controller calling findOne.
+    DocumentFilterContext filterContext = Mockito.mock(DocumentFilterContext.class);
+    DocumentFilterChain chain = Mockito.mock(DocumentFilterChain.class);
+    Mockito.when(chain.doFilter(filterContext)).thenAnswer(invocation -> {
+      departmentRepository.findOne(dept.getUuid(), new QuerySpec(DepartmentDto.class));
+      return new Response(new Document(), HttpStatus.OK_200);
+    });
+
+    HttpRequestContextProvider provider = departmentRepository.getHttpRequestContextProvider();
+    departmentRepository.setHttpRequestContextProvider(mockProvider(requestContext));
+    departmentRepository.setConditionalRequestsEnabled(true);
+    try {
+      Response response = new NotModifiedDocumentFilter().filter(filterContext, chain);
+
+      assertEquals(HttpStatus.NOT_MODIFIED_304, response.getHttpStatus());
+      assertNull(response.getDocument());
+    } finally {
+      departmentRepository.setConditionalRequestsEnabled(false);
+      departmentRepository.setHttpRequestContextProvider(provider);
+    }
+  }
+
+  @Test
+  public void findOne_whenNoIfNoneMatchHeader_eTagSetWithoutExtraQuery() {
+    Department dept = Department.builder().name("tagged dept").location("Ottawa").build();
+    entityManager.persist(dept);
+    entityManager.flush();
+    entityManager.clear();
+
+    long selectCount = SqlStatementCounter.count(() -> departmentRepository.findOne(
+        dept.getUuid(), new QuerySpec(DepartmentDto.class))).getSelectCount();
+    entityManager.clear();
+
+    HttpRequestContext requestContext = Mockito.mock(HttpRequestContext.class);
+    HttpRequestContextProvider provider = departmentRepository.getHttpRequestContextProvider();
+    departmentRepository.setHttpRequestContextProvider(mockProvider(requestContext));
+    departmentRepository.setConditionalRequestsEnabled(true);
+    try {
+      assertSelectCount(selectCount, () -> departmentRepository.findOne(
+          dept.getUuid(), new QuerySpec(DepartmentDto.class)));
+      Mockito.verify(requestContext)
+          .setResponseHeader(HttpHeaders.ETAG, "\"" + dept.getVersion() + "\"");
+    } finally {
+      departmentRepository.setConditionalRequestsEnabled(false);
+      departmentRepository.setHttpRequestContextProvider(provider);
+    }
+  }
+
+  @Test
+  public void save_whenIfMatchIsStaleETag_throwPreconditionFailedException() {
+    Department dept = Department.builder().name("tagged dept").location("Ottawa").build();
+    entityManager.persist(dept);
+    entityManager.flush();
+
+    HttpRequestContext requestContext = Mockito.mock(HttpRequestContext.class);
+    Mockito.when(requestContext.getRequestHeader(HttpHeaders.IF_MATCH))
+        .thenReturn("\"" + (dept.getVersion() + 1) + "\"");
+
+    HttpRequestContextProvider provider = departmentRepository.getHttpRequestContextProvider();
+    departmentRepository.setHttpRequestContextProvider(mockProvider(requestContext));
+    departmentRepository.setConditionalRequestsEnabled(true);
+    try {
+      DepartmentDto deptDto = departmentRepository.findOne(
+          dept.getUuid(), new QuerySpec(DepartmentDto.class));
+      deptDto.setName("edited dept");
+
+      assertThrows(PreconditionFailedException.class, () -> departmentRepository.save(deptDto));
+      assertEquals("tagged dept", dept.getName());
+
+      // If-Match uses the strong comparison: the weak current tag doesn't match.
+      Mockito.when(requestContext.getRequestHeader(HttpHeaders.IF_MATCH))
+          .thenReturn("W/\"" + dept.getVersion() + "\"");
+      assertThrows(PreconditionFailedException.class, () -> departmentRepository.save(deptDto));
+
+      // The current tag allows the update.
+      Mockito.when(requestContext.getRequestHeader(HttpHeaders.IF_MATCH))
+          .thenReturn("\"" + dept.getVersion() + "\"");
+      departmentRepository.save(deptDto);
+      assertEquals("edited dept", dept.getName());
+    } finally {
+      departmentRepository.setConditionalRequestsEnabled(false);
+      departmentRepository.setHttpRequestContextProvider(provider);
+    }
+  }
+
+  @Test
+  public void save_whenConditionalRequestsEnabled_newETagIsSetWithoutNotModifiedCheck() {
+    Department dept = Department.builder().name("tagged dept").location("Ottawa").build();
+    entityManager.persist(dept);
+    entityManager.flush();
+    String newETag = "\"" + (dept.getVersion() + 1) + "\"";
+
+    // A client header matching the new tag must not turn the write response into a 304.
+    HttpRequestContext requestContext = Mockito.mock(HttpRequestContext.class);
+    Mockito.when(requestContext.getRequestHeader(HttpHeaders.IF_NONE_MATCH)).thenReturn(newETag);
+
+    HttpRequestContextProvider provider = departmentRepository.getHttpRequestContextProvider();
+    departmentRepository.setHttpRequestContextProvider(mockProvider(requestContext));
+    departmentRepository.setConditionalRequestsEnabled(true);
+    try {
+      DepartmentDto deptDto = departmentRepository.findOne(
+          dept.getUuid(), new QuerySpec(DepartmentDto.class));
+      deptDto.setName("edited dept");
+
+      assertEquals("edited dept", departmentRepository.save(deptDto).getName());
+      Mockito.verify(requestContext).setResponseHeader(HttpHeaders.ETAG, newETag);
+    } finally {
+      departmentRepository.setConditionalRequestsEnabled(false);
+      departmentRepository.setHttpRequestContextProvider(provider);
+    }
+  }
+
+  @Test
+  public void save_whenIfMatchIsWildcard_resourceIsUpdated() {
+    Department dept = Department.builder().name("tagged dept").location("Ottawa").build();
+    entityManager.persist(dept);
+    entityManager.flush();
+
+    HttpRequestContext requestContext = Mockito.mock(HttpRequestContext.class);
+    Mockito.when(requestContext.getRequestHeader(HttpHeaders.IF_MATCH)).thenReturn("*");
+
+    HttpRequestContextProvider provider = departmentRepository.getHttpRequestContextProvider();
+    departmentRepository.setHttpRequestContextProvider(mockProvider(requestContext));
+    departmentRepository.setConditionalRequestsEnabled(true);
+    try {
+      DepartmentDto deptDto = departmentRepository.findOne(
+          dept.getUuid(), new QuerySpec(DepartmentDto.class));
+      deptDto.setName("edited dept");
+
+      departmentRepository.save(deptDto);
+      assertEquals("edited dept", dept.getName());
+    } finally {
+      departmentRepository.setConditionalRequestsEnabled(false);
+      departmentRepository.setHttpRequestContextProvider(provider);
+    }
+  }
+
+  @Test
+  public void save_whenResourceHasNoVersion_ifMatchIsIgnored() {
+    Employee emp = Employee.builder().name("untagged employee").build();
+    entityManager.persist(emp);
+    entityManager.flush();
+
+    HttpRequestContext requestContext = Mockito.mock(HttpRequestContext.class);
+    Mockito.when(requestContext.getRequestHeader(HttpHeaders.IF_MATCH)).thenReturn("\"-1\"");
+
+    HttpRequestContextProvider provider = employeeRepository.getHttpRequestContextProvider();
+    employeeRepository.setHttpRequestContextProvider(mockProvider(requestContext));
+    employeeRepository.setConditionalRequestsEnabled(true);
+    try {
+      EmployeeDto empDto = employeeRepository.findOne(
+          emp.getId(), new QuerySpec(EmployeeDto.class));
+      empDto.setName("edited employee");
+
+      employeeRepository.save(empDto);
+      assertEquals("edited employee", emp.getName());
+      Mockito.verify(requestContext, Mockito.never())
+          .setResponseHeader(Mockito.eq(HttpHeaders.ETAG), Mockito.anyString());
+    } finally {
+      employeeRepository.setConditionalRequestsEnabled(false);
+      employeeRepository.setHttpRequestContextProvider(provider);
+    }
+  }
+
+  private static HttpRequestContextProvider mockProvider(HttpRequestContext requestContext) {
+    HttpRequestContextProvider provider = Mockito.mock(HttpRequestContextProvider.class);
+    Mockito.when(provider.hasThreadRequestContext()).thenReturn(true);
+    Mockito.when(provider.getRequestContext()).thenReturn(requestContext);
+    return provider;
+  }
+
   @Test
   public void findAll_whenIdsArgumentIsSet_resultsAreFilteredById() {
     List<Employee> newEmps = new ArrayList<>();
@@ -345,6 +858,98 @@ public class JpaResourceRepositoryIT {
     assertEquals(newEmp.getCustomField(), empEntity.getCustomField().getName());
   }
   
+  @Test
+  public void createEmployee_whenMappedFromPersistenceContext_returnEmployeeWithId() {
+    EmployeeDto newEmp = new EmployeeDto();
+    newEmp.setName("test employee");
+    newEmp.setCustomField("testName");
+
+    employeeRepository.setWriteResponseStrategy(
+        JpaResourceRepository.WriteResponseStrategy.FROM_PERSISTENCE_CONTEXT);
+    try {
+      EmployeeDto createdEmp = employeeRepository.create(newEmp);
+
+      assertNotNull(createdEmp.getId());
+      assertEquals("test employee", createdEmp.getName());
+      assertEquals(newEmp.getCustomField(), createdEmp.getCustomField());
+    } finally {
+      employeeRepository.setWriteResponseStrategy(
+          JpaResourceRepository.WriteResponseStrategy.REQUERY);
+    }
+  }
+
+  @Test
+  public void saveDept_whenRequeried_changesFlushedBeforeQuery() {
+    DepartmentDto deptDto = editDeptWithEmployeeAddedInDatabase();
+
+    List<DepartmentDto> savedDtos = new ArrayList<>();
+    // Flush (employee insert, department update) then the requery. The managed department keeps
+    // its already loaded employees.
+    assertQueryCount(1, 1, 1, 0, () -> savedDtos.add(departmentRepository.save(deptDto)));
+
+    assertEquals(deptDto.getUuid(), savedDtos.get(0).getUuid());
+    assertEquals("edited dept", savedDtos.get(0).getName());
+    assertEquals(0, savedDtos.get(0).getEmployeeCount());
+  }
+
+  @Test
+  public void saveDept_whenMappedFromPersistenceContext_noStatementExecuted() {
+    DepartmentDto deptDto = editDeptWithEmployeeAddedInDatabase();
+
+    departmentRepository.setWriteResponseStrategy(
+        JpaResourceRepository.WriteResponseStrategy.FROM_PERSISTENCE_CONTEXT);
+    try {
+      List<DepartmentDto> savedDtos = new ArrayList<>();
+      assertQueryCount(0, 0, 0, 0, () -> savedDtos.add(departmentRepository.save(deptDto)));
+
+      assertEquals(deptDto.getUuid(), savedDtos.get(0).getUuid());
+      assertEquals("edited dept", savedDtos.get(0).getName());
+      assertEquals(0, savedDtos.get(0).getEmployeeCount());
+    } finally {
+      departmentRepository.setWriteResponseStrategy(
+          JpaResourceRepository.WriteResponseStrategy.REQUERY);
+    }
+  }
+
+  @Test
+  public void saveDept_whenRefreshed_valuesReloadedFromDatabase() {
+    DepartmentDto deptDto = editDeptWithEmployeeAddedInDatabase();
+
+    departmentRepository.setWriteResponseStrategy(
+        JpaResourceRepository.WriteResponseStrategy.REFRESH);
+    try {
+      List<DepartmentDto> savedDtos = new ArrayList<>();
+      // Flush, refresh of the department, then the reload of its employees by the mapping.
+      assertQueryCount(2, 1, 1, 0, () -> savedDtos.add(departmentRepository.save(deptDto)));
+
+      assertEquals(deptDto.getUuid(), savedDtos.get(0).getUuid());
+      assertEquals("edited dept", savedDtos.get(0).getName());
+      assertEquals(1, savedDtos.get(0).getEmployeeCount());
+    } finally {
+      departmentRepository.setWriteResponseStrategy(
+          JpaResourceRepository.WriteResponseStrategy.REQUERY);
+    }
+  }
+
+  /**
+   * Loads a department to edit, then links a new employee to it without updating the loaded
+   * employees of the department: only the database has the new employee count.
+   */
+  private DepartmentDto editDeptWithEmployeeAddedInDatabase() {
+    Department dept = Department.builder().name("saved dept").location("Ottawa").build();
+    entityManager.persist(dept);
+    entityManager.flush();
+    entityManager.clear();
+
+    DepartmentDto deptDto = departmentRepository.findOne(
+        dept.getUuid(), new QuerySpec(DepartmentDto.class));
+    Department managedDept = baseDAO.findOneByNaturalId(dept.getUuid(), Department.class);
+    entityManager.persist(Employee.builder().name("new employee").department(managedDept).build());
+
+    deptDto.setName("edited dept");
+    return deptDto;
+  }
+
   @Test
   public void createDept_whenAllEmpsOfADifferentDeptAreLinked_allEmpEntitiesAreReLinked() {
     Department dept1Entity = persistTestDepartmentWith22Employees("dept 1");
@@ -449,7 +1054,11 @@ public class JpaResourceRepositoryIT {
   public void deleteEmployee_onEmployeeLookup_employeeNotFound() {
     Employee emp = Employee.builder().name("test employee").build();
     entityManager.persist(emp);
-    employeeRepository.delete(emp.getId());
+    entityManager.flush();
+    entityManager.clear();
+
+    // Only the lookup of the entity, the delete statement runs at flush time.
+    assertSelectCount(1, () -> employeeRepository.delete(emp.getId()));
     assertNull(entityManager.find(Employee.class, emp.getId()));
   }
 
@@ -458,6 +1067,55 @@ public class JpaResourceRepositoryIT {
     assertThrows(ResourceNotFoundException.class, () -> employeeRepository.delete(1));
   }
 
+  @Test
+  public void deleteAllEmployees_onEmployeesFound_employeesDeleted() {
+    Employee emp1 = Employee.builder().name("test employee 1").build();
+    entityManager.persist(emp1);
+    Employee emp2 = Employee.builder().name("test employee 2").build();
+    entityManager.persist(emp2);
+    entityManager.flush();
+    entityManager.clear();
+
+    // One bulk load of the entities.
+    assertSelectCount(
+        1, () -> employeeRepository.deleteAll(Arrays.asList(emp1.getId(), emp2.getId())));
+
+    assertNull(entityManager.find(Employee.class, emp1.getId()));
+    assertNull(entityManager.find(Employee.class, emp2.getId()));
+  }
+
+  @Test
+  public void deleteAllEmployees_onEmployeeNotFound_throwResourceNotFoundException() {
+    Employee emp = Employee.builder().name("test employee").build();
+    entityManager.persist(emp);
+
+    assertThrows(
+        ResourceNotFoundException.class,
+        () -> employeeRepository.deleteAll(Arrays.asList(emp.getId(), -1)));
+    assertNotNull(entityManager.find(Employee.class, emp.getId()));
+  }
+
+  @Test
+  public void bulkDeleteAllEmployees_onEmployeesFound_rowsDeletedWithoutCascade() {
+    ComplexObject customField = ComplexObject.builder().name("not cascaded").build();
+    Employee emp1 = Employee.builder().name("test employee 1").customField(customField).build();
+    entityManager.persist(emp1);
+    Employee emp2 = Employee.builder().name("test employee 2").build();
+    entityManager.persist(emp2);
+    entityManager.flush();
+    entityManager.clear();
+
+    List<Integer> deleted = new ArrayList<>();
+    assertQueryCount(0, 0, 0, 1, () -> deleted.add(
+        employeeRepository.bulkDeleteAll(Arrays.asList(emp1.getId(), emp2.getId(), -1))));
+
+    assertEquals(2, deleted.get(0));
+    assertNull(entityManager.find(Employee.class, emp1.getId()));
+    assertNull(entityManager.find(Employee.class, emp2.getId()));
+    // The bulk delete doesn't cascade to the associated entities.
+    assertNotNull(entityManager.find(ComplexObject.class, customField.getId()));
+  }
+
   /**
    * Get a List<IncludeFieldSpec> from of an array of field names.
    * E.g. includeFieldSpecs("name", "description")
@@ -0,0 +1,95 @@
+package ca.gc.aafc.dina.repository;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Arrays;
+
+import javax.inject.Inject;
+import javax.persistence.EntityManager;
+import javax.persistence.criteria.CriteriaBuilder;
+import javax.persistence.criteria.CriteriaQuery;
+import javax.persistence.criteria.Expression;
+import javax.persistence.criteria.FetchParent;
+import javax.persistence.criteria.Path;
+import javax.persistence.criteria.Root;
+import javax.transaction.Transactional;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import ca.gc.aafc.dina.TestConfiguration;
+import ca.gc.aafc.dina.entity.Department;
+import ca.gc.aafc.dina.entity.Employee;
+
+@Transactional
+@SpringBootTest(classes = TestConfiguration.class)
+public class SelectionHandlerIT {
+
+  @Inject
+  private EntityManager entityManager;
+
+  @Test
+  public void getExpression_whenPathIsAlreadyJoined_joinReused() {
+    CriteriaQuery<Employee> criteriaQuery = entityManager.getCriteriaBuilder()
+        .createQuery(Employee.class);
+    Root<Employee> root = criteriaQuery.from(Employee.class);
+
+    Expression<?> sortExpression = SelectionHandler.getExpression(
+        root, Arrays.asList("department", "name"));
+    Expression<?> filterExpression = SelectionHandler.getExpression(
+        root, Arrays.asList("department", "location"));
+
+    assertEquals(1, root.getJoins().size());
+    assertSame(
+        ((Path<?>) sortExpression).getParentPath(),
+        ((Path<?>) filterExpression).getParentPath());
+  }
+
+  @Test
+  public void getExpression_whenPathIsIncluded_fetchJoinReused() {
+    CriteriaQuery<Employee> criteriaQuery = entityManager.getCriteriaBuilder()
+        .createQuery(Employee.class);
+    Root<Employee> root = criteriaQuery.from(Employee.class);
+
+    FetchParent<?, ?> fetch = SelectionHandler.getOrCreateFetch(root, "department");
+    assertSame(fetch, SelectionHandler.getOrCreateFetch(root, "department"));
+
+    Expression<?> sortExpression = SelectionHandler.getExpression(
+        root, Arrays.asList("department", "name"));
+
+    assertTrue(root.getJoins().isEmpty());
+    assertEquals(1, root.getFetches().size());
+    assertSame(fetch, ((Path<?>) sortExpression).getParentPath());
+  }
+
+  @Test
+  public void getExpression_whenPathIsToMany_newJoinPerExpression() {
+    Department dept = Department.builder().name("to-many dept").location("Ottawa").build();
+    entityManager.persist(dept);
+    for (String empName : Arrays.asList("to-many emp a", "to-many emp b")) {
+      entityManager.persist(Employee.builder().name(empName).department(dept).build());
+    }
+    entityManager.flush();
+
+    CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+    CriteriaQuery<Department> criteriaQuery = cb.createQuery(Department.class);
+    Root<Department> root = criteriaQuery.from(Department.class);
+
+    // Like "employees.name==a;employees.name==b": each filter can match a different employee.
+    Expression<?> firstFilter = SelectionHandler.getExpression(
+        root, Arrays.asList("employees", "name"));
+    Expression<?> secondFilter = SelectionHandler.getExpression(
+        root, Arrays.asList("employees", "name"));
+    criteriaQuery.select(root).distinct(true).where(
+        cb.equal(firstFilter, "to-many emp a"),
+        cb.equal(secondFilter, "to-many emp b"));
+
+    assertEquals(2, root.getJoins().size());
+    assertEquals(
+        Arrays.asList(dept),
+        entityManager.createQuery(criteriaQuery).getResultList());
+  }
+
+}
@@ -0,0 +1,161 @@
+package ca.gc.aafc.dina.repository.meta;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Arrays;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.inject.Inject;
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceException;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import ca.gc.aafc.dina.TestConfiguration;
+import ca.gc.aafc.dina.dto.EmployeeDto;
+import ca.gc.aafc.dina.entity.Employee;
+import ca.gc.aafc.dina.repository.JpaResourceRepository;
+import ca.gc.aafc.dina.repository.meta.JpaMetaInformationProvider.JpaMetaInformationParams;
+import io.crnk.core.queryspec.FilterOperator;
+import io.crnk.core.queryspec.FilterSpec;
+import io.crnk.core.queryspec.QuerySpec;
+import io.crnk.core.resource.meta.DefaultPagedMetaInformation;
+
+/**
+ * Not transactional: the async count runs in its own transaction, it only sees committed rows.
+ */
+@SpringBootTest(classes = TestConfiguration.class)
+public class JpaTotalMetaInformationProviderAsyncIT {
+
+  private static final String JOB = "async count job";
+
+  private static final int NUMBER_OF_EMPLOYEES = 7;
+
+  @Inject
+  private JpaResourceRepository<EmployeeDto> employeeRepository;
+
+  @Inject
+  private JpaTotalMetaInformationProvider metaInformationProvider;
+
+  @Inject
+  private EntityManager entityManager;
+
+  @Inject
+  private PlatformTransactionManager transactionManager;
+
+  private TransactionTemplate transactionTemplate;
+
+  private ExecutorService countThread;
+
+  @BeforeEach
+  public void persistTestEmployees() {
+    transactionTemplate = new TransactionTemplate(transactionManager);
+    transactionTemplate.execute(status -> {
+      for (int i = 1; i <= NUMBER_OF_EMPLOYEES; i++) {
+        entityManager.persist(Employee.builder().name("async employee " + i).job(JOB).build());
+      }
+      return null;
+    });
+    countThread = Executors.newSingleThreadExecutor();
+  }
+
+  @AfterEach
+  public void deleteTestEmployees() {
+    metaInformationProvider.setAsyncCount(null, null);
+    countThread.shutdown();
+    transactionTemplate.execute(status -> entityManager
+        .createQuery("DELETE FROM Employee e WHERE e.job = :job")
+        .setParameter("job", JOB)
+        .executeUpdate());
+  }
+
+  @Test
+  public void findAll_whenAsyncCountIsEnabled_sameTotalAsSynchronousCount() {
+    QuerySpec querySpec = new QuerySpec(EmployeeDto.class);
+    querySpec.addFilter(new FilterSpec(Arrays.asList("job"), FilterOperator.EQ, JOB));
+    querySpec.setLimit(1L);
+
+    DefaultPagedMetaInformation syncMeta = (DefaultPagedMetaInformation) employeeRepository
+        .findAll(querySpec).getMeta();
+
+    AtomicInteger asyncCounts = new AtomicInteger();
+    Executor executor = task -> {
+      asyncCounts.incrementAndGet();
+      countThread.execute(task);
+    };
+    metaInformationProvider.setAsyncCount(executor, transactionManager);
+    DefaultPagedMetaInformation asyncMeta = (DefaultPagedMetaInformation) employeeRepository
+        .findAll(querySpec).getMeta();
+
+    assertEquals(1, asyncCounts.get());
+    assertEquals(NUMBER_OF_EMPLOYEES, syncMeta.getTotalResourceCount().longValue());
+    assertEquals(syncMeta.getTotalResourceCount(), asyncMeta.getTotalResourceCount());
+  }
+
+  @Test
+  public void findAll_whenChangesFlushedInSameTransaction_countedSynchronouslyWithChanges() {
+    AtomicInteger asyncCounts = new AtomicInteger();
+    metaInformationProvider.setAsyncCount(task -> {
+      asyncCounts.incrementAndGet();
+      countThread.execute(task);
+    }, transactionManager);
+
+    DefaultPagedMetaInformation meta = transactionTemplate.execute(status -> {
+      entityManager.persist(Employee.builder().name("async employee flushed").job(JOB).build());
+      // Not visible to another transaction until the commit.
+      entityManager.flush();
+
+      QuerySpec querySpec = new QuerySpec(EmployeeDto.class);
+      querySpec.addFilter(new FilterSpec(Arrays.asList("job"), FilterOperator.EQ, JOB));
+      return (DefaultPagedMetaInformation) employeeRepository.findAll(querySpec).getMeta();
+    });
+
+    assertEquals(0, asyncCounts.get());
+    assertEquals(NUMBER_OF_EMPLOYEES + 1, meta.getTotalResourceCount().longValue());
+  }
+
+  @Test
+  public void getMetaInformationAsync_whenFilterFails_errorThrownOnRequestThread() {
+    metaInformationProvider.setAsyncCount(countThread, transactionManager);
+
+    JpaMetaInformationParams params = JpaMetaInformationParams.builder()
+        .sourceResourceClass(EmployeeDto.class)
+        .customFilter((root, query, cb) -> cb.equal(root.get("unknownAttribute"), JOB))
+        .querySpec(new QuerySpec(EmployeeDto.class))
+        .build();
+
+    // The count query is built by the calling thread.
+    assertThrows(
+        IllegalArgumentException.class,
+        () -> metaInformationProvider.getMetaInformationAsync(params));
+  }
+
+  @Test
+  public void getMetaInformationAsync_whenCountQueryFails_errorSurfaced() {
+    metaInformationProvider.setAsyncCount(countThread, transactionManager);
+
+    JpaMetaInformationParams params = JpaMetaInformationParams.builder()
+        .sourceResourceClass(EmployeeDto.class)
+        .customFilter((root, query, cb) -> cb.isNotNull(
+            cb.function("unknown_function", String.class, root.get("name"))))
+        .querySpec(new QuerySpec(EmployeeDto.class))
+        .build();
+
+    CompletionException exception = assertThrows(
+        CompletionException.class,
+        () -> metaInformationProvider.getMetaInformationAsync(params).join());
+    assertTrue(exception.getCause() instanceof PersistenceException);
+  }
+
+}
@@ -1,8 +1,14 @@
 package ca.gc.aafc.dina.repository.meta;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
 
+import java.io.Serializable;
 import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Collectors;
 
 import javax.inject.Inject;
 import javax.persistence.EntityManager;
@@ -17,6 +23,9 @@ import ca.gc.aafc.dina.dto.DepartmentDto;
 import ca.gc.aafc.dina.dto.EmployeeDto;
 import ca.gc.aafc.dina.entity.Department;
 import ca.gc.aafc.dina.entity.Employee;
+import ca.gc.aafc.dina.filter.FilterHandler;
+import ca.gc.aafc.dina.filter.SimpleFilterHandler;
+import ca.gc.aafc.dina.repository.JpaDtoRepository;
 import ca.gc.aafc.dina.repository.JpaRelationshipRepository;
 import ca.gc.aafc.dina.repository.JpaResourceRepository;
 import io.crnk.core.queryspec.FilterOperator;
@@ -37,6 +46,15 @@ public class JpaTotalMetaInformationProviderIT {
 
   @Inject
   private EntityManager entityManager;
+
+  @Inject
+  private JpaTotalMetaInformationProvider metaInformationProvider;
+
+  @Inject
+  private SimpleFilterHandler simpleFilterHandler;
+
+  @Inject
+  private JpaDtoRepository dtoRepository;
   
   private Department testDepartment;
 
@@ -103,5 +121,125 @@ public class JpaTotalMetaInformationProviderIT {
     assertEquals(1, employees.size());
     assertEquals(NUMBER_OF_EMPLOYEES, meta.getTotalResourceCount().longValue());
   }
-  
+
+  @Test
+  public void jpaResourceRepositoryFindAll_whenCountOnRequestOnly_totalIncludedOnlyWhenRequested() {
+    metaInformationProvider.setCountOnRequestOnly(true);
+    try {
+      ResourceList<EmployeeDto> employees = employeeRepository.findAll(new QuerySpec(EmployeeDto.class));
+      assertNull(employees.getMeta());
+
+      QuerySpec querySpec = new QuerySpec(EmployeeDto.class);
+      querySpec.addFilter(new FilterSpec(Arrays.asList("totalResourceCount"), FilterOperator.EQ, "true"));
+      employees = employeeRepository.findAll(querySpec);
+      DefaultPagedMetaInformation meta = (DefaultPagedMetaInformation) employees.getMeta();
+      assertEquals(NUMBER_OF_EMPLOYEES, meta.getTotalResourceCount().longValue());
+    } finally {
+      metaInformationProvider.setCountOnRequestOnly(false);
+    }
+  }
+
+  @Test
+  public void jpaResourceRepositoryFindAll_whenCountCacheIsEnabled_cachedTotalIsIncluded() {
+    metaInformationProvider.setCountCacheTtl(1, TimeUnit.MINUTES);
+    try {
+      employeeRepository.findAll(new QuerySpec(EmployeeDto.class));
+
+      entityManager.persist(Employee.builder().name("new employee").build());
+
+      ResourceList<EmployeeDto> employees = employeeRepository.findAll(new QuerySpec(EmployeeDto.class));
+      DefaultPagedMetaInformation meta = (DefaultPagedMetaInformation) employees.getMeta();
+      assertEquals(NUMBER_OF_EMPLOYEES, meta.getTotalResourceCount().longValue());
+      assertEquals(1, metaInformationProvider.getCountCacheStats().hitCount());
+    } finally {
+      metaInformationProvider.setCountCacheTtl(0, TimeUnit.MINUTES);
+    }
+  }
+
+  @Test
+  public void jpaResourceRepositoryFindAll_whenIdsAreGivenAndCountCacheIsEnabled_totalNotCached() {
+    List<Serializable> ids = employeeRepository.findAll(new QuerySpec(EmployeeDto.class))
+        .stream()
+        .limit(3)
+        .map(empDto -> (Serializable) empDto.getId())
+        .collect(Collectors.toList());
+
+    metaInformationProvider.setCountCacheTtl(1, TimeUnit.MINUTES);
+    try {
+      // The ids restrict the query: the QuerySpec filters don't identify the count.
+      employeeRepository.findAll(ids, new QuerySpec(EmployeeDto.class));
+      ResourceList<EmployeeDto> employees = employeeRepository.findAll(
+          ids, new QuerySpec(EmployeeDto.class));
+      DefaultPagedMetaInformation meta = (DefaultPagedMetaInformation) employees.getMeta();
+
+      assertEquals(3, meta.getTotalResourceCount().longValue());
+      assertEquals(0, metaInformationProvider.getCountCacheStats().requestCount());
+    } finally {
+      metaInformationProvider.setCountCacheTtl(0, TimeUnit.MINUTES);
+    }
+  }
+
+  @Test
+  public void findAll_whenFilterHandlerDependsOnRequest_countCachedPerScopeOnly() {
+    // Restricts the employees to the job of the current user.
+    AtomicReference<String> userJob = new AtomicReference<>("job");
+    JpaResourceRepository<EmployeeDto> restrictedRepository = new JpaResourceRepository<>(
+        EmployeeDto.class,
+        dtoRepository,
+        Arrays.asList(simpleFilterHandler, (FilterHandler) (querySpec, root, query, cb) ->
+            cb.equal(root.get("job"), userJob.get())),
+        metaInformationProvider);
+    restrictedRepository.setResourceRegistry(employeeRepository.getResourceRegistry());
+    entityManager.persist(Employee.builder().name("other employee").job("other job").build());
+
+    metaInformationProvider.setCountCacheTtl(1, TimeUnit.MINUTES);
+    try {
+      // Without count scope, the count isn't cached.
+      assertEquals(NUMBER_OF_EMPLOYEES, totalOf(restrictedRepository));
+      assertEquals(0, metaInformationProvider.getCountCacheStats().requestCount());
+
+      restrictedRepository.setCountScopeProvider(userJob::get);
+      assertEquals(NUMBER_OF_EMPLOYEES, totalOf(restrictedRepository));
+      userJob.set("other job");
+      assertEquals(1, totalOf(restrictedRepository));
+      assertEquals(1, totalOf(restrictedRepository));
+
+      assertEquals(2, metaInformationProvider.getCountCacheStats().missCount());
+      assertEquals(1, metaInformationProvider.getCountCacheStats().hitCount());
+    } finally {
+      metaInformationProvider.setCountCacheTtl(0, TimeUnit.MINUTES);
+    }
+  }
+
+  private static long totalOf(JpaResourceRepository<EmployeeDto> repository) {
+    return ((DefaultPagedMetaInformation) repository.findAll(new QuerySpec(EmployeeDto.class))
+        .getMeta()).getTotalResourceCount();
+  }
+
+  @Test
+  public void jpaResourceRepositoryFindAll_whenEstimateIsNotAvailable_exactTotalIsIncluded() {
+    metaInformationProvider.setEstimateUnfilteredCount(true);
+    try {
+      // The test database is not PostgreSQL: the unfiltered count falls back to an exact count.
+      ResourceList<EmployeeDto> employees = employeeRepository.findAll(
+          new QuerySpec(EmployeeDto.class));
+      DefaultPagedMetaInformation meta = (DefaultPagedMetaInformation) employees.getMeta();
+      assertEquals(NUMBER_OF_EMPLOYEES, meta.getTotalResourceCount().longValue());
+
+      // Filtered and relationship queries are never estimated.
+      QuerySpec querySpec = new QuerySpec(EmployeeDto.class);
+      querySpec.addFilter(
+          new FilterSpec(Arrays.asList("name"), FilterOperator.EQ, "test employee 5"));
+      meta = (DefaultPagedMetaInformation) employeeRepository.findAll(querySpec).getMeta();
+      assertEquals(1, meta.getTotalResourceCount().longValue());
+
+      meta = (DefaultPagedMetaInformation) departmentToEmployeeRepository
+          .findManyTargets(testDepartment.getUuid(), "employees", new QuerySpec(EmployeeDto.class))
+          .getMeta();
+      assertEquals(NUMBER_OF_EMPLOYEES, meta.getTotalResourceCount().longValue());
+    } finally {
+      metaInformationProvider.setEstimateUnfilteredCount(false);
+    }
+  }
+
 }
@@ -0,0 +1,82 @@
+package ca.gc.aafc.dina.benchmarks;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.autoconfigure.domain.EntityScan;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.annotation.Bean;
+
+import ca.gc.aafc.dina.benchmarks.dto.DepartmentDto;
+import ca.gc.aafc.dina.benchmarks.dto.EmployeeDto;
+import ca.gc.aafc.dina.benchmarks.entity.Department;
+import ca.gc.aafc.dina.filter.RsqlFilterHandler;
+import ca.gc.aafc.dina.filter.SimpleFilterHandler;
+import ca.gc.aafc.dina.mapper.JpaDtoMapper;
+import ca.gc.aafc.dina.mapper.LambdaPropertyAccessorEngine;
+import ca.gc.aafc.dina.mapper.MapperHelper;
+import ca.gc.aafc.dina.repository.JpaDtoRepository;
+import ca.gc.aafc.dina.repository.JpaResourceRepository;
+import ca.gc.aafc.dina.repository.meta.JpaTotalMetaInformationProvider;
+
+/**
+ * Small application running on dina-base-api and an embedded H2 database, started by the
+ * benchmarks needing a persistence context or a crnk ResourceRegistry.
+ */
+@SpringBootApplication(scanBasePackages = "ca.gc.aafc.dina")
+@EntityScan(basePackageClasses = Department.class)
+public class BenchmarkApplication {
+
+  /**
+   * Starts the application without authentication, on a random port and with minimal logging.
+   *
+   * @return the started context, to be closed by the caller
+   */
+  public static ConfigurableApplicationContext start() {
+    return new SpringApplicationBuilder(BenchmarkApplication.class)
+        .properties(
+            "keycloak.enabled=false",
+            "server.port=0",
+            "spring.main.banner-mode=off",
+            "logging.level.root=WARN")
+        .run();
+  }
+
+  @Bean
+  public JpaDtoMapper jpaDtoMapper() {
+    return new JpaDtoMapper(
+        MapperHelper.getDtoToEntityMapping(DepartmentDto.class),
+        Collections.emptyMap(),
+        JpaDtoMapper.DEFAULT_MAPPING_PLAN_CACHE_SIZE,
+        new LambdaPropertyAccessorEngine());
+  }
+
+  @Bean
+  public JpaResourceRepository<DepartmentDto> departmentRepository(
+      JpaDtoRepository dtoRepository,
+      SimpleFilterHandler simpleFilterHandler,
+      RsqlFilterHandler rsqlFilterHandler,
+      JpaTotalMetaInformationProvider metaInformationProvider) {
+    return new JpaResourceRepository<>(
+        DepartmentDto.class,
+        dtoRepository,
+        Arrays.asList(simpleFilterHandler, rsqlFilterHandler),
+        metaInformationProvider);
+  }
+
+  @Bean
+  public JpaResourceRepository<EmployeeDto> employeeRepository(
+      JpaDtoRepository dtoRepository,
+      SimpleFilterHandler simpleFilterHandler,
+      RsqlFilterHandler rsqlFilterHandler,
+      JpaTotalMetaInformationProvider metaInformationProvider) {
+    return new JpaResourceRepository<>(
+        EmployeeDto.class,
+        dtoRepository,
+        Arrays.asList(simpleFilterHandler, rsqlFilterHandler),
+        metaInformationProvider);
+  }
+
+}
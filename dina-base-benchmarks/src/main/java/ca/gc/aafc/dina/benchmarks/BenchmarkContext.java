@@ -0,0 +1,62 @@
+package ca.gc.aafc.dina.benchmarks;
+
+import javax.persistence.EntityManager;
+
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import ca.gc.aafc.dina.benchmarks.entity.Department;
+import ca.gc.aafc.dina.jpa.BaseDAO;
+import ca.gc.aafc.dina.repository.JpaDtoRepository;
+import io.crnk.core.engine.registry.ResourceRegistry;
+import lombok.Getter;
+
+/**
+ * JMH state holding the running {@link BenchmarkApplication}, started once per fork and seeded
+ * with {@link SampleData#DEPARTMENT_COUNT} departments and their employees.
+ */
+@Getter
+@State(Scope.Benchmark)
+public class BenchmarkContext {
+
+  private ConfigurableApplicationContext applicationContext;
+  private BaseDAO baseDAO;
+  private JpaDtoRepository dtoRepository;
+  private ResourceRegistry resourceRegistry;
+  private TransactionTemplate readOnlyTransaction;
+
+  @Setup(Level.Trial)
+  public void start() {
+    applicationContext = BenchmarkApplication.start();
+    baseDAO = applicationContext.getBean(BaseDAO.class);
+    dtoRepository = applicationContext.getBean(JpaDtoRepository.class);
+    resourceRegistry = applicationContext.getBean(ResourceRegistry.class);
+
+    PlatformTransactionManager transactionManager =
+        applicationContext.getBean(PlatformTransactionManager.class);
+    readOnlyTransaction = new TransactionTemplate(transactionManager);
+    readOnlyTransaction.setReadOnly(true);
+
+    new TransactionTemplate(transactionManager).execute(status -> {
+      EntityManager entityManager = dtoRepository.getEntityManager();
+      for (int i = 0; i < SampleData.DEPARTMENT_COUNT; i++) {
+        Department department = SampleData.newDepartmentWithEmployees(i);
+        entityManager.persist(department);
+        department.getEmployees().forEach(entityManager::persist);
+      }
+      return null;
+    });
+  }
+
+  @TearDown(Level.Trial)
+  public void stop() {
+    applicationContext.close();
+  }
+
+}
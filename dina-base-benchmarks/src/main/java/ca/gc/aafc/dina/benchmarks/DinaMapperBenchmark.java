@@ -0,0 +1,87 @@
+package ca.gc.aafc.dina.benchmarks;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+
+import ca.gc.aafc.dina.benchmarks.dto.DepartmentDto;
+import ca.gc.aafc.dina.benchmarks.dto.EmployeeDto;
+import ca.gc.aafc.dina.benchmarks.entity.Department;
+import ca.gc.aafc.dina.benchmarks.entity.Employee;
+import ca.gc.aafc.dina.mapper.BeanUtilsPropertyAccessorEngine;
+import ca.gc.aafc.dina.mapper.DinaMapper;
+import ca.gc.aafc.dina.mapper.LambdaPropertyAccessorEngine;
+
+/**
+ * {@link DinaMapper} in both directions, on in-memory beans, for each property accessor engine.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DinaMapperBenchmark {
+
+  private static final Set<String> RELATIONS = Collections.singleton("department");
+
+  @Param({"lambda", "beanutils"})
+  public String accessorEngine;
+
+  private DinaMapper<EmployeeDto, Employee> mapper;
+  private Map<Class<?>, Set<String>> entityFields;
+  private Map<Class<?>, Set<String>> dtoFields;
+  private Employee employee;
+  private EmployeeDto employeeDto;
+
+  @Setup
+  public void setup() {
+    mapper = new DinaMapper<>(
+        EmployeeDto.class,
+        Employee.class,
+        Collections.emptyList(),
+        Collections.emptyList(),
+        "lambda".equals(accessorEngine)
+            ? new LambdaPropertyAccessorEngine()
+            : new BeanUtilsPropertyAccessorEngine());
+
+    entityFields = ImmutableMap.of(
+        Employee.class, ImmutableSet.of("id", "name", "job", "level", "department"),
+        Department.class, ImmutableSet.of("uuid", "name", "location"));
+    dtoFields = ImmutableMap.of(
+        EmployeeDto.class, ImmutableSet.of("name", "job", "level", "department"),
+        DepartmentDto.class, ImmutableSet.of("uuid", "name", "location"));
+
+    employee = SampleData.newDepartmentWithEmployees(0).getEmployees().get(0);
+    employeeDto = mapper.toDto(employee, entityFields, RELATIONS);
+  }
+
+  @Benchmark
+  public EmployeeDto toDto() {
+    return mapper.toDto(employee, entityFields, RELATIONS);
+  }
+
+  @Benchmark
+  public Employee applyDtoToEntity() {
+    Employee target = new Employee();
+    mapper.applyDtoToEntity(employeeDto, target, dtoFields, RELATIONS);
+    return target;
+  }
+
+}
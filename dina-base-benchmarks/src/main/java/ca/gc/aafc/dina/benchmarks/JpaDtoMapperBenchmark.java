@@ -0,0 +1,95 @@
+package ca.gc.aafc.dina.benchmarks;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import ca.gc.aafc.dina.benchmarks.dto.DepartmentDto;
+import ca.gc.aafc.dina.benchmarks.dto.EmployeeDto;
+import ca.gc.aafc.dina.benchmarks.entity.Department;
+import ca.gc.aafc.dina.benchmarks.entity.Employee;
+import ca.gc.aafc.dina.mapper.JpaDtoMapper;
+import io.crnk.core.engine.registry.ResourceRegistry;
+import io.crnk.core.queryspec.IncludeFieldSpec;
+import io.crnk.core.queryspec.IncludeRelationSpec;
+import io.crnk.core.queryspec.QuerySpec;
+
+/**
+ * {@link JpaDtoMapper#toDto} on in-memory entities for the common QuerySpec shapes: all fields,
+ * a sparse fieldset, a to-one include and a to-many include.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JpaDtoMapperBenchmark {
+
+  private JpaDtoMapper mapper;
+  private ResourceRegistry resourceRegistry;
+
+  private Department department;
+  private Employee employee;
+
+  private QuerySpec allFields;
+  private QuerySpec sparseFields;
+  private QuerySpec includeDepartment;
+  private QuerySpec includeEmployees;
+
+  @Setup
+  public void setup(BenchmarkContext context) {
+    mapper = context.getDtoRepository().getDtoJpaMapper();
+    resourceRegistry = context.getResourceRegistry();
+
+    department = SampleData.newDepartmentWithEmployees(0);
+    employee = department.getEmployees().get(0);
+
+    allFields = new QuerySpec(EmployeeDto.class);
+
+    sparseFields = new QuerySpec(EmployeeDto.class);
+    sparseFields.setIncludedFields(Arrays.asList(
+        new IncludeFieldSpec(Collections.singletonList("name")),
+        new IncludeFieldSpec(Collections.singletonList("job"))));
+
+    includeDepartment = new QuerySpec(EmployeeDto.class);
+    includeDepartment.setIncludedRelations(Collections.singletonList(
+        new IncludeRelationSpec(Collections.singletonList("department"))));
+
+    includeEmployees = new QuerySpec(DepartmentDto.class);
+    includeEmployees.setIncludedRelations(Collections.singletonList(
+        new IncludeRelationSpec(Collections.singletonList("employees"))));
+  }
+
+  @Benchmark
+  public Object toDtoAllFields() {
+    return mapper.toDto(employee, allFields, resourceRegistry);
+  }
+
+  @Benchmark
+  public Object toDtoSparseFields() {
+    return mapper.toDto(employee, sparseFields, resourceRegistry);
+  }
+
+  @Benchmark
+  public Object toDtoIncludeDepartment() {
+    return mapper.toDto(employee, includeDepartment, resourceRegistry);
+  }
+
+  @Benchmark
+  public Object toDtoIncludeEmployees() {
+    return mapper.toDto(department, includeEmployees, resourceRegistry);
+  }
+
+}
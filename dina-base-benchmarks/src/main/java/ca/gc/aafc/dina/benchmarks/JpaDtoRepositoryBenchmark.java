@@ -0,0 +1,123 @@
+package ca.gc.aafc.dina.benchmarks;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import ca.gc.aafc.dina.benchmarks.dto.DepartmentDto;
+import ca.gc.aafc.dina.benchmarks.dto.EmployeeDto;
+import ca.gc.aafc.dina.repository.JpaDtoRepository;
+import ca.gc.aafc.dina.repository.JpaDtoRepository.FindAllParams;
+import ca.gc.aafc.dina.repository.JpaDtoRepository.IncludeLoadingStrategy;
+import io.crnk.core.engine.registry.ResourceRegistry;
+import io.crnk.core.queryspec.Direction;
+import io.crnk.core.queryspec.IncludeFieldSpec;
+import io.crnk.core.queryspec.IncludeRelationSpec;
+import io.crnk.core.queryspec.QuerySpec;
+import io.crnk.core.queryspec.SortSpec;
+import io.crnk.core.resource.list.ResourceList;
+
+/**
+ * {@link JpaDtoRepository#findAll} of a page against the seeded H2 database, each call in its
+ * own read-only transaction, for each include loading strategy.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JpaDtoRepositoryBenchmark {
+
+  private static final long PAGE_SIZE = 20;
+
+  @Param({"FETCH_JOIN", "TWO_PHASE"})
+  public IncludeLoadingStrategy includeLoadingStrategy;
+
+  private JpaDtoRepository dtoRepository;
+  private ResourceRegistry resourceRegistry;
+  private TransactionTemplate readOnlyTransaction;
+
+  private QuerySpec employeePage;
+  private QuerySpec employeeSparsePage;
+  private QuerySpec employeePageWithDepartment;
+  private QuerySpec departmentPageWithEmployees;
+
+  @Setup
+  public void setup(BenchmarkContext context) {
+    dtoRepository = context.getDtoRepository();
+    resourceRegistry = context.getResourceRegistry();
+    readOnlyTransaction = context.getReadOnlyTransaction();
+
+    employeePage = newPage(EmployeeDto.class);
+
+    employeeSparsePage = newPage(EmployeeDto.class);
+    employeeSparsePage.setIncludedFields(Arrays.asList(
+        new IncludeFieldSpec(Collections.singletonList("name")),
+        new IncludeFieldSpec(Collections.singletonList("job"))));
+
+    employeePageWithDepartment = newPage(EmployeeDto.class);
+    employeePageWithDepartment.setIncludedRelations(Collections.singletonList(
+        new IncludeRelationSpec(Collections.singletonList("department"))));
+
+    departmentPageWithEmployees = newPage(DepartmentDto.class);
+    departmentPageWithEmployees.setIncludedRelations(Collections.singletonList(
+        new IncludeRelationSpec(Collections.singletonList("employees"))));
+  }
+
+  @Benchmark
+  public ResourceList<Object> findAllEmployees() {
+    return findAll(EmployeeDto.class, employeePage);
+  }
+
+  @Benchmark
+  public ResourceList<Object> findAllEmployeesSparseFields() {
+    return findAll(EmployeeDto.class, employeeSparsePage);
+  }
+
+  @Benchmark
+  public ResourceList<Object> findAllEmployeesIncludeDepartment() {
+    return findAll(EmployeeDto.class, employeePageWithDepartment);
+  }
+
+  @Benchmark
+  public ResourceList<Object> findAllDepartmentsIncludeEmployees() {
+    return findAll(DepartmentDto.class, departmentPageWithEmployees);
+  }
+
+  private ResourceList<Object> findAll(Class<?> dtoClass, QuerySpec querySpec) {
+    return readOnlyTransaction.execute(status -> dtoRepository.findAll(
+        FindAllParams.builder()
+            .sourceDtoClass(dtoClass)
+            .querySpec(querySpec)
+            .resourceRegistry(resourceRegistry)
+            .includeLoadingStrategy(includeLoadingStrategy)
+            .build()));
+  }
+
+  /**
+   * A page from the middle of the sorted resources.
+   */
+  private static QuerySpec newPage(Class<?> dtoClass) {
+    QuerySpec querySpec = new QuerySpec(dtoClass);
+    querySpec.setSort(Collections.singletonList(
+        new SortSpec(Collections.singletonList("name"), Direction.ASC)));
+    querySpec.setOffset(PAGE_SIZE * 2);
+    querySpec.setLimit(PAGE_SIZE);
+    return querySpec;
+  }
+
+}
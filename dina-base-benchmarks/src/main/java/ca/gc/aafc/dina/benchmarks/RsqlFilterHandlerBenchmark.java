@@ -0,0 +1,76 @@
+package ca.gc.aafc.dina.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import javax.persistence.criteria.CriteriaBuilder;
+import javax.persistence.criteria.CriteriaQuery;
+import javax.persistence.criteria.Predicate;
+import javax.persistence.criteria.Root;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import ca.gc.aafc.dina.benchmarks.dto.EmployeeDto;
+import ca.gc.aafc.dina.benchmarks.entity.Employee;
+import ca.gc.aafc.dina.filter.RsqlFilterHandler;
+import cz.jirutka.rsql.parser.RSQLParser;
+import cz.jirutka.rsql.parser.ast.Node;
+import io.crnk.core.queryspec.FilterOperator;
+import io.crnk.core.queryspec.FilterSpec;
+import io.crnk.core.queryspec.PathSpec;
+import io.crnk.core.queryspec.QuerySpec;
+
+/**
+ * {@link RsqlFilterHandler#getRestriction}, parsing included, compared to parsing the filter
+ * alone without the parsed filter cache.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RsqlFilterHandlerBenchmark {
+
+  @Param({
+    "name==employee*",
+    "level=gt=3;job==manager",
+    "job==manager,level=in=(1,2,3);name!=bob,department.name==department*"
+  })
+  public String filter;
+
+  private RsqlFilterHandler rsqlFilterHandler;
+  private CriteriaBuilder criteriaBuilder;
+  private QuerySpec querySpec;
+  private final RSQLParser rsqlParser = new RSQLParser();
+
+  @Setup
+  public void setup(BenchmarkContext context) {
+    rsqlFilterHandler = context.getApplicationContext().getBean(RsqlFilterHandler.class);
+    criteriaBuilder = context.getBaseDAO().getCriteriaBuilder();
+    querySpec = new QuerySpec(EmployeeDto.class);
+    querySpec.addFilter(new FilterSpec(PathSpec.of("rsql"), FilterOperator.EQ, filter));
+  }
+
+  @Benchmark
+  public Predicate getRestriction() {
+    CriteriaQuery<Employee> query = criteriaBuilder.createQuery(Employee.class);
+    Root<Employee> root = query.from(Employee.class);
+    return rsqlFilterHandler.getRestriction(querySpec, root, query, criteriaBuilder);
+  }
+
+  @Benchmark
+  public Node parseUncached() {
+    return rsqlParser.parse(filter);
+  }
+
+}
@@ -0,0 +1,43 @@
+package ca.gc.aafc.dina.benchmarks;
+
+import java.util.UUID;
+
+import ca.gc.aafc.dina.benchmarks.entity.Department;
+import ca.gc.aafc.dina.benchmarks.entity.Employee;
+
+/**
+ * Builds the entity graphs used by the benchmarks, in memory or persisted by
+ * {@link BenchmarkContext}.
+ */
+public final class SampleData {
+
+  public static final int DEPARTMENT_COUNT = 50;
+  public static final int EMPLOYEES_PER_DEPARTMENT = 20;
+
+  private SampleData() {
+  }
+
+  /**
+   * Builds a department and its employees, linked both ways.
+   *
+   * @param index index of the department, used in the names
+   * @return the department, not persisted
+   */
+  public static Department newDepartmentWithEmployees(int index) {
+    Department department = Department.builder()
+        .uuid(UUID.randomUUID())
+        .name("department " + index)
+        .location(index % 2 == 0 ? "Ottawa" : "Winnipeg")
+        .build();
+    for (int i = 0; i < EMPLOYEES_PER_DEPARTMENT; i++) {
+      department.getEmployees().add(Employee.builder()
+          .name(String.format("employee %03d-%02d", index, i))
+          .job(i % 5 == 0 ? "manager" : "technician")
+          .level(i % 7)
+          .department(department)
+          .build());
+    }
+    return department;
+  }
+
+}
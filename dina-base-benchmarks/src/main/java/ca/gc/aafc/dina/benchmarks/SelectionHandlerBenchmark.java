@@ -0,0 +1,73 @@
+package ca.gc.aafc.dina.benchmarks;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import javax.persistence.criteria.CriteriaBuilder;
+import javax.persistence.criteria.CriteriaQuery;
+import javax.persistence.criteria.Expression;
+import javax.persistence.criteria.Root;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import ca.gc.aafc.dina.benchmarks.entity.Employee;
+import ca.gc.aafc.dina.repository.SelectionHandler;
+
+/**
+ * {@link SelectionHandler#getExpression} for an attribute of the root and for an attribute of a
+ * related entity, the latter once per query or several times reusing the same join.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SelectionHandlerBenchmark {
+
+  private static final List<String> NAME = Collections.singletonList("name");
+  private static final List<String> DEPARTMENT_NAME = Arrays.asList("department", "name");
+  private static final List<String> DEPARTMENT_LOCATION = Arrays.asList("department", "location");
+
+  private CriteriaBuilder criteriaBuilder;
+
+  @Setup
+  public void setup(BenchmarkContext context) {
+    criteriaBuilder = context.getBaseDAO().getCriteriaBuilder();
+  }
+
+  @Benchmark
+  public Expression<?> rootAttribute() {
+    return SelectionHandler.getExpression(newRoot(), NAME);
+  }
+
+  @Benchmark
+  public Expression<?> relatedAttribute() {
+    return SelectionHandler.getExpression(newRoot(), DEPARTMENT_NAME);
+  }
+
+  @Benchmark
+  public void relatedAttributesSharingJoin(Blackhole blackhole) {
+    Root<Employee> root = newRoot();
+    blackhole.consume(SelectionHandler.getExpression(root, DEPARTMENT_NAME));
+    blackhole.consume(SelectionHandler.getExpression(root, DEPARTMENT_LOCATION));
+  }
+
+  private Root<Employee> newRoot() {
+    CriteriaQuery<Employee> query = criteriaBuilder.createQuery(Employee.class);
+    return query.from(Employee.class);
+  }
+
+}
@@ -0,0 +1,34 @@
+package ca.gc.aafc.dina.benchmarks.dto;
+
+import java.util.List;
+import java.util.UUID;
+
+import ca.gc.aafc.dina.benchmarks.entity.Department;
+import ca.gc.aafc.dina.dto.RelatedEntity;
+import io.crnk.core.resource.annotations.JsonApiId;
+import io.crnk.core.resource.annotations.JsonApiRelation;
+import io.crnk.core.resource.annotations.JsonApiResource;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@JsonApiResource(type = "department")
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@RelatedEntity(Department.class)
+public class DepartmentDto {
+
+  @JsonApiId
+  private UUID uuid;
+
+  private String name;
+
+  private String location;
+
+  @JsonApiRelation(opposite = "department")
+  private List<EmployeeDto> employees;
+
+}
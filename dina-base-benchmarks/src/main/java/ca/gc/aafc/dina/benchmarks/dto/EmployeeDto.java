@@ -0,0 +1,33 @@
+package ca.gc.aafc.dina.benchmarks.dto;
+
+import ca.gc.aafc.dina.benchmarks.entity.Employee;
+import ca.gc.aafc.dina.dto.RelatedEntity;
+import io.crnk.core.resource.annotations.JsonApiId;
+import io.crnk.core.resource.annotations.JsonApiRelation;
+import io.crnk.core.resource.annotations.JsonApiResource;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@JsonApiResource(type = "employee")
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@RelatedEntity(Employee.class)
+public class EmployeeDto {
+
+  @JsonApiId
+  private Integer id;
+
+  private String name;
+
+  private String job;
+
+  private Integer level;
+
+  @JsonApiRelation
+  private DepartmentDto department;
+
+}
@@ -0,0 +1,44 @@
+package ca.gc.aafc.dina.benchmarks.entity;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import javax.persistence.Entity;
+import javax.persistence.FetchType;
+import javax.persistence.GeneratedValue;
+import javax.persistence.Id;
+import javax.persistence.OneToMany;
+
+import org.hibernate.annotations.NaturalId;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+@Getter
+@Setter
+@Entity
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class Department {
+
+  @Id
+  @GeneratedValue
+  private Long id;
+
+  @NaturalId
+  private UUID uuid;
+
+  private String name;
+
+  private String location;
+
+  @Builder.Default
+  @OneToMany(fetch = FetchType.LAZY, mappedBy = "department")
+  private List<Employee> employees = new ArrayList<>();
+
+}
@@ -0,0 +1,36 @@
+package ca.gc.aafc.dina.benchmarks.entity;
+
+import javax.persistence.Entity;
+import javax.persistence.FetchType;
+import javax.persistence.GeneratedValue;
+import javax.persistence.Id;
+import javax.persistence.ManyToOne;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+@Getter
+@Setter
+@Entity
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class Employee {
+
+  @Id
+  @GeneratedValue
+  private Integer id;
+
+  private String name;
+
+  private String job;
+
+  private Integer level;
+
+  @ManyToOne(fetch = FetchType.LAZY)
+  private Department department;
+
+}
@@ -0,0 +1,75 @@
+package ca.gc.aafc.dina.testsupport.sql;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import org.junit.jupiter.api.function.Executable;
+
+/**
+ * Assertions on the number of SQL statements executed by an action, to catch N+1 query
+ * regressions. Requires {@link SqlStatementCountingConfig}. See {@link SqlStatementCounter} for
+ * what is counted.
+ *
+ * Example:
+ * <pre>
+ * assertQueryCount(2, 0, () -&gt; repository.findAll(querySpec));
+ * </pre>
+ */
+public final class SqlStatementAssertions {
+
+  private SqlStatementAssertions() {
+  }
+
+  /**
+   * Asserts the number of SELECT statements executed by an action.
+   *
+   * @param select - expected number of SELECT statements
+   * @param action - the action to run
+   * @return the executed statements
+   */
+  public static SqlStatementCount assertSelectCount(long select, Executable action) {
+    SqlStatementCount count = SqlStatementCounter.count(action);
+    assertEquals(select, count.getSelectCount(), () -> "SELECT count, executed " + count);
+    return count;
+  }
+
+  /**
+   * Asserts the number of SELECT and INSERT statements executed by an action.
+   *
+   * @param select - expected number of SELECT statements
+   * @param insert - expected number of INSERT statements
+   * @param action - the action to run
+   * @return the executed statements
+   */
+  public static SqlStatementCount assertQueryCount(long select, long insert, Executable action) {
+    SqlStatementCount count = SqlStatementCounter.count(action);
+    assertEquals(select, count.getSelectCount(), () -> "SELECT count, executed " + count);
+    assertEquals(insert, count.getInsertCount(), () -> "INSERT count, executed " + count);
+    return count;
+  }
+
+  /**
+   * Asserts the number of SELECT, INSERT, UPDATE and DELETE statements executed by an action.
+   *
+   * @param select - expected number of SELECT statements
+   * @param insert - expected number of INSERT statements
+   * @param update - expected number of UPDATE statements
+   * @param delete - expected number of DELETE statements
+   * @param action - the action to run
+   * @return the executed statements
+   */
+  public static SqlStatementCount assertQueryCount(
+    long select,
+    long insert,
+    long update,
+    long delete,
+    Executable action
+  ) {
+    SqlStatementCount count = SqlStatementCounter.count(action);
+    assertEquals(select, count.getSelectCount(), () -> "SELECT count, executed " + count);
+    assertEquals(insert, count.getInsertCount(), () -> "INSERT count, executed " + count);
+    assertEquals(update, count.getUpdateCount(), () -> "UPDATE count, executed " + count);
+    assertEquals(delete, count.getDeleteCount(), () -> "DELETE count, executed " + count);
+    return count;
+  }
+
+}
@@ -0,0 +1,46 @@
+package ca.gc.aafc.dina.testsupport.sql;
+
+import java.util.List;
+
+import lombok.NonNull;
+import lombok.Value;
+
+/**
+ * SQL statements executed while counting, in order. See {@link SqlStatementCounter#count}.
+ */
+@Value
+public class SqlStatementCount {
+
+  @NonNull
+  private List<String> statements;
+
+  /**
+   * @param type - type of statement
+   * @return the number of executed statements of the given type
+   */
+  public long getCount(SqlStatementType type) {
+    return statements.stream().filter(sql -> SqlStatementType.of(sql) == type).count();
+  }
+
+  public long getSelectCount() {
+    return getCount(SqlStatementType.SELECT);
+  }
+
+  public long getInsertCount() {
+    return getCount(SqlStatementType.INSERT);
+  }
+
+  public long getUpdateCount() {
+    return getCount(SqlStatementType.UPDATE);
+  }
+
+  public long getDeleteCount() {
+    return getCount(SqlStatementType.DELETE);
+  }
+
+  @Override
+  public String toString() {
+    return statements.size() + " statement(s):\n" + String.join("\n", statements);
+  }
+
+}
@@ -0,0 +1,62 @@
+package ca.gc.aafc.dina.testsupport.sql;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.jupiter.api.function.Executable;
+
+import lombok.SneakyThrows;
+
+/**
+ * Counts the SQL statements executed through a DataSource wrapped by
+ * {@link StatementCountingDataSource}, see {@link SqlStatementCountingConfig}.
+ *
+ * Statements are counted when executed: a JDBC batch counts as one statement, of the type of its
+ * first SQL for a batch of a non-prepared statement. Statements of all
+ * threads are counted (e.g. an asynchronous count query), so counting must not run concurrently.
+ */
+public final class SqlStatementCounter {
+
+  /** Statements of the current count, null when not counting. */
+  private static final AtomicReference<List<String>> RECORDED = new AtomicReference<>();
+
+  private SqlStatementCounter() {
+  }
+
+  /**
+   * Counts the statements executed by an action. Hibernate only executes the pending changes when
+   * flushing: the action must flush to count them.
+   *
+   * @param action - the action to run
+   * @return the executed statements
+   * @throws IllegalStateException if statements are already being counted
+   */
+  @SneakyThrows
+  public static SqlStatementCount count(Executable action) {
+    List<String> statements = Collections.synchronizedList(new ArrayList<>());
+    if (!RECORDED.compareAndSet(null, statements)) {
+      throw new IllegalStateException("SQL statements are already being counted");
+    }
+    try {
+      action.execute();
+    } finally {
+      RECORDED.set(null);
+    }
+    synchronized (statements) {
+      return new SqlStatementCount(Collections.unmodifiableList(new ArrayList<>(statements)));
+    }
+  }
+
+  /**
+   * Records an executed statement if counting.
+   */
+  static void record(String sql) {
+    List<String> statements = RECORDED.get();
+    if (statements != null) {
+      statements.add(sql);
+    }
+  }
+
+}
@@ -0,0 +1,29 @@
+package ca.gc.aafc.dina.testsupport.sql;
+
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Enables the SQL statement assertions of {@link SqlStatementAssertions} in a test application
+ * context, e.g.:
+ *
+ * <pre>
+ * &#64;SpringBootTest(classes = { TestConfiguration.class, SqlStatementCountingConfig.class })
+ * </pre>
+ *
+ * The DataSource beans are replaced by proxies only implementing {@link javax.sql.DataSource}:
+ * beans injected by their concrete type (e.g. HikariDataSource) can't be resolved in such a
+ * context, they must be injected as a DataSource.
+ */
+@Configuration
+public class SqlStatementCountingConfig {
+
+  /**
+   * Static so the post processor doesn't force the early initialization of this configuration.
+   */
+  @Bean
+  public static StatementCountingBeanPostProcessor statementCountingBeanPostProcessor() {
+    return new StatementCountingBeanPostProcessor();
+  }
+
+}
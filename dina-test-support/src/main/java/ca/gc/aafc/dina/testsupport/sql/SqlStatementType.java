@@ -0,0 +1,45 @@
+package ca.gc.aafc.dina.testsupport.sql;
+
+import java.util.Locale;
+import java.util.regex.Pattern;
+
+import org.apache.commons.lang3.StringUtils;
+
+/**
+ * Types of the SQL statements counted by {@link SqlStatementCounter}.
+ */
+public enum SqlStatementType {
+  SELECT, INSERT, UPDATE, DELETE,
+  /** Any other statement, e.g. a sequence call or a DDL statement. */
+  OTHER;
+
+  /** Whitespace, comments and opening parentheses before the first keyword. */
+  private static final Pattern LEADING_NOISE =
+      Pattern.compile("^(?:\\s+|/\\*.*?\\*/|--[^\\n]*|\\()+", Pattern.DOTALL);
+
+  /**
+   * Gets the type of a statement from its first keyword, ignoring leading comments (e.g. added by
+   * hibernate.use_sql_comments) and opening parentheses. A "with" statement is a SELECT.
+   *
+   * @param sql the statement
+   * @return the type, OTHER if unknown
+   */
+  public static SqlStatementType of(String sql) {
+    String statement = LEADING_NOISE.matcher(StringUtils.defaultString(sql)).replaceFirst("");
+    String keyword = statement.split("[\\s(]+", 2)[0].toLowerCase(Locale.ROOT);
+    switch (keyword) {
+      case "select":
+      case "with":
+        return SELECT;
+      case "insert":
+        return INSERT;
+      case "update":
+        return UPDATE;
+      case "delete":
+        return DELETE;
+      default:
+        return OTHER;
+    }
+  }
+
+}
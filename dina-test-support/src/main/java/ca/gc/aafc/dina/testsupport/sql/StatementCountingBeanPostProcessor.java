@@ -0,0 +1,20 @@
+package ca.gc.aafc.dina.testsupport.sql;
+
+import javax.sql.DataSource;
+
+import org.springframework.beans.factory.config.BeanPostProcessor;
+
+/**
+ * Wraps the DataSource beans with {@link StatementCountingDataSource}.
+ */
+public class StatementCountingBeanPostProcessor implements BeanPostProcessor {
+
+  @Override
+  public Object postProcessAfterInitialization(Object bean, String beanName) {
+    if (bean instanceof DataSource) {
+      return StatementCountingDataSource.wrap((DataSource) bean);
+    }
+    return bean;
+  }
+
+}
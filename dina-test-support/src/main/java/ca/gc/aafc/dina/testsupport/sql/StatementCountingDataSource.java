@@ -0,0 +1,115 @@
+package ca.gc.aafc.dina.testsupport.sql;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.sql.DataSource;
+
+import lombok.NonNull;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Wraps a DataSource with JDBC proxies reporting the executed statements to
+ * {@link SqlStatementCounter}. Unwrapping returns the original objects, which are not counted.
+ */
+public final class StatementCountingDataSource {
+
+  private StatementCountingDataSource() {
+  }
+
+  /**
+   * @param dataSource - the DataSource to wrap
+   * @return a DataSource counting the statements executed on its connections
+   */
+  public static DataSource wrap(@NonNull DataSource dataSource) {
+    if (isWrapped(dataSource)) {
+      return dataSource;
+    }
+    return newProxy(DataSource.class, dataSource, null);
+  }
+
+  /**
+   * @param dataSource - a DataSource
+   * @return true if it was returned by {@link #wrap}
+   */
+  public static boolean isWrapped(DataSource dataSource) {
+    return Proxy.isProxyClass(dataSource.getClass())
+        && Proxy.getInvocationHandler(dataSource) instanceof CountingHandler;
+  }
+
+  private static <T> T newProxy(Class<T> type, Object target, String sql) {
+    return type.cast(Proxy.newProxyInstance(
+        StatementCountingDataSource.class.getClassLoader(),
+        new Class<?>[] {type},
+        new CountingHandler(target, sql)));
+  }
+
+  /**
+   * Proxies the connections and statements created by the target, and records the statements
+   * executed by the target.
+   */
+  @RequiredArgsConstructor
+  private static final class CountingHandler implements InvocationHandler {
+
+    private final Object target;
+
+    /** SQL of a prepared statement, null otherwise. */
+    private final String preparedSql;
+
+    /** SQL added to the batch of a non-prepared statement. */
+    private final List<String> batchedSql = new ArrayList<>();
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+      String name = method.getName();
+      if (target instanceof Statement) {
+        recordExecution(name, args);
+      }
+
+      Object result;
+      try {
+        result = method.invoke(target, args);
+      } catch (InvocationTargetException e) {
+        throw e.getCause();
+      }
+
+      // Count the statements of the created connections and statements.
+      Class<?> returnType = method.getReturnType();
+      if (result != null && returnType.isInterface()
+          && (Connection.class.equals(returnType) || Statement.class.isAssignableFrom(returnType))
+          && !"unwrap".equals(name)) {
+        String sql = args != null && args.length > 0 && args[0] instanceof String
+            ? (String) args[0]
+            : null;
+        return newProxy(returnType, result, sql);
+      }
+      return result;
+    }
+
+    private void recordExecution(String name, Object[] args) {
+      boolean hasSqlArgument = args != null && args.length > 0 && args[0] instanceof String;
+      if ("addBatch".equals(name) && hasSqlArgument) {
+        batchedSql.add((String) args[0]);
+      } else if ("clearBatch".equals(name)) {
+        batchedSql.clear();
+      } else if (name.startsWith("execute") && name.endsWith("Batch")) {
+        if (preparedSql != null) {
+          SqlStatementCounter.record(preparedSql);
+        } else if (!batchedSql.isEmpty()) {
+          // One statement for the whole batch, typed by its first SQL.
+          SqlStatementCounter.record(batchedSql.get(0));
+          batchedSql.clear();
+        }
+      } else if (name.startsWith("execute")) {
+        SqlStatementCounter.record(hasSqlArgument ? (String) args[0] : preparedSql);
+      }
+    }
+  }
+
+}
@@ -0,0 +1,77 @@
+package ca.gc.aafc.dina.testsupport.sql;
+
+import static ca.gc.aafc.dina.testsupport.sql.SqlStatementAssertions.assertQueryCount;
+import static ca.gc.aafc.dina.testsupport.sql.SqlStatementAssertions.assertSelectCount;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.sql.Statement;
+
+import javax.inject.Inject;
+import javax.persistence.EntityManager;
+import javax.transaction.Transactional;
+
+import org.hibernate.Session;
+import org.junit.jupiter.api.Test;
+import org.opentest4j.AssertionFailedError;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import ca.gc.aafc.dina.testsupport.DBBackedIntegrationTest;
+import ca.gc.aafc.dina.testsupport.TestConfiguration;
+import ca.gc.aafc.dina.testsupport.entity.ComplexObject;
+
+@SpringBootTest(classes = { TestConfiguration.class, SqlStatementCountingConfig.class })
+@Transactional
+public class SqlStatementAssertionsIT extends DBBackedIntegrationTest {
+
+  @Inject
+  private EntityManager entityManager;
+
+  @Test
+  public void assertQueryCount_EntityPersistedAndFound_StatementsCounted() {
+    ComplexObject comp = ComplexObject.builder().name("counted").build();
+
+    assertQueryCount(0, 1, 0, 0, () -> save(comp));
+    assertSelectCount(1, () -> findUnique(ComplexObject.class, "name", "counted"));
+  }
+
+  @Test
+  public void assertSelectCount_UnexpectedSelect_FailsWithExecutedStatements() {
+    save(ComplexObject.builder().name("counted").build());
+
+    AssertionFailedError error = assertThrows(
+        AssertionFailedError.class,
+        () -> assertSelectCount(0, () -> findUnique(ComplexObject.class, "name", "counted")));
+    assertTrue(error.getMessage().contains("select"));
+  }
+
+  @Test
+  public void count_NonPreparedBatch_CountedAsOneStatement() {
+    SqlStatementCount count = SqlStatementCounter.count(
+        () -> entityManager.unwrap(Session.class).doWork(connection -> {
+          try (Statement statement = connection.createStatement()) {
+            statement.addBatch("update complex_object set name = 'a' where id = -1");
+            statement.addBatch("update complex_object set name = 'b' where id = -2");
+            statement.executeBatch();
+          }
+        }));
+
+    assertEquals(1, count.getUpdateCount());
+  }
+
+  @Test
+  public void count_NestedCount_ThrowsIllegalStateException() {
+    assertThrows(
+        IllegalStateException.class,
+        () -> SqlStatementCounter.count(() -> SqlStatementCounter.count(entityManager::flush)));
+  }
+
+  @Test
+  public void of_SqlWithLeadingComment_TypeFromFirstKeyword() {
+    assertEquals(SqlStatementType.SELECT, SqlStatementType.of("/* load */ select * from t"));
+    assertEquals(SqlStatementType.DELETE, SqlStatementType.of("  DELETE from t"));
+    assertEquals(SqlStatementType.OTHER, SqlStatementType.of("call next value for seq"));
+  }
+
+}
@@ -0,0 +1,39 @@
+package ca.gc.aafc.dina.testsupport.sql;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import org.junit.jupiter.api.Test;
+
+public class SqlStatementTypeTest {
+
+  @Test
+  public void of_KeywordFollowedByNewline_TypeFound() {
+    assertEquals(SqlStatementType.SELECT, SqlStatementType.of("select\n id from complex_object"));
+    assertEquals(SqlStatementType.DELETE, SqlStatementType.of("delete\tfrom complex_object"));
+  }
+
+  @Test
+  public void of_LeadingComments_CommentsIgnored() {
+    assertEquals(SqlStatementType.SELECT,
+        SqlStatementType.of("/* comment */ select id from complex_object"));
+    assertEquals(SqlStatementType.UPDATE,
+        SqlStatementType.of("/* one */\n/* two */ update complex_object set name = 'a'"));
+    assertEquals(SqlStatementType.INSERT,
+        SqlStatementType.of("-- comment\ninsert into complex_object (id) values (1)"));
+  }
+
+  @Test
+  public void of_LeadingParentheses_ParenthesesIgnored() {
+    assertEquals(SqlStatementType.SELECT,
+        SqlStatementType.of("(select id from complex_object) union (select id from other)"));
+    assertEquals(SqlStatementType.SELECT, SqlStatementType.of("( /* nested */ (select 1))"));
+  }
+
+  @Test
+  public void of_UnknownOrEmptyStatement_OtherReturned() {
+    assertEquals(SqlStatementType.OTHER, SqlStatementType.of("call next value for seq"));
+    assertEquals(SqlStatementType.OTHER, SqlStatementType.of(""));
+    assertEquals(SqlStatementType.OTHER, SqlStatementType.of(null));
+  }
+
+}